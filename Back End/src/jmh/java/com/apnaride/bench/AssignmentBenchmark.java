@@ -0,0 +1,61 @@
+package com.apnaride.bench;
+
+import com.apnaride.service.GeoDistance;
+import com.apnaride.service.MinCostAssignment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One dispatch window of n rides and n free drivers over the fixture area, pickup distance as the
+ * cost: batch min-cost assignment vs greedy nearest matching in request order. Setup prints the
+ * average pickup distance each one yields.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AssignmentBenchmark {
+
+    @Param({"100", "500"})
+    public int size;
+
+    private double[][] cost;
+
+    @Setup
+    public void setUp() {
+        double[][] rides = BenchFixtures.pickups(size, 7);
+        double[][] drivers = BenchFixtures.pickups(size, 8);
+        cost = new double[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                cost[i][j] = GeoDistance.haversineKm(rides[i][0], rides[i][1], drivers[j][0], drivers[j][1]);
+            }
+        }
+        System.out.printf("%n%dx%d average pickup km: hungarian %.3f, greedy %.3f%n", size, size,
+                MinCostAssignment.totalCost(cost, MinCostAssignment.solve(cost)) / size,
+                MinCostAssignment.totalCost(cost, MinCostAssignment.greedy(cost)) / size);
+    }
+
+    @Benchmark
+    public int[] hungarian() {
+        return MinCostAssignment.solve(cost);
+    }
+
+    @Benchmark
+    public int[] greedy() {
+        return MinCostAssignment.greedy(cost);
+    }
+}
@@ -0,0 +1,106 @@
+package com.apnaride.bench;
+
+import com.apnaride.model.Driver;
+import com.apnaride.model.Ride;
+import com.apnaride.service.DistanceMatrixService;
+import com.apnaride.service.DriverSpatialIndex;
+import com.apnaride.service.LocalRoutingEngine;
+import com.apnaride.service.OpenRideIndex;
+import com.apnaride.service.OsrmClient;
+import com.apnaride.service.RideMatchingService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * In-memory fixtures shared by the benchmarks: drivers and open rides scattered over a
+ * ~40 km square around Hyderabad, wired into the same indexes and services the app uses,
+ * with no database and no routing backend (matrix cells fall back to Haversine estimates).
+ */
+final class BenchFixtures {
+
+    static final double CENTER_LAT = 17.385;
+    static final double CENTER_LNG = 78.486;
+    static final String[] VEHICLE_TYPES = {"bike", "auto", "car", "share"};
+
+    private BenchFixtures() {
+    }
+
+    static DriverSpatialIndex drivers(int count, long seed) {
+        Random random = new Random(seed);
+        DriverSpatialIndex index = new DriverSpatialIndex();
+        for (int i = 0; i < count; i++) {
+            Driver driver = new Driver();
+            driver.setId((long) i + 1);
+            driver.setUserId((long) i + 1);
+            driver.setVehicleType(VEHICLE_TYPES[i % VEHICLE_TYPES.length]);
+            driver.setVehicleNumber("TS09AB" + (1000 + i % 9000));
+            driver.setRating(3.5 + random.nextDouble() * 1.5);
+            driver.setIsOnline(true);
+            driver.setIsAvailable(random.nextInt(10) < 7);
+            driver.setIsSuspended(false);
+            driver.setCurrentLat(CENTER_LAT + (random.nextDouble() - 0.5) * 0.36);
+            driver.setCurrentLng(CENTER_LNG + (random.nextDouble() - 0.5) * 0.38);
+            index.update(driver);
+        }
+        return index;
+    }
+
+    static OpenRideIndex openRides(int count, long seed) {
+        Random random = new Random(seed);
+        OpenRideIndex index = new OpenRideIndex();
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < count; i++) {
+            Ride ride = ride(random, i);
+            ride.setRequestedAt(now.minusSeconds(random.nextInt(600)));
+            index.update(ride);
+        }
+        return index;
+    }
+
+    static Ride ride(Random random, int i) {
+        Ride ride = new Ride();
+        ride.setId((long) i + 1);
+        ride.setBookingId("BK-" + Integer.toHexString(0x10000000 + i).toUpperCase());
+        ride.setCustomerId((long) (i % 5000) + 1);
+        ride.setPickupLocation("Pickup " + i);
+        ride.setDropLocation("Drop " + i);
+        ride.setVehicleType(VEHICLE_TYPES[i % VEHICLE_TYPES.length]);
+        ride.setStatus("REQUESTED");
+        ride.setPickupLat(CENTER_LAT + (random.nextDouble() - 0.5) * 0.36);
+        ride.setPickupLng(CENTER_LNG + (random.nextDouble() - 0.5) * 0.38);
+        ride.setDropLat(CENTER_LAT + (random.nextDouble() - 0.5) * 0.36);
+        ride.setDropLng(CENTER_LNG + (random.nextDouble() - 0.5) * 0.38);
+        ride.setFare(60 + random.nextDouble() * 300);
+        return ride;
+    }
+
+    static RideMatchingService matching(DriverSpatialIndex drivers) {
+        OsrmClient noEndpoints = new OsrmClient(List.of(), 1000, 100, 3, 30_000, 200, new SimpleMeterRegistry());
+        DistanceMatrixService matrix = new DistanceMatrixService(noEndpoints, new LocalRoutingEngine("", 16, 2),
+                new ObjectMapper(), new SimpleMeterRegistry(), 20_000, 300, 3, 1500, 25, 1.3, false);
+        RideMatchingService matching = new RideMatchingService();
+        ReflectionTestUtils.setField(matching, "driverSpatialIndex", drivers);
+        ReflectionTestUtils.setField(matching, "distanceMatrixService", matrix);
+        ReflectionTestUtils.setField(matching, "matchingRadiusKm", 10.0);
+        ReflectionTestUtils.setField(matching, "maxCandidates", 25);
+        return matching;
+    }
+
+    /**
+     * Pickup points drawn from the same area, so queries land on populated cells
+     */
+    static double[][] pickups(int count, long seed) {
+        Random random = new Random(seed);
+        double[][] points = new double[count][2];
+        for (double[] p : points) {
+            p[0] = CENTER_LAT + (random.nextDouble() - 0.5) * 0.3;
+            p[1] = CENTER_LNG + (random.nextDouble() - 0.5) * 0.3;
+        }
+        return points;
+    }
+}
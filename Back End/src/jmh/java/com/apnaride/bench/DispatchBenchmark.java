@@ -0,0 +1,77 @@
+package com.apnaride.bench;
+
+import com.apnaride.model.Driver;
+import com.apnaride.service.DriverSpatialIndex;
+import com.apnaride.service.GeoCellIndex;
+import com.apnaride.service.OpenRideIndex;
+import com.apnaride.service.RideMatchingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatch and query hot paths against in-memory indexes of 1k/10k/100k drivers and open rides:
+ * best-driver matching, the /api/drivers/nearby filter and the driver-side nearby-rides filter.
+ * Each invocation uses the next pickup from a fixed rotation so results do not hinge on one cell.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private DriverSpatialIndex drivers;
+    private OpenRideIndex rides;
+    private RideMatchingService matching;
+    private double[][] pickups;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        drivers = BenchFixtures.drivers(size, 1);
+        rides = BenchFixtures.openRides(size, 2);
+        matching = BenchFixtures.matching(drivers);
+        pickups = BenchFixtures.pickups(1024, 3);
+    }
+
+    @Benchmark
+    public Optional<Driver> findBestDriver() {
+        double[] p = pickup();
+        return matching.findBestDriver(p[0], p[1], "car");
+    }
+
+    @Benchmark
+    public List<GeoCellIndex.Hit<Driver>> nearbyDrivers() {
+        double[] p = pickup();
+        return drivers.findNearby(p[0], p[1], 5, null, false);
+    }
+
+    @Benchmark
+    public List<GeoCellIndex.Hit<OpenRideIndex.OpenRide>> nearbyRides() {
+        double[] p = pickup();
+        return rides.findNearby(p[0], p[1], 5, "auto", 2.0, 30.0, 80.0);
+    }
+
+    private double[] pickup() {
+        double[] p = pickups[next];
+        next = (next + 1) & (pickups.length - 1);
+        return p;
+    }
+}
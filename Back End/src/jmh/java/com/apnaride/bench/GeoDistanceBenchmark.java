@@ -0,0 +1,131 @@
+package com.apnaride.bench;
+
+import com.apnaride.service.GeoDistance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Candidate-filter throughput: how many drivers lie within the search radius of a pickup,
+ * computed with the old boxed Haversine copy and with each GeoDistance variant.
+ * Candidates are spread over a ~40 km square around the city centre.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeoDistanceBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int candidates;
+
+    @Param({"5"})
+    public double radiusKm;
+
+    private double[] lats;
+    private double[] lngs;
+    private double[] cosLats;
+    private Double[] boxedLats;
+    private Double[] boxedLngs;
+    private final double pickupLat = 17.385;
+    private final double pickupLng = 78.486;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        lats = new double[candidates];
+        lngs = new double[candidates];
+        cosLats = new double[candidates];
+        boxedLats = new Double[candidates];
+        boxedLngs = new Double[candidates];
+        for (int i = 0; i < candidates; i++) {
+            lats[i] = pickupLat + (random.nextDouble() - 0.5) * 0.36;
+            lngs[i] = pickupLng + (random.nextDouble() - 0.5) * 0.38;
+            cosLats[i] = GeoDistance.cosLat(lats[i]);
+            boxedLats[i] = lats[i];
+            boxedLngs[i] = lngs[i];
+        }
+    }
+
+    @Benchmark
+    public int legacyBoxedHaversine() {
+        int within = 0;
+        for (int i = 0; i < candidates; i++) {
+            if (legacyDistance(pickupLat, pickupLng, boxedLats[i], boxedLngs[i]) <= radiusKm) within++;
+        }
+        return within;
+    }
+
+    @Benchmark
+    public int haversine() {
+        int within = 0;
+        for (int i = 0; i < candidates; i++) {
+            if (GeoDistance.haversineKm(pickupLat, pickupLng, lats[i], lngs[i]) <= radiusKm) within++;
+        }
+        return within;
+    }
+
+    @Benchmark
+    public int haversinePrecomputedCos() {
+        double cosPickup = GeoDistance.cosLat(pickupLat);
+        int within = 0;
+        for (int i = 0; i < candidates; i++) {
+            if (GeoDistance.haversineKm(pickupLat, pickupLng, cosPickup, lats[i], lngs[i], cosLats[i]) <= radiusKm) within++;
+        }
+        return within;
+    }
+
+    @Benchmark
+    public int equirectangular() {
+        double cosPickup = GeoDistance.cosLat(pickupLat);
+        double radiusSq = radiusKm * radiusKm;
+        int within = 0;
+        for (int i = 0; i < candidates; i++) {
+            if (GeoDistance.equirectangularSqKm(pickupLat, pickupLng, lats[i], lngs[i], cosPickup) <= radiusSq) within++;
+        }
+        return within;
+    }
+
+    // What GeoCellIndex does: cheap reject, exact distance only for the survivors
+    @Benchmark
+    public int equirectangularThenHaversine() {
+        double cosPickup = GeoDistance.cosLat(pickupLat);
+        double bound = radiusKm * 1.01 + 0.01;
+        double boundSq = bound * bound;
+        int within = 0;
+        for (int i = 0; i < candidates; i++) {
+            if (GeoDistance.equirectangularSqKm(pickupLat, pickupLng, lats[i], lngs[i], cosPickup) <= boundSq
+                    && GeoDistance.haversineKm(pickupLat, pickupLng, cosPickup, lats[i], lngs[i], cosLats[i]) <= radiusKm) {
+                within++;
+            }
+        }
+        return within;
+    }
+
+    // The calculateDistance copy previously found in the controllers and services
+    private static double legacyDistance(Double lat1, Double lng1, Double lat2, Double lng2) {
+        if (lat1 == null || lng1 == null || lat2 == null || lng2 == null) {
+            return 10.0;
+        }
+        double R = 6371;
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+                   Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return R * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+}
@@ -0,0 +1,132 @@
+package com.apnaride.bench;
+
+import com.apnaride.dto.RideResponse;
+import com.apnaride.model.PromoCode;
+import com.apnaride.model.Ride;
+import com.apnaride.service.FareEngine;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request pricing and response costs over a rotation of 1k/10k/100k fixture rides: fare
+ * calculation, promo validation and discount, and JSON serialization of a RideResponse and of
+ * a 20-entry nearby-rides Map list, using the ObjectMapper configuration Spring MVC builds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final FareEngine fareEngine = new FareEngine(); // built-in rates, no fare_structures rows
+    private Ride[] rides;
+    private RideResponse[] responses;
+    private PromoCode promo;
+    private List<Map<String, Object>> nearbyPage;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        ReflectionTestUtils.setField(fareEngine, "averageSpeedKmh", 25.0);
+        Random random = new Random(4);
+        rides = new Ride[size];
+        responses = new RideResponse[size];
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < size; i++) {
+            Ride ride = BenchFixtures.ride(random, i);
+            ride.setRequestedAt(now);
+            rides[i] = ride;
+            RideResponse response = new RideResponse(ride.getBookingId(), ride.getPickupLocation(), ride.getDropLocation(),
+                    ride.getVehicleType(), ride.getFare(), ride.getStatus());
+            response.setRequestedAt(now);
+            responses[i] = response;
+        }
+        promo = new PromoCode();
+        promo.setCode("FIRST50");
+        promo.setDiscountPercentage(50.0);
+        promo.setMaxDiscountAmount(100.0);
+        promo.setActive(true);
+        promo.setMaxUsage(1_000_000);
+        promo.setUsageCount(10);
+        promo.setExpiryDate(now.plusDays(30));
+
+        nearbyPage = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Ride ride = rides[i % size];
+            Map<String, Object> rideInfo = new HashMap<>();
+            rideInfo.put("id", ride.getId());
+            rideInfo.put("bookingId", ride.getBookingId());
+            rideInfo.put("pickupLocation", ride.getPickupLocation());
+            rideInfo.put("dropLocation", ride.getDropLocation());
+            rideInfo.put("vehicleType", ride.getVehicleType());
+            rideInfo.put("fare", ride.getFare());
+            rideInfo.put("status", ride.getStatus());
+            rideInfo.put("pickupLat", ride.getPickupLat());
+            rideInfo.put("pickupLng", ride.getPickupLng());
+            rideInfo.put("dropLat", ride.getDropLat());
+            rideInfo.put("dropLng", ride.getDropLng());
+            rideInfo.put("pickupDistance", 1.2);
+            rideInfo.put("rideDistance", 8.4);
+            rideInfo.put("requestedAt", ride.getRequestedAt());
+            nearbyPage.add(rideInfo);
+        }
+    }
+
+    @Benchmark
+    public double fare() {
+        Ride ride = rides[advance()];
+        return fareEngine.fare(ride.getVehicleType(), ride.getPickupLat(), ride.getPickupLng(),
+                ride.getDropLat(), ride.getDropLng());
+    }
+
+    @Benchmark
+    public double applyPromo() {
+        Ride ride = rides[advance()];
+        if (!promo.isRedeemableAt(LocalDateTime.now())) {
+            return ride.getFare();
+        }
+        return ride.getFare() - promo.discountFor(ride.getFare());
+    }
+
+    @Benchmark
+    public byte[] rideResponseJson() throws Exception {
+        return objectMapper.writeValueAsBytes(responses[advance()]);
+    }
+
+    @Benchmark
+    public byte[] nearbyRidesJson() throws Exception {
+        return objectMapper.writeValueAsBytes(nearbyPage);
+    }
+
+    private int advance() {
+        int i = next;
+        next = i + 1 == size ? 0 : i + 1;
+        return i;
+    }
+}
@@ -0,0 +1,105 @@
+package com.apnaride.bench;
+
+import com.apnaride.service.RouteGeometry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route response cost: OSRM-style GeoJSON pass-through versus Douglas-Peucker + polyline.
+ * Payload sizes for each variant are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteGeometryBenchmark {
+
+    // Points in the full-overview geometry; ~10 m apart, so 5000 points is a ~50 km trip
+    @Param({"500", "5000"})
+    public int points;
+
+    @Param({"5"})
+    public double toleranceMeters;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private double[] lats;
+    private double[] lngs;
+    private Map<String, Object> geojsonRoute;
+
+    @Setup
+    public void setUp() throws Exception {
+        Random random = new Random(42);
+        lats = new double[points];
+        lngs = new double[points];
+        double lat = 17.385;
+        double lng = 78.486;
+        double heading = 0;
+        for (int i = 0; i < points; i++) {
+            heading += random.nextGaussian() * 0.08; // gentle curves like a road
+            lat += Math.cos(heading) * 10 / 111_320.0;
+            lng += Math.sin(heading) * 10 / (111_320.0 * Math.cos(Math.toRadians(lat)));
+            lats[i] = lat;
+            lngs[i] = lng;
+        }
+        geojsonRoute = geojson();
+        byte[] full = geojsonFull();
+        byte[] compact = polylineSimplified();
+        System.out.printf("%npayload bytes (points=%d): geojson=%d polyline=%d (%.1fx smaller)%n",
+                points, full.length, compact.length, (double) full.length / compact.length);
+    }
+
+    @Benchmark
+    public byte[] geojsonFull() throws Exception {
+        return objectMapper.writeValueAsBytes(geojsonRoute);
+    }
+
+    @Benchmark
+    public byte[] polylineSimplified() throws Exception {
+        int[] kept = RouteGeometry.simplify(lats, lngs, toleranceMeters);
+        Map<String, Object> route = new LinkedHashMap<>();
+        route.put("distance", points * 10.0);
+        route.put("duration", points * 1.2);
+        route.put("geometry", RouteGeometry.encode(lats, lngs, kept));
+        route.put("geometryFormat", "polyline");
+        return objectMapper.writeValueAsBytes(Map.of("code", "Ok", "routes", List.of(route)));
+    }
+
+    @Benchmark
+    public String polylineEncodeOnly() {
+        return RouteGeometry.encode(lats, lngs, null);
+    }
+
+    private Map<String, Object> geojson() {
+        List<List<Double>> coordinates = new ArrayList<>(points);
+        for (int i = 0; i < points; i++) {
+            coordinates.add(List.of(lngs[i], lats[i]));
+        }
+        Map<String, Object> geometry = new LinkedHashMap<>();
+        geometry.put("type", "LineString");
+        geometry.put("coordinates", coordinates);
+        Map<String, Object> route = new LinkedHashMap<>();
+        route.put("distance", points * 10.0);
+        route.put("duration", points * 1.2);
+        route.put("geometry", geometry);
+        return Map.of("code", "Ok", "routes", List.of(route));
+    }
+}
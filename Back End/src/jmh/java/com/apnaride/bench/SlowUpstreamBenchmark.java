@@ -0,0 +1,152 @@
+package com.apnaride.bench;
+
+import com.apnaride.ApnarideBackendApplication;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request throughput of endpoints that block on a slow upstream, with Tomcat on its default 200
+ * platform threads versus virtual threads. Razorpay and WhatsApp are replaced by a local stub
+ * that answers after a fixed delay; each invocation fires a burst of concurrent requests at the
+ * backend (h2 profile) and waits for all of them. Bulkhead limits are raised above the burst so
+ * they do not cap the result.
+ *   mvn -Pjmh test-compile exec:exec -Djmh.args="SlowUpstreamBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SlowUpstreamBenchmark {
+
+    private static final int BURST = 1000;
+
+    @Param({"false", "true"})
+    public boolean virtualThreads;
+
+    @Param({"create-order", "send-otp"})
+    public String endpoint;
+
+    @Param({"1000"})
+    public int upstreamDelayMs;
+
+    private HttpServer stub;
+    private ConfigurableApplicationContext app;
+    private HttpClient client;
+    private String baseUrl;
+    private final AtomicLong phones = new AtomicLong(9_000_000_000L);
+    private final AtomicLong upstreamCalls = new AtomicLong();
+
+    @Setup
+    public void setUp() throws IOException {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 4096);
+        stub.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        stub.createContext("/", exchange -> {
+            upstreamCalls.incrementAndGet();
+            try {
+                Thread.sleep(upstreamDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = "{\"id\":\"order_stub\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        stub.start();
+        String stubUrl = "http://127.0.0.1:" + stub.getAddress().getPort();
+
+        app = new SpringApplicationBuilder(ApnarideBackendApplication.class)
+                .profiles("h2")
+                .run(   // command line arguments, so they win over application.properties
+                        "--server.port=0",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.apnaride=WARN",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--apnaride.payments.razorpay.base-url=" + stubUrl,
+                        "--apnaride.payments.razorpay.key-id=stub",
+                        "--apnaride.payments.razorpay.key-secret=stub",
+                        "--apnaride.payments.razorpay.max-concurrent=" + 4 * BURST,
+                        "--apnaride.whatsapp.base-url=" + stubUrl,
+                        "--apnaride.whatsapp.token=stub",
+                        "--apnaride.whatsapp.phone-number-id=stub",
+                        "--apnaride.whatsapp.max-concurrent=" + 4 * BURST,
+                        "--apnaride.otp.resend-cooldown-seconds=0");
+        baseUrl = "http://127.0.0.1:" + app.getEnvironment().getProperty("local.server.port");
+        client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        app.close();
+        stub.stop(0);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public int burst() {
+        long upstreamBefore = upstreamCalls.get();
+        CompletableFuture<?>[] calls = new CompletableFuture<?>[BURST];
+        for (int i = 0; i < BURST; i++) {
+            calls[i] = client.sendAsync(request(), HttpResponse.BodyHandlers.discarding());
+        }
+        CompletableFuture.allOf(calls).join();
+        int ok = 0;
+        for (CompletableFuture<?> call : calls) {
+            if (((HttpResponse<?>) call.join()).statusCode() == 200) {
+                ok++;
+            }
+        }
+        // A mock order or a skipped message would also answer 200 without touching the stub
+        long upstream = upstreamCalls.get() - upstreamBefore;
+        if (ok != BURST || upstream != BURST) {
+            throw new IllegalStateException(ok + " of " + BURST + " requests succeeded, " + upstream + " reached the upstream");
+        }
+        return ok;
+    }
+
+    private HttpRequest request() {
+        String body = "create-order".equals(endpoint)
+                ? "{\"amount\":25000,\"currency\":\"INR\"}"
+                : "{\"phone\":\"" + phones.incrementAndGet() + "\"}";
+        String path = "create-order".equals(endpoint) ? "/api/payments/create-order" : "/api/auth/send-otp";
+        return HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+}
@@ -0,0 +1,67 @@
+package com.apnaride.config;
+
+import com.apnaride.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Backfills users.phone_normalized for rows created before the column existed. Idempotent:
+ * only rows with a phone and no normalized value are touched. When two accounts share the
+ * same number, the oldest keeps it and the others are left unindexed and reported.
+ */
+@Component
+public class PhoneNormalizationMigration implements CommandLineRunner {
+
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void run(String... args) {
+        Set<String> taken = null; // loaded only when there is something to backfill
+        long after = 0;
+        int updated = 0;
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT id, phone FROM users WHERE phone IS NOT NULL AND phone_normalized IS NULL AND id > ? ORDER BY id LIMIT " + BATCH_SIZE,
+                    after);
+            if (rows.isEmpty()) {
+                break;
+            }
+            if (taken == null) {
+                taken = new HashSet<>(jdbcTemplate.queryForList(
+                        "SELECT phone_normalized FROM users WHERE phone_normalized IS NOT NULL", String.class));
+            }
+            List<Object[]> batch = new ArrayList<>();
+            for (Map<String, Object> row : rows) {
+                long id = ((Number) row.get("id")).longValue();
+                after = id;
+                String normalized = User.normalizePhone((String) row.get("phone"));
+                if (normalized == null) {
+                    continue;
+                }
+                if (!taken.add(normalized)) {
+                    System.err.println("Phone of user " + id + " duplicates another account; left out of the phone index");
+                    continue;
+                }
+                batch.add(new Object[]{normalized, id});
+            }
+            if (!batch.isEmpty()) {
+                jdbcTemplate.batchUpdate("UPDATE users SET phone_normalized = ? WHERE id = ?", batch);
+                updated += batch.size();
+            }
+        }
+        if (updated > 0) {
+            System.out.println("Normalized phone numbers for " + updated + " users");
+        }
+    }
+}
@@ -1,17 +1,28 @@
 package com.apnaride.controller;
 
+import com.apnaride.dto.IdTotals;
 import com.apnaride.model.Driver;
+import com.apnaride.model.FareStructure;
 import com.apnaride.model.User;
 import com.apnaride.model.Ride;
 import com.apnaride.repository.DriverRepository;
+import com.apnaride.repository.FareStructureRepository;
 import com.apnaride.repository.UserRepository;
 import com.apnaride.repository.RideRepository;
+import com.apnaride.service.DriverLocationService;
+import com.apnaride.service.DriverSpatialIndex;
+import com.apnaride.service.FareEngine;
+import com.apnaride.service.LiveAnalyticsService;
+import com.apnaride.service.RideExportService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -29,70 +40,45 @@ public class AdminController {
     @Autowired
     private RideRepository rideRepository;
 
-    // Dashboard Analytics
+    @Autowired
+    private DriverSpatialIndex driverSpatialIndex;
+
+    @Autowired
+    private DriverLocationService driverLocationService;
+
+    @Autowired
+    private LiveAnalyticsService liveAnalyticsService;
+
+    @Autowired
+    private RideExportService rideExportService;
+
+    @Autowired
+    private FareStructureRepository fareStructureRepository;
+
+    @Autowired
+    private FareEngine fareEngine;
+
+    // Dashboard Analytics: served from incrementally maintained counters, also pushed on /topic/admin/analytics
     @GetMapping("/analytics")
     public ResponseEntity<?> getAnalytics() {
-        Map<String, Object> analytics = new HashMap<>();
-        
-        // Total counts
-        analytics.put("totalRides", rideRepository.count());
-        analytics.put("totalDrivers", driverRepository.count());
-        analytics.put("totalCustomers", userRepository.findAll().stream()
-            .filter(u -> "customer".equals(u.getRole())).count());
-        
-        // Active drivers
-        analytics.put("activeDrivers", driverRepository.findByIsOnlineAndIsAvailable(true, true).size());
-        
-        // Revenue calculation
-        List<Ride> completedRides = rideRepository.findByStatus("COMPLETED");
-        double totalRevenue = completedRides.stream()
-            .mapToDouble(r -> r.getFare() != null ? r.getFare() : 0.0)
-            .sum();
-        analytics.put("totalRevenue", totalRevenue);
-        
-        // Today's stats
-        LocalDateTime todayStart = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0);
-        long todayRides = rideRepository.findAll().stream()
-            .filter(r -> r.getRequestedAt() != null && r.getRequestedAt().isAfter(todayStart))
-            .count();
-        analytics.put("todayRides", todayRides);
-        
-        double todayRevenue = rideRepository.findAll().stream()
-            .filter(r -> r.getRequestedAt() != null && r.getRequestedAt().isAfter(todayStart) 
-                && "COMPLETED".equals(r.getStatus()))
-            .mapToDouble(r -> r.getFare() != null ? r.getFare() : 0.0)
-            .sum();
-        analytics.put("todayRevenue", todayRevenue);
-        
-        // Pending driver approvals
-        long pendingApprovals = driverRepository.findAll().stream()
-            .filter(d -> "PENDING".equals(d.getVerificationStatus()))
-            .count();
-        analytics.put("pendingApprovals", pendingApprovals);
-        
-        // Vehicle type distribution
-        Map<String, Long> vehicleDistribution = driverRepository.findAll().stream()
-            .collect(Collectors.groupingBy(
-                d -> d.getVehicleType() != null ? d.getVehicleType() : "Unknown",
-                Collectors.counting()
-            ));
-        analytics.put("vehicleDistribution", vehicleDistribution);
-        
-        // Ride status distribution
-        Map<String, Long> rideStatusDistribution = rideRepository.findAll().stream()
-            .collect(Collectors.groupingBy(
-                r -> r.getStatus() != null ? r.getStatus() : "Unknown",
-                Collectors.counting()
-            ));
-        analytics.put("rideStatusDistribution", rideStatusDistribution);
-        
-        return ResponseEntity.ok(analytics);
+        return ResponseEntity.ok(liveAnalyticsService.snapshot());
     }
 
     // Driver Management
     @GetMapping("/drivers")
-    public ResponseEntity<List<Map<String, Object>>> getAllDrivers() {
-        List<Driver> drivers = driverRepository.findAll();
+    public ResponseEntity<List<Map<String, Object>>> getAllDrivers(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String vehicleType,
+            @RequestParam(required = false) String city) {
+        // Constant number of queries: drivers, their users (IN list), ride counts (GROUP BY)
+        Pageable page = Keyset.pageable(after, limit);
+        List<Driver> drivers = driverRepository.findPage(Keyset.after(after), status, vehicleType, city, page);
+        Map<Long, User> users = usersById(drivers.stream().map(Driver::getUserId));
+        Map<Long, IdTotals> rideTotals = byId(page.isPaged()
+            ? rideRepository.totalsGroupByRider(drivers.stream().map(Driver::getUserId).filter(Objects::nonNull).collect(Collectors.toSet()))
+            : rideRepository.totalsGroupByRider());
         List<Map<String, Object>> driverDetails = new ArrayList<>();
         
         for (Driver driver : drivers) {
@@ -100,38 +86,37 @@ public class AdminController {
             details.put("driver", driver);
             
             // Get user details
-            Optional<User> user = userRepository.findById(driver.getUserId());
-            user.ifPresent(u -> {
+            User u = users.get(driver.getUserId());
+            if (u != null) {
                 details.put("name", u.getName());
                 details.put("email", u.getEmail());
-            });
+            }
             
             // Get ride count
-            long rideCount = rideRepository.findByRiderId(driver.getUserId()).size();
-            details.put("totalRides", rideCount);
+            IdTotals totals = rideTotals.get(driver.getUserId());
+            details.put("totalRides", totals != null ? totals.getRides() : 0L);
             
             driverDetails.add(details);
         }
         
-        return ResponseEntity.ok(driverDetails);
+        return Keyset.page(drivers, Driver::getId, driverDetails, page);
     }
 
     @GetMapping("/drivers/pending")
     public ResponseEntity<List<Map<String, Object>>> getPendingDrivers() {
-        List<Driver> pendingDrivers = driverRepository.findAll().stream()
-            .filter(d -> "PENDING".equals(d.getVerificationStatus()))
-            .collect(Collectors.toList());
+        List<Driver> pendingDrivers = driverRepository.findByVerificationStatus("PENDING");
+        Map<Long, User> users = usersById(pendingDrivers.stream().map(Driver::getUserId));
         
         List<Map<String, Object>> driverDetails = new ArrayList<>();
         for (Driver driver : pendingDrivers) {
             Map<String, Object> details = new HashMap<>();
             details.put("driver", driver);
             
-            Optional<User> user = userRepository.findById(driver.getUserId());
-            user.ifPresent(u -> {
+            User u = users.get(driver.getUserId());
+            if (u != null) {
                 details.put("name", u.getName());
                 details.put("email", u.getEmail());
-            });
+            }
             
             driverDetails.add(details);
         }
@@ -182,7 +167,7 @@ public class AdminController {
         driver.setIsSuspended(true);
         driver.setIsOnline(false);
         driver.setIsAvailable(false);
-        driverRepository.save(driver);
+        driverLocationService.save(driver, false);
         
         return ResponseEntity.ok("Driver suspended successfully");
     }
@@ -197,7 +182,7 @@ public class AdminController {
         Driver driver = driverOpt.get();
         driver.setIsSuspended(false);
         driver.setIsAvailable(true);
-        driverRepository.save(driver);
+        driverLocationService.save(driver, false);
         
         return ResponseEntity.ok("Driver activated successfully");
     }
@@ -210,15 +195,22 @@ public class AdminController {
         }
         
         driverRepository.deleteById(driverId);
+        driverSpatialIndex.remove(driverOpt.get().getUserId());
         return ResponseEntity.ok("Driver deleted successfully");
     }
 
     // Customer Management
     @GetMapping("/customers")
-    public ResponseEntity<List<Map<String, Object>>> getAllCustomers() {
-        List<User> customers = userRepository.findAll().stream()
-            .filter(u -> "customer".equals(u.getRole()))
-            .collect(Collectors.toList());
+    public ResponseEntity<List<Map<String, Object>>> getAllCustomers(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit) {
+        Pageable page = Keyset.pageable(after, limit);
+        List<User> customers = page.isPaged()
+            ? userRepository.findByRoleAndIdGreaterThanOrderByIdAsc("customer", Keyset.after(after), page)
+            : userRepository.findByRole("customer");
+        Map<Long, IdTotals> rideTotals = byId(page.isPaged()
+            ? rideRepository.totalsGroupByCustomer(customers.stream().map(User::getId).collect(Collectors.toSet()))
+            : rideRepository.totalsGroupByCustomer());
         
         List<Map<String, Object>> customerDetails = new ArrayList<>();
         for (User customer : customers) {
@@ -227,21 +219,15 @@ public class AdminController {
             details.put("name", customer.getName());
             details.put("email", customer.getEmail());
             
-            // Get ride count
-            long rideCount = rideRepository.findByCustomerId(customer.getId()).size();
-            details.put("totalRides", rideCount);
-            
-            // Calculate total spent
-            double totalSpent = rideRepository.findByCustomerId(customer.getId()).stream()
-                .filter(r -> "COMPLETED".equals(r.getStatus()))
-                .mapToDouble(r -> r.getFare() != null ? r.getFare() : 0.0)
-                .sum();
-            details.put("totalSpent", totalSpent);
+            // Ride count and total spent on completed rides
+            IdTotals totals = rideTotals.get(customer.getId());
+            details.put("totalRides", totals != null ? totals.getRides() : 0L);
+            details.put("totalSpent", totals != null ? totals.getAmount() : 0.0);
             
             customerDetails.add(details);
         }
         
-        return ResponseEntity.ok(customerDetails);
+        return Keyset.page(customers, User::getId, customerDetails, page);
     }
 
     @DeleteMapping("/customers/{customerId}")
@@ -257,8 +243,17 @@ public class AdminController {
 
     // Ride Management
     @GetMapping("/rides/all")
-    public ResponseEntity<List<Map<String, Object>>> getAllRides() {
-        List<Ride> rides = rideRepository.findAll();
+    public ResponseEntity<List<Map<String, Object>>> getAllRides(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String vehicleType,
+            @RequestParam(required = false) String city) {
+        Pageable page = Keyset.pageable(after, limit);
+        List<Ride> rides = rideRepository.findPage(Keyset.after(after), null, null, status, vehicleType, city, page);
+        // Customers and riders of all rides in one IN-list fetch
+        Map<Long, User> users = usersById(rides.stream()
+            .flatMap(r -> java.util.stream.Stream.of(r.getCustomerId(), r.getRiderId())));
         List<Map<String, Object>> rideDetails = new ArrayList<>();
         
         for (Ride ride : rides) {
@@ -266,52 +261,59 @@ public class AdminController {
             details.put("ride", ride);
             
             // Get customer details
-            if (ride.getCustomerId() != null) {
-                Optional<User> customer = userRepository.findById(ride.getCustomerId());
-                customer.ifPresent(c -> details.put("customerName", c.getName()));
+            User customer = ride.getCustomerId() != null ? users.get(ride.getCustomerId()) : null;
+            if (customer != null) {
+                details.put("customerName", customer.getName());
             }
             
             // Get rider details
-            if (ride.getRiderId() != null) {
-                Optional<User> rider = userRepository.findById(ride.getRiderId());
-                rider.ifPresent(r -> details.put("riderName", r.getName()));
+            User rider = ride.getRiderId() != null ? users.get(ride.getRiderId()) : null;
+            if (rider != null) {
+                details.put("riderName", rider.getName());
             }
             
             rideDetails.add(details);
         }
         
-        return ResponseEntity.ok(rideDetails);
+        return Keyset.page(rides, Ride::getId, rideDetails, page);
+    }
+
+    /**
+     * Export rides as CSV (default) or JSON, streamed from a database cursor with constant memory
+     */
+    @GetMapping("/rides/export")
+    public ResponseEntity<StreamingResponseBody> exportRides(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String vehicleType,
+            @RequestParam(required = false) String city) {
+        boolean json = "json".equalsIgnoreCase(format);
+        StreamingResponseBody body = out -> {
+            if (json) {
+                rideExportService.writeJson(status, vehicleType, city, out);
+            } else {
+                rideExportService.writeCsv(status, vehicleType, city, out);
+            }
+        };
+        return ResponseEntity.ok()
+            .contentType(json ? MediaType.APPLICATION_JSON : MediaType.parseMediaType("text/csv"))
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"rides." + (json ? "json" : "csv") + "\"")
+            .body(body);
     }
 
     @GetMapping("/rides/stats")
     public ResponseEntity<?> getRideStats() {
         Map<String, Object> stats = new HashMap<>();
         
-        List<Ride> allRides = rideRepository.findAll();
-        
         // Status-wise count
-        Map<String, Long> statusCount = allRides.stream()
-            .collect(Collectors.groupingBy(
-                r -> r.getStatus() != null ? r.getStatus() : "Unknown",
-                Collectors.counting()
-            ));
-        stats.put("statusCount", statusCount);
+        stats.put("statusCount", LiveAnalyticsService.countsByLabel(rideRepository.countGroupByStatus()));
         
         // Vehicle type-wise count
-        Map<String, Long> vehicleCount = allRides.stream()
-            .collect(Collectors.groupingBy(
-                r -> r.getVehicleType() != null ? r.getVehicleType() : "Unknown",
-                Collectors.counting()
-            ));
-        stats.put("vehicleCount", vehicleCount);
+        stats.put("vehicleCount", LiveAnalyticsService.countsByLabel(rideRepository.countGroupByVehicleType()));
         
         // Average fare
-        double avgFare = allRides.stream()
-            .filter(r -> r.getFare() != null)
-            .mapToDouble(Ride::getFare)
-            .average()
-            .orElse(0.0);
-        stats.put("averageFare", avgFare);
+        Double avgFare = rideRepository.averageFare();
+        stats.put("averageFare", avgFare != null ? avgFare : 0.0);
         
         return ResponseEntity.ok(stats);
     }
@@ -319,10 +321,45 @@ public class AdminController {
     // City-wise statistics
     @GetMapping("/stats/cities")
     public ResponseEntity<?> getCityStats() {
-        Map<String, Long> cityStats = driverRepository.findAll().stream()
-            .filter(d -> d.getCity() != null)
-            .collect(Collectors.groupingBy(Driver::getCity, Collectors.counting()));
-        
-        return ResponseEntity.ok(cityStats);
+        return ResponseEntity.ok(LiveAnalyticsService.countsByLabel(driverRepository.countGroupByCity()));
+    }
+
+    // Fare structures: edits take effect on the next quote, without a restart
+    @GetMapping("/fares")
+    public ResponseEntity<?> getFares() {
+        Map<String, Object> fares = new HashMap<>();
+        fares.put("structures", fareStructureRepository.findAll());
+        fares.put("effective", fareEngine.getRates());
+        fares.put("epoch", fareEngine.getEpoch());
+        fares.put("loadedAt", fareEngine.getLoadedAt().toString());
+        return ResponseEntity.ok(fares);
+    }
+
+    @PutMapping("/fares/{vehicleType}")
+    public ResponseEntity<?> updateFare(@PathVariable String vehicleType, @RequestBody FareStructure update) {
+        FareStructure fare = fareStructureRepository.findFirstByVehicleTypeIgnoreCase(vehicleType).orElseGet(FareStructure::new);
+        fare.setVehicleType(vehicleType.trim().toLowerCase());
+        fare.setBaseFare(update.getBaseFare());
+        fare.setPerKmRate(update.getPerKmRate());
+        fare.setPerMinuteRate(update.getPerMinuteRate());
+        fare.setMinimumFare(update.getMinimumFare());
+        fare.setCancellationFee(update.getCancellationFee());
+        fare.setIsActive(update.getIsActive() == null || update.getIsActive());
+        FareStructure saved = fareStructureRepository.save(fare);
+        fareEngine.reload();
+        return ResponseEntity.ok(Map.of("success", true, "fare", saved, "epoch", fareEngine.getEpoch()));
+    }
+
+    private Map<Long, User> usersById(java.util.stream.Stream<Long> ids) {
+        Set<Long> distinct = ids.filter(Objects::nonNull).collect(Collectors.toSet());
+        if (distinct.isEmpty()) {
+            return Map.of();
+        }
+        return userRepository.findAllById(distinct).stream()
+            .collect(Collectors.toMap(User::getId, u -> u));
+    }
+
+    private static Map<Long, IdTotals> byId(List<IdTotals> rows) {
+        return rows.stream().collect(Collectors.toMap(IdTotals::getId, r -> r));
     }
 }
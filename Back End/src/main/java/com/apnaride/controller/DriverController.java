@@ -2,13 +2,21 @@ package com.apnaride.controller;
 
 import com.apnaride.model.Driver;
 import com.apnaride.repository.DriverRepository;
+import com.apnaride.service.DriverLocationBroadcaster;
+import com.apnaride.service.DriverLocationService;
+import com.apnaride.service.DriverSpatialIndex;
+import com.apnaride.service.GeoCellIndex;
+import com.apnaride.service.OfferCascade;
+import com.apnaride.service.RideMatchingService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/drivers")
@@ -18,6 +26,21 @@ public class DriverController {
     @Autowired
     private DriverRepository driverRepository;
 
+    @Autowired
+    private DriverSpatialIndex driverSpatialIndex;
+
+    @Autowired
+    private DriverLocationService driverLocationService;
+
+    @Autowired
+    private DriverLocationBroadcaster driverLocationBroadcaster;
+
+    @Autowired
+    private RideMatchingService rideMatchingService;
+
+    @Autowired
+    private OfferCascade offerCascade;
+
     @PostMapping("/register")
     public ResponseEntity<?> registerDriver(@RequestBody Driver driver) {
         // Check if driver already exists for this user
@@ -54,6 +77,18 @@ public class DriverController {
             @PathVariable Long userId,
             @RequestBody java.util.Map<String, Object> statusUpdate) {
         
+        // Location-only heartbeat from an online driver: write-behind, no SELECT/UPDATE on this thread
+        if (!statusUpdate.containsKey("isOnline") && statusUpdate.get("lat") instanceof Number
+                && statusUpdate.get("lng") instanceof Number) {
+            Optional<Driver> tracked = driverLocationService.trackLocation(userId,
+                    ((Number) statusUpdate.get("lat")).doubleValue(),
+                    ((Number) statusUpdate.get("lng")).doubleValue(),
+                    java.time.LocalDateTime.now());
+            if (tracked.isPresent()) {
+                return ResponseEntity.ok(tracked.get());
+            }
+        }
+
         Optional<Driver> driverOpt = driverRepository.findByUserId(userId);
         if (driverOpt.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Driver not found");
@@ -69,34 +104,43 @@ public class DriverController {
                 driver.setIsAvailable(true);
             } else if (!isOnline) {
                 driver.setIsAvailable(false);
+                driverLocationBroadcaster.evict(userId);
+                offerCascade.onDriverGone(userId);
             }
         }
         
-        if (statusUpdate.containsKey("lat") && statusUpdate.containsKey("lng")) {
+        boolean newPosition = statusUpdate.containsKey("lat") && statusUpdate.containsKey("lng");
+        if (newPosition) {
             driver.setCurrentLat(((Number) statusUpdate.get("lat")).doubleValue());
             driver.setCurrentLng(((Number) statusUpdate.get("lng")).doubleValue());
         }
         
         driver.setLastActive(java.time.LocalDateTime.now());
 
-        Driver savedDriver = driverRepository.save(driver);
+        Driver savedDriver = driverLocationService.save(driver, newPosition);
         return ResponseEntity.ok(savedDriver);
     }
 
     @GetMapping("/available")
     public ResponseEntity<List<Driver>> getAvailableDrivers() {
-        List<Driver> drivers = driverRepository.findByIsOnlineAndIsAvailable(true, true);
+        List<Driver> drivers = driverSpatialIndex.findAll(null, true);
         return ResponseEntity.ok(drivers);
     }
 
     @GetMapping("/all")
-    public ResponseEntity<List<Driver>> getAllDrivers() {
-        List<Driver> drivers = driverRepository.findAll();
-        return ResponseEntity.ok(drivers);
+    public ResponseEntity<List<Driver>> getAllDrivers(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String vehicleType,
+            @RequestParam(required = false) String city) {
+        Pageable page = Keyset.pageable(after, limit);
+        List<Driver> drivers = driverRepository.findPage(Keyset.after(after), status, vehicleType, city, page);
+        return Keyset.page(drivers, Driver::getId, drivers, page);
     }
 
     @GetMapping("/nearby")
-    public ResponseEntity<List<java.util.Map<String, Object>>> getNearbyDrivers(
+    public CompletableFuture<ResponseEntity<List<java.util.Map<String, Object>>>> getNearbyDrivers(
             @RequestParam(required = false) Double lat,
             @RequestParam(required = false) Double lng,
             @RequestParam(required = false) Double latitude,
@@ -110,49 +154,40 @@ public class DriverController {
         Double searchRadius = (radius != null) ? radius : radiusKm;
         
         if (searchLat == null || searchLng == null) {
-            return ResponseEntity.badRequest().body(null);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(null));
         }
         
-        List<Driver> onlineDrivers = driverRepository.findByIsOnline(true);
-        List<java.util.Map<String, Object>> nearbyDrivers = new java.util.ArrayList<>();
-
-        for (Driver driver : onlineDrivers) {
-            if (driver.getCurrentLat() != null && driver.getCurrentLng() != null) {
-                double distance = calculateDistance(searchLat, searchLng, driver.getCurrentLat(), driver.getCurrentLng());
-                
-                if (distance <= searchRadius) {
-                    java.util.Map<String, Object> driverInfo = new java.util.HashMap<>();
-                    driverInfo.put("driverId", driver.getUserId());
-                    driverInfo.put("vehicleType", driver.getVehicleType());
-                    driverInfo.put("vehicleNumber", driver.getVehicleNumber());
-                    driverInfo.put("rating", driver.getRating());
-                    driverInfo.put("currentLat", driver.getCurrentLat());
-                    driverInfo.put("currentLng", driver.getCurrentLng());
-                    driverInfo.put("distance", Math.round(distance * 10.0) / 10.0);
-                    driverInfo.put("isAvailable", driver.getIsAvailable());
-                    nearbyDrivers.add(driverInfo);
-                }
+        // Served from the in-memory index: only cells overlapping the search circle are read
+        List<GeoCellIndex.Hit<Driver>> hits = driverSpatialIndex.findNearby(searchLat, searchLng, searchRadius, null, false);
+
+        // The nearest candidates get road ETAs from one matrix call and lead the list, fastest first
+        return rideMatchingService.rankByEta(hits, searchLat, searchLng).thenApply(ranked -> {
+            List<java.util.Map<String, Object>> nearbyDrivers = new java.util.ArrayList<>();
+            for (RideMatchingService.RankedDriver rankedDriver : ranked) {
+                java.util.Map<String, Object> driverInfo = driverInfo(rankedDriver.getHit());
+                driverInfo.put("etaSeconds", Math.round(rankedDriver.getEtaSeconds()));
+                driverInfo.put("roadDistance", Math.round(rankedDriver.getRoadDistanceMeters() / 100.0) / 10.0);
+                driverInfo.put("etaEstimated", rankedDriver.isEstimate());
+                nearbyDrivers.add(driverInfo);
             }
-        }
-
-        // Sort by distance (nearest first)
-        nearbyDrivers.sort((a, b) -> Double.compare((Double)a.get("distance"), (Double)b.get("distance")));
-
-        return ResponseEntity.ok(nearbyDrivers);
+            for (GeoCellIndex.Hit<Driver> hit : hits.subList(ranked.size(), hits.size())) {
+                nearbyDrivers.add(driverInfo(hit));
+            }
+            return ResponseEntity.ok(nearbyDrivers);
+        });
     }
 
-    // Helper method to calculate distance using Haversine formula
-    private double calculateDistance(Double lat1, Double lng1, Double lat2, Double lng2) {
-        if (lat1 == null || lng1 == null || lat2 == null || lng2 == null) {
-            return Double.MAX_VALUE;
-        }
-        double R = 6371; // Radius of Earth in km
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLng = Math.toRadians(lng2 - lng1);
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                   Math.sin(dLng / 2) * Math.sin(dLng / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c;
+    private static java.util.Map<String, Object> driverInfo(GeoCellIndex.Hit<Driver> hit) {
+        Driver driver = hit.getValue();
+        java.util.Map<String, Object> driverInfo = new java.util.HashMap<>();
+        driverInfo.put("driverId", driver.getUserId());
+        driverInfo.put("vehicleType", driver.getVehicleType());
+        driverInfo.put("vehicleNumber", driver.getVehicleNumber());
+        driverInfo.put("rating", driver.getRating());
+        driverInfo.put("currentLat", hit.getLat());
+        driverInfo.put("currentLng", hit.getLng());
+        driverInfo.put("distance", Math.round(hit.getDistanceKm() * 10.0) / 10.0);
+        driverInfo.put("isAvailable", driver.getIsAvailable());
+        return driverInfo;
     }
 }
@@ -0,0 +1,65 @@
+package com.apnaride.controller;
+
+import com.apnaride.service.FareEngine;
+import com.apnaride.service.FareQuoteService;
+import com.apnaride.service.SurgeEngine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/fares")
+@CrossOrigin(origins = "*")
+public class FareController {
+
+    @Autowired
+    private FareEngine fareEngine;
+
+    @Autowired
+    private FareQuoteService fareQuoteService;
+
+    @Autowired
+    private SurgeEngine surgeEngine;
+
+    // Current rates per vehicle type
+    @GetMapping
+    public ResponseEntity<?> rates() {
+        Map<String, Object> body = new HashMap<>();
+        body.put("success", true);
+        body.put("epoch", fareEngine.getEpoch());
+        body.put("rates", fareEngine.getRates());
+        return ResponseEntity.ok(body);
+    }
+
+    // Price a trip for one vehicle type, or for every vehicle type when none is given; cached per cell pair
+    @GetMapping("/quote")
+    public ResponseEntity<?> quote(
+            @RequestParam Double pickupLat,
+            @RequestParam Double pickupLng,
+            @RequestParam Double dropLat,
+            @RequestParam Double dropLng,
+            @RequestParam(required = false) String vehicleType) {
+        List<FareEngine.Quote> quotes = vehicleType == null || vehicleType.isBlank()
+                ? fareQuoteService.quoteAll(pickupLat, pickupLng, dropLat, dropLng)
+                : List.of(fareQuoteService.quote(vehicleType, pickupLat, pickupLng, dropLat, dropLng));
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("success", true);
+        body.put("distanceKm", quotes.get(0).getDistanceKm());
+        body.put("durationMinutes", quotes.get(0).getDurationMinutes());
+        body.put("quotes", quotes);
+        return ResponseEntity.ok(body);
+    }
+
+    // Hot zones, the same payload pushed on /topic/surge every tick
+    @GetMapping("/surge")
+    public ResponseEntity<?> surge() {
+        Map<String, Object> body = surgeEngine.toMessage();
+        body.put("success", true);
+        return ResponseEntity.ok(body);
+    }
+}
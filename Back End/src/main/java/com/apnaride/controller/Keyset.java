@@ -0,0 +1,50 @@
+package com.apnaride.controller;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Cursor pagination for list endpoints. A page is requested with ?after=&lt;id&gt;&amp;limit=&lt;n&gt;;
+ * the body stays a plain JSON array and the cursor for the next page is returned in the
+ * X-Next-Cursor header (absent on the last page). Without either parameter endpoints keep
+ * returning the full list.
+ */
+final class Keyset {
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+
+    private Keyset() {
+    }
+
+    static long after(Long after) {
+        return after != null ? after : 0L;
+    }
+
+    /**
+     * Page size for the request, or unpaged when the caller asked for neither a cursor nor a limit
+     */
+    static Pageable pageable(Long after, Integer limit) {
+        if (after == null && limit == null) {
+            return Pageable.unpaged();
+        }
+        int size = limit == null ? DEFAULT_LIMIT : Math.max(1, Math.min(limit, MAX_LIMIT));
+        return PageRequest.of(0, size);
+    }
+
+    /**
+     * Build the response for a page; rows are the entities fetched, body what gets serialized
+     */
+    static <E, T> ResponseEntity<List<T>> page(List<E> rows, Function<E, Long> id, List<T> body, Pageable page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.isPaged() && !rows.isEmpty() && rows.size() == page.getPageSize()) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(id.apply(rows.get(rows.size() - 1))));
+        }
+        return response.body(body);
+    }
+}
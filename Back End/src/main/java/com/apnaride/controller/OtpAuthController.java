@@ -2,20 +2,17 @@ package com.apnaride.controller;
 
 import com.apnaride.dto.AuthResponse;
 import com.apnaride.model.User;
-import com.apnaride.repository.UserRepository;
+import com.apnaride.service.OtpStore;
+import com.apnaride.service.PhoneDirectory;
+import com.apnaride.service.WhatsAppClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.bind.annotation.*;
 
+import java.security.SecureRandom;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -23,20 +20,15 @@ import java.util.concurrent.ConcurrentHashMap;
 public class OtpAuthController {
 
     @Autowired
-    private UserRepository userRepository;
+    private PhoneDirectory phoneDirectory;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    private OtpStore otpStore;
 
-    private static class OtpEntry {
-        final String code;
-        final LocalDateTime expiresAt;
-        final LocalDateTime lastSentAt;
-        OtpEntry(String code, LocalDateTime expiresAt, LocalDateTime lastSentAt) {
-            this.code = code; this.expiresAt = expiresAt; this.lastSentAt = lastSentAt;
-        }
-    }
+    @Autowired
+    private WhatsAppClient whatsAppClient;
 
-    private static final Map<String, OtpEntry> OTP_STORE = new ConcurrentHashMap<>();
+    private static final SecureRandom RANDOM = new SecureRandom();
 
     @PostMapping("/send-otp")
     public ResponseEntity<?> sendOtp(@RequestBody Map<String, String> payload) {
@@ -44,42 +36,26 @@ public class OtpAuthController {
         if (phone == null || phone.trim().isEmpty()) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("success", false, "error", "Phone is required"));
         }
-        OtpEntry existing = OTP_STORE.get(phone);
-        LocalDateTime now = LocalDateTime.now();
-        if (existing != null && existing.lastSentAt != null && now.isBefore(existing.lastSentAt.plusSeconds(60))) {
-            long wait = java.time.Duration.between(now, existing.lastSentAt.plusSeconds(60)).getSeconds();
+        String code = String.format("%06d", RANDOM.nextInt(1_000_000));
+        OtpStore.IssueResult issued = otpStore.issue(storeKey(phone), code);
+        if (issued.getStatus() == OtpStore.IssueResult.Status.COOLDOWN) {
             return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
-                    .body(Map.of("success", false, "error", "Please wait " + wait + "s before requesting another OTP"));
+                    .body(Map.of("success", false, "error", "Please wait " + issued.getRetryAfterSeconds() + "s before requesting another OTP"));
+        }
+        if (issued.getStatus() == OtpStore.IssueResult.Status.FULL) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("success", false, "error", "OTP service is busy. Please try again shortly."));
         }
-        String code = String.format("%06d", new Random().nextInt(1_000_000));
-        LocalDateTime expires = now.plusMinutes(5);
-        OTP_STORE.put(phone, new OtpEntry(code, expires, now));
+        LocalDateTime expires = issued.getExpiresAt();
 
         boolean otpDebug = Boolean.parseBoolean(System.getenv().getOrDefault("OTP_DEBUG", "false"));
-        String waToken = System.getenv().getOrDefault("WHATSAPP_TOKEN", "").trim();
-        String waPhoneNumberId = System.getenv().getOrDefault("WHATSAPP_PHONE_NUMBER_ID", "").trim();
-        boolean waConfigured = !waToken.isEmpty() && !waPhoneNumberId.isEmpty();
-
-        if (waConfigured) {
-            try {
-                Map<String, Object> payloadBody = new LinkedHashMap<>();
-                payloadBody.put("messaging_product", "whatsapp");
-                payloadBody.put("to", phone);
-                payloadBody.put("type", "text");
-                payloadBody.put("text", Map.of("body", "Your ApnaRide OTP is: " + code + " (valid for 5 minutes)"));
+        boolean waConfigured = whatsAppClient.isConfigured();
 
-                HttpHeaders headers = new HttpHeaders();
-                headers.setContentType(MediaType.APPLICATION_JSON);
-                headers.setBearerAuth(waToken);
-
-                String url = "https://graph.facebook.com/v20.0/" + waPhoneNumberId + "/messages";
-                restTemplate.postForEntity(url, new HttpEntity<>(payloadBody, headers), String.class);
-            } catch (RestClientException ex) {
-                return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(Map.of(
-                        "success", false,
-                        "error", "Unable to send OTP via WhatsApp at the moment. Please try again."
-                ));
-            }
+        if (waConfigured && !whatsAppClient.sendText(phone, "Your ApnaRide OTP is: " + code + " (valid for 5 minutes)")) {
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(Map.of(
+                    "success", false,
+                    "error", "Unable to send OTP via WhatsApp at the moment. Please try again."
+            ));
         }
 
         Map<String, Object> resp = new LinkedHashMap<>();
@@ -98,15 +74,14 @@ public class OtpAuthController {
         if (phone == null || phone.trim().isEmpty() || code == null || code.trim().isEmpty()) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("success", false, "error", "Phone and code are required"));
         }
-        OtpEntry entry = OTP_STORE.get(phone);
-        if (entry == null || LocalDateTime.now().isAfter(entry.expiresAt) || !entry.code.equals(code)) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("success", false, "error", "Invalid or expired OTP"));
+        OtpStore.VerifyResult result = otpStore.verify(storeKey(phone), code.trim());
+        if (result == OtpStore.VerifyResult.LOCKED) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(Map.of("success", false, "error", "Too many attempts. Please request a new OTP."));
         }
-        // Find user by phone without repository method change
-        User matched = null;
-        for (User u : userRepository.findAll()) {
-            if (u.getPhone() != null && u.getPhone().equals(phone)) { matched = u; break; }
+        if (result != OtpStore.VerifyResult.VALID) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("success", false, "error", "Invalid or expired OTP"));
         }
+        User matched = phoneDirectory.findUser(phone).orElse(null);
         if (matched == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("success", false, "error", "No account found for this mobile number. Please sign up."));
         }
@@ -119,4 +94,10 @@ public class OtpAuthController {
                 matched.getEmergencyPhone()
         ));
     }
+
+    // Codes are keyed by the normalized number so "+91 98765 43210" and "9876543210" share one
+    private static String storeKey(String phone) {
+        String normalized = User.normalizePhone(phone);
+        return normalized != null ? normalized : phone.trim();
+    }
 }
@@ -3,20 +3,19 @@ package com.apnaride.controller;
 import com.apnaride.dto.PaymentIntentRequest;
 import com.apnaride.model.PaymentTransaction;
 import com.apnaride.model.Ride;
+import com.apnaride.model.RideStatus;
 import com.apnaride.repository.PaymentTransactionRepository;
 import com.apnaride.repository.RideRepository;
 import com.apnaride.service.PaymentService;
+import com.apnaride.service.RazorpayClient;
+import com.apnaride.service.RideStateMachine;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
-import java.net.URL;
-import java.net.HttpURLConnection;
 import java.nio.charset.StandardCharsets;
-import java.util.Base64;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
@@ -37,6 +36,12 @@ public class PaymentController {
     @Autowired
     private RideRepository rideRepository;
 
+    @Autowired
+    private RideStateMachine rideStateMachine;
+
+    @Autowired
+    private RazorpayClient razorpayClient;
+
     @PostMapping("/create-intent")
     public ResponseEntity<?> createIntent(@RequestBody PaymentIntentRequest request) {
         PaymentTransaction txn = paymentService.createPaymentIntent(request);
@@ -55,55 +60,15 @@ public class PaymentController {
             String currency = String.valueOf(payload.getOrDefault("currency", "INR"));
             String receipt = String.valueOf(payload.getOrDefault("receipt", "rcpt_" + System.currentTimeMillis()));
 
-            String keyId = System.getenv("RAZORPAY_KEY_ID");
-            String keySecret = System.getenv("RAZORPAY_KEY_SECRET");
-
-            // If keys are available, attempt real order creation; otherwise, return a mock order
-            if (keyId != null && !keyId.isEmpty() && keySecret != null && !keySecret.isEmpty()) {
-                try {
-                    ObjectMapper mapper = new ObjectMapper();
-                    Map<String, Object> req = new HashMap<>();
-                    req.put("amount", amount);
-                    req.put("currency", currency);
-                    req.put("receipt", receipt);
-                    String json = mapper.writeValueAsString(req);
-
-                    String auth = keyId + ":" + keySecret;
-                    String basic = Base64.getEncoder().encodeToString(auth.getBytes(StandardCharsets.UTF_8));
-
-                    URL url = new URL("https://api.razorpay.com/v1/orders");
-                    HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-                    conn.setRequestMethod("POST");
-                    conn.setRequestProperty("Authorization", "Basic " + basic);
-                    conn.setRequestProperty("Content-Type", "application/json");
-                    conn.setDoOutput(true);
-                    try (java.io.OutputStream os = conn.getOutputStream()) {
-                        byte[] input = json.getBytes(StandardCharsets.UTF_8);
-                        os.write(input, 0, input.length);
-                    }
-                    int status = conn.getResponseCode();
-                    java.io.InputStream is = (status >= 200 && status < 300) ? conn.getInputStream() : conn.getErrorStream();
-                    java.io.BufferedReader in = new java.io.BufferedReader(new java.io.InputStreamReader(is, StandardCharsets.UTF_8));
-                    StringBuilder respSb = new StringBuilder();
-                    String line;
-                    while ((line = in.readLine()) != null) { respSb.append(line); }
-                    in.close();
-                    String respBody = respSb.toString();
-                    if (status >= 200 && status < 300) {
-                        Map<?, ?> respMap = mapper.readValue(respBody, Map.class);
-                        String orderId = String.valueOf(respMap.get("id"));
-                        Map<String, Object> out = new HashMap<>();
-                        out.put("success", true);
-                        out.put("orderId", orderId);
-                        out.put("amount", amount);
-                        out.put("currency", currency);
-                        return ResponseEntity.ok(out);
-                    } else {
-                        // Fall through to mock if Razorpay call fails
-                    }
-                } catch (Exception ex) {
-                    // Fall back to mock order if real call fails
-                }
+            // Real order when Razorpay is configured and answers; otherwise a mock order
+            Optional<String> orderId = razorpayClient.createOrder(amount, currency, receipt);
+            if (orderId.isPresent()) {
+                Map<String, Object> out = new HashMap<>();
+                out.put("success", true);
+                out.put("orderId", orderId.get());
+                out.put("amount", amount);
+                out.put("currency", currency);
+                return ResponseEntity.ok(out);
             }
 
             Map<String, Object> mock = new HashMap<>();
@@ -187,12 +152,8 @@ public class PaymentController {
             txn.setCompletedAt(LocalDateTime.now());
             paymentTransactionRepository.save(txn);
 
-            // Optionally mark ride as COMPLETED only if not already
-            if (!"COMPLETED".equalsIgnoreCase(ride.getStatus())) {
-                ride.setStatus("COMPLETED");
-                ride.setCompletedAt(LocalDateTime.now());
-                rideRepository.save(ride);
-            }
+            // Complete the ride if it is still running; a completed or cancelled ride is left as is
+            rideStateMachine.transition(ride, RideStatus.COMPLETED);
 
             return ResponseEntity.ok(Map.of(
                     "success", true,
@@ -82,20 +82,13 @@ public class PromoCodeController {
         PromoCode promo = promoOpt.get();
 
         // Validate promo
-        if (!promo.isActive() || 
-            (promo.getExpiryDate() != null && promo.getExpiryDate().isBefore(LocalDateTime.now())) ||
-            (promo.getMaxUsage() != null && promo.getUsageCount() >= promo.getMaxUsage())) {
+        if (!promo.isRedeemableAt(LocalDateTime.now())) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                 .body(createErrorResponse("Promo code is not valid"));
         }
 
-        // Calculate discount
-        double discountAmount = (originalFare * promo.getDiscountPercentage()) / 100.0;
-        
-        // Apply max discount limit if set
-        if (promo.getMaxDiscountAmount() != null && discountAmount > promo.getMaxDiscountAmount()) {
-            discountAmount = promo.getMaxDiscountAmount();
-        }
+        // Percentage discount, capped at the max discount if set
+        double discountAmount = promo.discountFor(originalFare);
 
         double finalFare = originalFare - discountAmount;
 
@@ -3,13 +3,25 @@ package com.apnaride.controller;
 import com.apnaride.model.Ride;
 import com.apnaride.model.User;
 import com.apnaride.model.Driver;
+import com.apnaride.model.RideStatus;
 import com.apnaride.repository.RideRepository;
 import com.apnaride.repository.UserRepository;
 import com.apnaride.repository.DriverRepository;
 import com.apnaride.dto.RideRequest;
 import com.apnaride.dto.RideResponse;
 import com.apnaride.dto.RideUpdate;
+import com.apnaride.service.BatchDispatcher;
+import com.apnaride.service.DriverLocationService;
+import com.apnaride.service.DriverSpatialIndex;
+import com.apnaride.service.FareQuoteService;
+import com.apnaride.service.GeoCellIndex;
+import com.apnaride.service.LiveAnalyticsService;
+import com.apnaride.service.OpenRideIndex;
+import com.apnaride.service.RideClaimService;
+import com.apnaride.service.RideStateMachine;
+import com.apnaride.service.SurgeEngine;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -35,6 +47,33 @@ public class RideController {
     @Autowired
     private WebSocketController webSocketController;
 
+    @Autowired
+    private DriverSpatialIndex driverSpatialIndex;
+
+    @Autowired
+    private DriverLocationService driverLocationService;
+
+    @Autowired
+    private OpenRideIndex openRideIndex;
+
+    @Autowired
+    private LiveAnalyticsService liveAnalyticsService;
+
+    @Autowired
+    private FareQuoteService fareQuoteService;
+
+    @Autowired
+    private SurgeEngine surgeEngine;
+
+    @Autowired
+    private BatchDispatcher batchDispatcher;
+
+    @Autowired
+    private RideClaimService rideClaimService;
+
+    @Autowired
+    private RideStateMachine rideStateMachine;
+
     @PostMapping("/request")
     public ResponseEntity<?> requestRide(@RequestBody RideRequest rideRequest) {
         Ride ride = new Ride();
@@ -48,18 +87,18 @@ public class RideController {
         ride.setDropLat(rideRequest.getDropLat());
         ride.setDropLng(rideRequest.getDropLng());
         
-        // Calculate fare based on distance (simplified)
-        double distance = calculateDistance(
+        // Same cached quote the customer was shown for this pickup/drop cell pair
+        ride.setFare(fareQuoteService.quote(rideRequest.getVehicleType(),
             rideRequest.getPickupLat(), rideRequest.getPickupLng(),
-            rideRequest.getDropLat(), rideRequest.getDropLng()
-        );
-        double baseFare = getBaseFare(rideRequest.getVehicleType());
-        ride.setFare(baseFare + (distance * 10)); // ₹10 per km
+            rideRequest.getDropLat(), rideRequest.getDropLng()).getTotal());
         
         ride.setStatus("REQUESTED");
         ride.setRequestedAt(LocalDateTime.now());
 
         Ride savedRide = rideRepository.save(ride);
+        openRideIndex.update(savedRide);
+        liveAnalyticsService.onRequested(savedRide);
+        surgeEngine.recordRequest(savedRide.getPickupLat(), savedRide.getPickupLng(), savedRide.getVehicleType());
 
         RideResponse response = new RideResponse(
             savedRide.getBookingId(),
@@ -71,42 +110,8 @@ public class RideController {
         );
         response.setRequestedAt(savedRide.getRequestedAt());
 
-        // Enforce vehicle type matching: notify only online & available drivers with same vehicleType
-        try {
-            List<Driver> onlineAvail = driverRepository.findByIsOnlineAndIsAvailable(true, true);
-            String requestedType = (rideRequest.getVehicleType() != null) ? rideRequest.getVehicleType().trim() : null;
-
-            List<Driver> typeMatches = onlineAvail.stream()
-                .filter(d -> {
-                    String vt = d.getVehicleType();
-                    return requestedType == null || (vt != null && vt.equalsIgnoreCase(requestedType));
-                })
-                .collect(Collectors.toList());
-
-            // Prefer drivers within 10km of pickup if driver has location
-            List<Long> nearbyTypeMatchIds = typeMatches.stream()
-                .filter(d -> d.getCurrentLat() != null && d.getCurrentLng() != null)
-                .filter(d -> calculateDistance(
-                        rideRequest.getPickupLat(), rideRequest.getPickupLng(),
-                        d.getCurrentLat(), d.getCurrentLng()) <= 10.0)
-                .map(Driver::getUserId)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
-
-            if (!nearbyTypeMatchIds.isEmpty()) {
-                nearbyTypeMatchIds.forEach(id -> webSocketController.sendRideRequest(id, response));
-            } else {
-                // If no location-qualified drivers, send to all online+available of matching type
-                List<Long> allTypeMatchIds = typeMatches.stream()
-                    .map(Driver::getUserId)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
-                allTypeMatchIds.forEach(id -> webSocketController.sendRideRequest(id, response));
-            }
-        } catch (Exception e) {
-            // As a fail-safe, do not spam all drivers of other types; just log.
-            System.err.println("Type-matched dispatch failed: " + e.getMessage());
-        }
+        // Targeted offers from the next assignment window (or a type-matched broadcast, see BatchDispatcher)
+        batchDispatcher.submit(savedRide, response);
 
         return ResponseEntity.ok(response);
     }
@@ -138,28 +143,24 @@ public class RideController {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("success", false, "message", "Incorrect OTP. Please check and try again."));
             }
-            ride.setStatus("IN_PROGRESS");
-            Ride savedRide = rideRepository.save(ride);
+            // ACCEPTED -> IN_PROGRESS notifies the customer; a repeated verify of a started ride is fine
+            if (!"IN_PROGRESS".equals(ride.getStatus())) {
+                RideStateMachine.Outcome outcome = rideStateMachine.transition(ride, RideStatus.IN_PROGRESS);
+                if (outcome != RideStateMachine.Outcome.APPLIED) {
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body(Map.of("success", false, "message", "Ride cannot be started", "currentStatus", currentStatus(ride, outcome)));
+                }
+            }
 
             RideResponse response = new RideResponse(
-                savedRide.getBookingId(),
-                savedRide.getPickupLocation(),
-                savedRide.getDropLocation(),
-                savedRide.getVehicleType(),
-                savedRide.getFare(),
-                savedRide.getStatus()
+                ride.getBookingId(),
+                ride.getPickupLocation(),
+                ride.getDropLocation(),
+                ride.getVehicleType(),
+                ride.getFare(),
+                ride.getStatus()
             );
 
-            // Notify customer that ride started
-            try {
-                RideUpdate update = new RideUpdate("RIDE_STARTED", bookingId, "IN_PROGRESS");
-                update.setRide(response);
-                update.setMessage("Your ride has started!");
-                webSocketController.sendRideUpdate(savedRide.getCustomerId(), update);
-            } catch (Exception e) {
-                System.err.println("WebSocket notification failed: " + e.getMessage());
-            }
-
             return ResponseEntity.ok(Map.of(
                 "success", true,
                 "message", "OTP verified. Ride started.",
@@ -187,29 +188,31 @@ public class RideController {
     }
 
     @GetMapping("/customer/{customerId}")
-    public ResponseEntity<List<RideResponse>> getCustomerRides(@PathVariable Long customerId) {
-        List<Ride> rides = rideRepository.findByCustomerId(customerId);
-        List<RideResponse> responses = rides.stream().map(ride -> {
-            RideResponse response = new RideResponse(
-                ride.getBookingId(),
-                ride.getPickupLocation(),
-                ride.getDropLocation(),
-                ride.getVehicleType(),
-                ride.getFare(),
-                ride.getStatus()
-            );
-            response.setRequestedAt(ride.getRequestedAt());
-            response.setDriverId(ride.getRiderId());
-            return response;
-        }).collect(Collectors.toList());
-
-        return ResponseEntity.ok(responses);
+    public ResponseEntity<List<RideResponse>> getCustomerRides(
+            @PathVariable Long customerId,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String vehicleType) {
+        Pageable page = Keyset.pageable(after, limit);
+        List<Ride> rides = rideRepository.findPage(Keyset.after(after), customerId, null, status, vehicleType, null, page);
+        return Keyset.page(rides, Ride::getId, toHistory(rides), page);
     }
 
     @GetMapping("/rider/{riderId}")
-    public ResponseEntity<List<RideResponse>> getRiderRides(@PathVariable Long riderId) {
-        List<Ride> rides = rideRepository.findByRiderId(riderId);
-        List<RideResponse> responses = rides.stream().map(ride -> {
+    public ResponseEntity<List<RideResponse>> getRiderRides(
+            @PathVariable Long riderId,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String vehicleType) {
+        Pageable page = Keyset.pageable(after, limit);
+        List<Ride> rides = rideRepository.findPage(Keyset.after(after), null, riderId, status, vehicleType, null, page);
+        return Keyset.page(rides, Ride::getId, toHistory(rides), page);
+    }
+
+    private List<RideResponse> toHistory(List<Ride> rides) {
+        return rides.stream().map(ride -> {
             RideResponse response = new RideResponse(
                 ride.getBookingId(),
                 ride.getPickupLocation(),
@@ -222,132 +225,75 @@ public class RideController {
             response.setDriverId(ride.getRiderId());
             return response;
         }).collect(Collectors.toList());
-
-        return ResponseEntity.ok(responses);
     }
 
     @PutMapping("/{bookingId}/accept/{riderId}")
     public ResponseEntity<?> acceptRide(@PathVariable String bookingId, @PathVariable Long riderId) {
+        RideClaimService.Claim claim = null;
         try {
             System.out.println("=== ACCEPT RIDE REQUEST ===");
             System.out.println("Booking ID: " + bookingId);
             System.out.println("Rider ID: " + riderId);
             
-            Optional<Ride> rideOpt = rideRepository.findByBookingId(bookingId);
-            if (rideOpt.isEmpty()) {
-                System.out.println("ERROR: Ride not found for booking ID: " + bookingId);
-                return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(Map.of("error", "Ride not found", "success", false));
-            }
-
-            Ride ride = rideOpt.get();
-            System.out.println("Ride found. Status: " + ride.getStatus());
-            if (!ride.getStatus().equals("REQUESTED")) {
-                // Idempotency: if this same driver already accepted, return current ride as success
-                if ("ACCEPTED".equals(ride.getStatus()) && Objects.equals(ride.getRiderId(), riderId)) {
-                    System.out.println("Ride already ACCEPTED by the same rider. Returning existing ride as success.");
-
-                    RideResponse response = new RideResponse(
-                        ride.getBookingId(),
-                        ride.getPickupLocation(),
-                        ride.getDropLocation(),
-                        ride.getVehicleType(),
-                        ride.getFare(),
-                        ride.getStatus()
-                    );
-                    response.setRequestedAt(ride.getRequestedAt());
-                    response.setPickupLat(ride.getPickupLat());
-                    response.setPickupLng(ride.getPickupLng());
-                    response.setDropLat(ride.getDropLat());
-                    response.setDropLng(ride.getDropLng());
-                    response.setDriverId(ride.getRiderId());
-
-                    // Optionally add driver details if available
-                    Optional<User> userOptForAccepted = userRepository.findById(ride.getRiderId());
-                    Optional<Driver> driverOptForAccepted = driverRepository.findByUserId(ride.getRiderId());
-                    if (userOptForAccepted.isPresent() && driverOptForAccepted.isPresent()) {
-                        User user = userOptForAccepted.get();
-                        Driver driver = driverOptForAccepted.get();
-                        response.setDriverName(user.getName());
-                        response.setVehicleNumber(driver.getVehicleNumber());
-                        response.setRating(driver.getRating());
-                    }
-
-                    return ResponseEntity.ok(Map.of(
-                        "success", true,
-                        "message", "Ride already accepted by you",
-                        "ride", response
-                    ));
-                }
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body(Map.of("error", "Ride already accepted or completed", "success", false, "currentStatus", ride.getStatus()));
-            }
-
-            // Verify driver exists and is available
-            Optional<Driver> driverOpt = driverRepository.findByUserId(riderId);
-            Driver driver;
-            
-            if (driverOpt.isEmpty()) {
-                // Create driver record if it doesn't exist
-                System.out.println("Driver not found, creating new driver record for user: " + riderId);
-                driver = new Driver();
-                driver.setUserId(riderId);
-                driver.setVehicleType("Bike"); // Default
-                driver.setVehicleNumber("TEMP-" + riderId);
-                driver.setLicenseNumber("TEMP-" + riderId);
-                driver.setIsAvailable(true);
-                driver.setIsOnline(true);
-                driver.setRating(5.0);
-                driver.setTotalTrips(0);
-                driver = driverRepository.save(driver);
-                System.out.println("Created new driver with ID: " + driver.getId());
-            } else {
-                driver = driverOpt.get();
-            }
-            
-            // Safer null checks for driver status
-            Boolean isAvailable = driver.getIsAvailable();
-            Boolean isOnline = driver.getIsOnline();
-            boolean needsSave = false;
-            
-            if (isAvailable == null) {
-                driver.setIsAvailable(true);
-                isAvailable = true;
-                needsSave = true;
-            }
-            if (isOnline == null) {
-                driver.setIsOnline(true);
+            // Check the driver before claiming, so an offline or busy driver never holds the ride.
+            // Online drivers are answered from the index; only unknown ones cost a query here.
+            Driver driver = driverSpatialIndex.get(riderId).orElse(null);
+            boolean indexed = driver != null;
+            boolean isAvailable;
+            boolean isOnline;
+            if (indexed) {
+                isAvailable = !Boolean.FALSE.equals(driver.getIsAvailable());
                 isOnline = true;
-                needsSave = true;
-            }
-            
-            // Save driver if we initialized null fields
-            if (needsSave) {
-                driver = driverRepository.save(driver);
+            } else {
+                driver = loadOrCreateDriver(riderId);
+                isAvailable = driver.getIsAvailable();
+                isOnline = driver.getIsOnline();
             }
-            
             if (!isAvailable || !isOnline) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("error", "Driver is not available or offline", "success", false, 
                                  "isAvailable", isAvailable, "isOnline", isOnline));
             }
 
-            // Update ride
+            // One CAS decides between drivers racing on this replica; losers get no query at all
+            claim = rideClaimService.claim(bookingId, riderId);
+            switch (claim.getOutcome()) {
+                case NOT_FOUND:
+                    System.out.println("ERROR: Ride not found for booking ID: " + bookingId);
+                    return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "Ride not found", "success", false));
+                case CONTENDED:
+                    // Still REQUESTED: the other driver's accept may yet fail
+                    return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(Map.of("error", "Another driver is accepting this ride", "success", false,
+                                     "retryable", true, "currentStatus", claim.getRide().getStatus()));
+                case TAKEN:
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body(Map.of("error", "Ride already accepted or completed", "success", false, "currentStatus", "ACCEPTED"));
+                case NOT_OPEN:
+                    return notOpen(claim.getRide(), riderId);
+                default:
+                    break;
+            }
+
+            // Update ride: conditional UPDATE ... WHERE status = 'REQUESTED', with a 4-digit OTP
             System.out.println("Updating ride status to ACCEPTED");
-            ride.setRiderId(riderId);
-            ride.setStatus("ACCEPTED");
-            ride.setAcceptedAt(LocalDateTime.now());
-            // Generate a 4-digit OTP and store it
             String otp = String.format("%04d", new java.util.Random().nextInt(10000));
-            ride.setOtp(otp);
-            Ride savedRide = rideRepository.save(ride);
+            claim = rideClaimService.commit(claim, otp);
+            if (claim.getOutcome() != RideClaimService.Outcome.ACCEPTED) {
+                return notOpen(claim.getRide(), riderId);
+            }
+            Ride savedRide = claim.getRide();
             System.out.println("Ride saved successfully");
 
-            // Update driver availability
+            // Update driver availability; the indexed driver is a shared snapshot, so write the stored row
             System.out.println("Updating driver availability");
+            if (indexed) {
+                driver = driverRepository.findByUserId(riderId).orElse(driver);
+            }
             driver.setIsAvailable(false);
             driver.setCurrentRideId(bookingId);
-            driverRepository.save(driver);
+            driverLocationService.save(driver, false);
             System.out.println("Driver updated successfully");
 
             // Get user details
@@ -394,6 +340,7 @@ public class RideController {
                 "ride", response
             ));
         } catch (Exception e) {
+            rideClaimService.release(claim);
             System.err.println("=== ERROR ACCEPTING RIDE ===");
             e.printStackTrace();
             System.err.println("ERROR accepting ride: " + e.getClass().getName() + " - " + e.getMessage());
@@ -405,6 +352,104 @@ public class RideController {
         }
     }
 
+    /**
+     * The driver row for an accept, created on first use and with missing status flags defaulted
+     */
+    private Driver loadOrCreateDriver(Long riderId) {
+        Optional<Driver> driverOpt = driverRepository.findByUserId(riderId);
+        Driver driver;
+        
+        if (driverOpt.isEmpty()) {
+            // Create driver record if it doesn't exist
+            System.out.println("Driver not found, creating new driver record for user: " + riderId);
+            driver = new Driver();
+            driver.setUserId(riderId);
+            driver.setVehicleType("Bike"); // Default
+            driver.setVehicleNumber("TEMP-" + riderId);
+            driver.setLicenseNumber("TEMP-" + riderId);
+            driver.setIsAvailable(true);
+            driver.setIsOnline(true);
+            driver.setRating(5.0);
+            driver.setTotalTrips(0);
+            driver = driverRepository.save(driver);
+            System.out.println("Created new driver with ID: " + driver.getId());
+        } else {
+            driver = driverOpt.get();
+        }
+        
+        // Safer null checks for driver status
+        boolean needsSave = false;
+        if (driver.getIsAvailable() == null) {
+            driver.setIsAvailable(true);
+            needsSave = true;
+        }
+        if (driver.getIsOnline() == null) {
+            driver.setIsOnline(true);
+            needsSave = true;
+        }
+        
+        // Save driver if we initialized null fields
+        if (needsSave) {
+            driver = driverRepository.save(driver);
+        }
+        return driver;
+    }
+
+    /**
+     * Answer for an accept on a ride that is no longer REQUESTED: success again for the driver who
+     * already has it, a rejection for anyone else
+     */
+    private ResponseEntity<?> notOpen(Ride ride, Long riderId) {
+        // Idempotency: if this same driver already accepted, return current ride as success
+        if ("ACCEPTED".equals(ride.getStatus()) && Objects.equals(ride.getRiderId(), riderId)) {
+            System.out.println("Ride already ACCEPTED by the same rider. Returning existing ride as success.");
+
+            RideResponse response = new RideResponse(
+                ride.getBookingId(),
+                ride.getPickupLocation(),
+                ride.getDropLocation(),
+                ride.getVehicleType(),
+                ride.getFare(),
+                ride.getStatus()
+            );
+            response.setRequestedAt(ride.getRequestedAt());
+            response.setPickupLat(ride.getPickupLat());
+            response.setPickupLng(ride.getPickupLng());
+            response.setDropLat(ride.getDropLat());
+            response.setDropLng(ride.getDropLng());
+            response.setDriverId(ride.getRiderId());
+
+            // Optionally add driver details if available
+            Optional<User> userOptForAccepted = userRepository.findById(ride.getRiderId());
+            Optional<Driver> driverOptForAccepted = driverRepository.findByUserId(ride.getRiderId());
+            if (userOptForAccepted.isPresent() && driverOptForAccepted.isPresent()) {
+                User user = userOptForAccepted.get();
+                Driver driver = driverOptForAccepted.get();
+                response.setDriverName(user.getName());
+                response.setVehicleNumber(driver.getVehicleNumber());
+                response.setRating(driver.getRating());
+            }
+
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "message", "Ride already accepted by you",
+                "ride", response
+            ));
+        }
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+            .body(Map.of("error", "Ride already accepted or completed", "success", false, "currentStatus", ride.getStatus()));
+    }
+
+    /**
+     * Status to report when a transition did not apply; a stale ride is re-read to say what it became
+     */
+    private String currentStatus(Ride ride, RideStateMachine.Outcome outcome) {
+        if (outcome == RideStateMachine.Outcome.STALE) {
+            return rideRepository.findByBookingId(ride.getBookingId()).map(Ride::getStatus).orElse(ride.getStatus());
+        }
+        return String.valueOf(ride.getStatus());
+    }
+
     @PostMapping("/{bookingId}/accept")
     public ResponseEntity<?> acceptRidePost(@PathVariable String bookingId, @RequestBody Map<String, Object> request) {
         System.out.println("=== POST ACCEPT RIDE ===");
@@ -446,9 +491,11 @@ public class RideController {
             }
 
             Ride ride = rideOpt.get();
-            ride.setStatus("COMPLETED");
-            ride.setCompletedAt(LocalDateTime.now());
-            Ride savedRide = rideRepository.save(ride);
+            RideStateMachine.Outcome outcome = rideStateMachine.transition(ride, RideStatus.COMPLETED);
+            if (outcome != RideStateMachine.Outcome.APPLIED) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", "Ride cannot be completed", "success", false, "currentStatus", currentStatus(ride, outcome)));
+            }
 
             // Update driver availability
             if (ride.getRiderId() != null) {
@@ -458,29 +505,19 @@ public class RideController {
                     driver.setIsAvailable(true);
                     driver.setCurrentRideId(null);
                     driver.setTotalTrips((driver.getTotalTrips() != null ? driver.getTotalTrips() : 0) + 1);
-                    driverRepository.save(driver);
+                    driverLocationService.save(driver, false);
                 }
             }
 
             RideResponse response = new RideResponse(
-                savedRide.getBookingId(),
-                savedRide.getPickupLocation(),
-                savedRide.getDropLocation(),
-                savedRide.getVehicleType(),
-                savedRide.getFare(),
-                savedRide.getStatus()
+                ride.getBookingId(),
+                ride.getPickupLocation(),
+                ride.getDropLocation(),
+                ride.getVehicleType(),
+                ride.getFare(),
+                ride.getStatus()
             );
 
-            // Send WebSocket notification to customer
-            try {
-                RideUpdate update = new RideUpdate("RIDE_COMPLETED", bookingId, "COMPLETED");
-                update.setRide(response);
-                update.setMessage("Ride completed successfully!");
-                webSocketController.sendRideUpdate(savedRide.getCustomerId(), update);
-            } catch (Exception e) {
-                System.err.println("WebSocket notification failed: " + e.getMessage());
-            }
-
             return ResponseEntity.ok(Map.of(
                 "success", true,
                 "message", "Ride completed successfully",
@@ -543,22 +580,21 @@ public class RideController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                 .body(Map.of("success", false, "message", "OTP not verified yet. Ask customer for OTP."));
         }
-        Ride savedRide = rideRepository.save(ride);
 
         RideResponse response = new RideResponse(
-            savedRide.getBookingId(),
-            savedRide.getPickupLocation(),
-            savedRide.getDropLocation(),
-            savedRide.getVehicleType(),
-            savedRide.getFare(),
-            savedRide.getStatus()
+            ride.getBookingId(),
+            ride.getPickupLocation(),
+            ride.getDropLocation(),
+            ride.getVehicleType(),
+            ride.getFare(),
+            ride.getStatus()
         );
 
         // Send WebSocket notification to customer
         RideUpdate update = new RideUpdate("RIDE_STARTED", bookingId, "IN_PROGRESS");
         update.setRide(response);
         update.setMessage("Your ride has started!");
-        webSocketController.sendRideUpdate(savedRide.getCustomerId(), update);
+        webSocketController.sendRideUpdate(ride.getCustomerId(), update);
 
         return ResponseEntity.ok(response);
     }
@@ -571,36 +607,22 @@ public class RideController {
         }
 
         Ride ride = rideOpt.get();
-        ride.setStatus("CANCELLED");
-        Ride savedRide = rideRepository.save(ride);
+        RideStateMachine.Outcome outcome = rideStateMachine.transition(ride, RideStatus.CANCELLED);
+        if (outcome != RideStateMachine.Outcome.APPLIED) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", "Ride cannot be cancelled", "currentStatus", currentStatus(ride, outcome)));
+        }
 
         RideResponse response = new RideResponse(
-            savedRide.getBookingId(),
-            savedRide.getPickupLocation(),
-            savedRide.getDropLocation(),
-            savedRide.getVehicleType(),
-            savedRide.getFare(),
-            savedRide.getStatus()
+            ride.getBookingId(),
+            ride.getPickupLocation(),
+            ride.getDropLocation(),
+            ride.getVehicleType(),
+            ride.getFare(),
+            ride.getStatus()
         );
-        response.setDriverId(savedRide.getRiderId());
-        response.setOtp(savedRide.getOtp());
-
-        // Notify both customer and driver over WebSocket
-        try {
-            RideUpdate cancelUpdate = new RideUpdate("RIDE_CANCELLED", bookingId, "CANCELLED");
-            cancelUpdate.setRide(response);
-            cancelUpdate.setMessage("Ride was cancelled");
-            // to customer
-            if (savedRide.getCustomerId() != null) {
-                webSocketController.sendRideUpdate(savedRide.getCustomerId(), cancelUpdate);
-            }
-            // to driver (if assigned)
-            if (savedRide.getRiderId() != null) {
-                webSocketController.sendRideUpdate(savedRide.getRiderId(), cancelUpdate);
-            }
-        } catch (Exception e) {
-            System.err.println("Failed to broadcast RIDE_CANCELLED: " + e.getMessage());
-        }
+        response.setDriverId(ride.getRiderId());
+        response.setOtp(ride.getOtp());
 
         return ResponseEntity.ok(response);
     }
@@ -645,7 +667,7 @@ public class RideController {
 
     @GetMapping("/available")
     public ResponseEntity<List<RideResponse>> getAvailableRides() {
-        List<Ride> rides = rideRepository.findByStatus("REQUESTED");
+        List<Ride> rides = openRideIndex.findAll(null);
         List<RideResponse> responses = rides.stream().map(ride -> {
             RideResponse response = new RideResponse(
                 ride.getBookingId(),
@@ -666,37 +688,32 @@ public class RideController {
     public ResponseEntity<List<Map<String, Object>>> getAvailableNearbyRides(
             @RequestParam Double lat,
             @RequestParam Double lng,
-            @RequestParam(defaultValue = "10") Double radiusKm) {
+            @RequestParam(defaultValue = "10") Double radiusKm,
+            @RequestParam(required = false) String vehicleType) {
         
-        List<Ride> rides = rideRepository.findByStatus("REQUESTED");
+        List<GeoCellIndex.Hit<OpenRideIndex.OpenRide>> hits =
+            openRideIndex.findNearby(lat, lng, radiusKm, vehicleType, null, null, null);
         List<Map<String, Object>> nearbyRides = new ArrayList<>();
 
-        for (Ride ride : rides) {
-            if (ride.getPickupLat() != null && ride.getPickupLng() != null) {
-                double distance = calculateDistance(lat, lng, ride.getPickupLat(), ride.getPickupLng());
-                
-                if (distance <= radiusKm) {
-                    Map<String, Object> rideInfo = new HashMap<>();
-                    rideInfo.put("bookingId", ride.getBookingId());
-                    rideInfo.put("pickupLocation", ride.getPickupLocation());
-                    rideInfo.put("dropLocation", ride.getDropLocation());
-                    rideInfo.put("vehicleType", ride.getVehicleType());
-                    rideInfo.put("fare", ride.getFare());
-                    rideInfo.put("status", ride.getStatus());
-                    rideInfo.put("pickupLat", ride.getPickupLat());
-                    rideInfo.put("pickupLng", ride.getPickupLng());
-                    rideInfo.put("dropLat", ride.getDropLat());
-                    rideInfo.put("dropLng", ride.getDropLng());
-                    rideInfo.put("distance", Math.round(distance * 10.0) / 10.0); // Round to 1 decimal
-                    rideInfo.put("requestedAt", ride.getRequestedAt());
-                    nearbyRides.add(rideInfo);
-                }
-            }
+        for (GeoCellIndex.Hit<OpenRideIndex.OpenRide> hit : hits) {
+            Ride ride = hit.getValue().getRide();
+            Map<String, Object> rideInfo = new HashMap<>();
+            rideInfo.put("bookingId", ride.getBookingId());
+            rideInfo.put("pickupLocation", ride.getPickupLocation());
+            rideInfo.put("dropLocation", ride.getDropLocation());
+            rideInfo.put("vehicleType", ride.getVehicleType());
+            rideInfo.put("fare", ride.getFare());
+            rideInfo.put("status", ride.getStatus());
+            rideInfo.put("pickupLat", ride.getPickupLat());
+            rideInfo.put("pickupLng", ride.getPickupLng());
+            rideInfo.put("dropLat", ride.getDropLat());
+            rideInfo.put("dropLng", ride.getDropLng());
+            rideInfo.put("distance", Math.round(hit.getDistanceKm() * 10.0) / 10.0); // Round to 1 decimal
+            rideInfo.put("requestedAt", ride.getRequestedAt());
+            nearbyRides.add(rideInfo);
         }
 
-        // Sort by distance (nearest first)
-        nearbyRides.sort((a, b) -> Double.compare((Double)a.get("distance"), (Double)b.get("distance")));
-
+        // Hits are already sorted by distance (nearest first)
         return ResponseEntity.ok(nearbyRides);
     }
 
@@ -720,9 +737,8 @@ public class RideController {
                 try {
                     if ("REQUESTED".equalsIgnoreCase(r.getStatus())) {
                         LocalDateTime requestedAt = r.getRequestedAt();
-                        if (requestedAt == null || requestedAt.isBefore(cutoff)) {
-                            r.setStatus("CANCELLED");
-                            rideRepository.save(r);
+                        if ((requestedAt == null || requestedAt.isBefore(cutoff))
+                                && rideStateMachine.transition(r, RideStatus.CANCELLED) == RideStateMachine.Outcome.APPLIED) {
                             cancelled++;
                         }
                     }
@@ -748,72 +764,34 @@ public class RideController {
             @RequestParam(required = false) Long driverId,
             @RequestParam(required = false) Double minDistance,
             @RequestParam(required = false) Double maxDistance,
-            @RequestParam(required = false) Double minFare) {
+            @RequestParam(required = false) Double minFare,
+            @RequestParam(required = false) String vehicleType) {
         
-        List<Ride> rides = rideRepository.findByStatus("REQUESTED");
+        // Radius, trip length and fare filters are all answered from the open-ride index
+        List<GeoCellIndex.Hit<OpenRideIndex.OpenRide>> hits =
+            openRideIndex.findNearby(latitude, longitude, radius, vehicleType, minDistance, maxDistance, minFare);
         List<Map<String, Object>> nearbyRides = new ArrayList<>();
 
-        for (Ride ride : rides) {
-            if (ride.getPickupLat() != null && ride.getPickupLng() != null) {
-                // Calculate distance from driver to pickup
-                double pickupDistance = calculateDistance(latitude, longitude, ride.getPickupLat(), ride.getPickupLng());
-                
-                // Calculate total ride distance
-                double rideDistance = calculateDistance(ride.getPickupLat(), ride.getPickupLng(), ride.getDropLat(), ride.getDropLng());
-                
-                // Apply filters
-                if (pickupDistance > radius) continue;
-                if (minDistance != null && rideDistance < minDistance) continue;
-                if (maxDistance != null && rideDistance > maxDistance) continue;
-                if (minFare != null && ride.getFare() < minFare) continue;
-                
-                Map<String, Object> rideInfo = new HashMap<>();
-                rideInfo.put("bookingId", ride.getBookingId());
-                rideInfo.put("pickupLocation", ride.getPickupLocation());
-                rideInfo.put("dropLocation", ride.getDropLocation());
-                rideInfo.put("vehicleType", ride.getVehicleType());
-                rideInfo.put("fare", ride.getFare());
-                rideInfo.put("status", ride.getStatus());
-                rideInfo.put("pickupLat", ride.getPickupLat());
-                rideInfo.put("pickupLng", ride.getPickupLng());
-                rideInfo.put("dropLat", ride.getDropLat());
-                rideInfo.put("dropLng", ride.getDropLng());
-                rideInfo.put("pickupDistance", Math.round(pickupDistance * 10.0) / 10.0);
-                rideInfo.put("rideDistance", Math.round(rideDistance * 10.0) / 10.0);
-                rideInfo.put("requestedAt", ride.getRequestedAt());
-                nearbyRides.add(rideInfo);
-            }
+        for (GeoCellIndex.Hit<OpenRideIndex.OpenRide> hit : hits) {
+            Ride ride = hit.getValue().getRide();
+            Map<String, Object> rideInfo = new HashMap<>();
+            rideInfo.put("bookingId", ride.getBookingId());
+            rideInfo.put("pickupLocation", ride.getPickupLocation());
+            rideInfo.put("dropLocation", ride.getDropLocation());
+            rideInfo.put("vehicleType", ride.getVehicleType());
+            rideInfo.put("fare", ride.getFare());
+            rideInfo.put("status", ride.getStatus());
+            rideInfo.put("pickupLat", ride.getPickupLat());
+            rideInfo.put("pickupLng", ride.getPickupLng());
+            rideInfo.put("dropLat", ride.getDropLat());
+            rideInfo.put("dropLng", ride.getDropLng());
+            rideInfo.put("pickupDistance", Math.round(hit.getDistanceKm() * 10.0) / 10.0);
+            rideInfo.put("rideDistance", Math.round(hit.getValue().getTripDistanceKm() * 10.0) / 10.0);
+            rideInfo.put("requestedAt", ride.getRequestedAt());
+            nearbyRides.add(rideInfo);
         }
 
-        // Sort by pickup distance (nearest first)
-        nearbyRides.sort((a, b) -> Double.compare((Double)a.get("pickupDistance"), (Double)b.get("pickupDistance")));
-
+        // Hits are already sorted by pickup distance (nearest first)
         return ResponseEntity.ok(nearbyRides);
     }
-
-    // Helper methods
-    private double calculateDistance(Double lat1, Double lng1, Double lat2, Double lng2) {
-        if (lat1 == null || lng1 == null || lat2 == null || lng2 == null) {
-            return 10.0; // Default 10km
-        }
-        // Haversine formula for distance calculation
-        double R = 6371; // Radius of Earth in km
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLng = Math.toRadians(lng2 - lng1);
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                   Math.sin(dLng / 2) * Math.sin(dLng / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c;
-    }
-
-    private double getBaseFare(String vehicleType) {
-        switch (vehicleType.toLowerCase()) {
-            case "share": return 30.0;
-            case "bike": return 40.0;
-            case "auto": return 50.0;
-            case "car": return 80.0;
-            default: return 50.0;
-        }
-    }
 }
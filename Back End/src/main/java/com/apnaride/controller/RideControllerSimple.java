@@ -1,14 +1,13 @@
 package com.apnaride.controller;
 
-import com.apnaride.model.Ride;
 import com.apnaride.model.Driver;
-import com.apnaride.repository.RideRepository;
 import com.apnaride.repository.DriverRepository;
+import com.apnaride.service.DriverLocationService;
+import com.apnaride.service.RideClaimService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.LocalDateTime;
 import java.util.*;
 
 @RestController
@@ -17,10 +16,13 @@ import java.util.*;
 public class RideControllerSimple {
 
     @Autowired
-    private RideRepository rideRepository;
+    private DriverRepository driverRepository;
 
     @Autowired
-    private DriverRepository driverRepository;
+    private DriverLocationService driverLocationService;
+
+    @Autowired
+    private RideClaimService rideClaimService;
 
     @PostMapping("/{bookingId}/accept")
     public ResponseEntity<?> acceptRide(@PathVariable String bookingId, @RequestBody Map<String, Object> request) {
@@ -28,20 +30,12 @@ public class RideControllerSimple {
         System.out.println("Booking ID: " + bookingId);
         System.out.println("Request: " + request);
         
+        RideClaimService.Claim claim = null;
         try {
             // Get driver ID
             Long driverId = ((Number) request.get("driverId")).longValue();
             System.out.println("Driver ID: " + driverId);
             
-            // Find ride
-            Optional<Ride> rideOpt = rideRepository.findByBookingId(bookingId);
-            if (rideOpt.isEmpty()) {
-                return ResponseEntity.status(404).body(Map.of("error", "Ride not found", "success", false));
-            }
-            
-            Ride ride = rideOpt.get();
-            System.out.println("Ride found: " + ride.getBookingId());
-            
             // Find or create driver
             Optional<Driver> driverOpt = driverRepository.findByUserId(driverId);
             Driver driver;
@@ -64,17 +58,31 @@ public class RideControllerSimple {
                 System.out.println("Driver found");
             }
             
-            // Update ride
-            ride.setRiderId(driverId);
-            ride.setStatus("ACCEPTED");
-            ride.setAcceptedAt(LocalDateTime.now());
-            ride = rideRepository.save(ride);
+            // Claim the ride last, once the driver is in hand, so the claim is held only for the UPDATE
+            claim = rideClaimService.claim(bookingId, driverId);
+            if (claim.getOutcome() == RideClaimService.Outcome.NOT_FOUND) {
+                return ResponseEntity.status(404).body(Map.of("error", "Ride not found", "success", false));
+            }
+            if (claim.getOutcome() == RideClaimService.Outcome.CONTENDED) {
+                return ResponseEntity.status(409).body(Map.of("error", "Another driver is accepting this ride", "success", false,
+                        "retryable", true, "currentStatus", claim.getRide().getStatus()));
+            }
+            if (claim.getOutcome() != RideClaimService.Outcome.CLAIMED) {
+                return ResponseEntity.status(400).body(Map.of("error", "Ride already accepted or completed", "success", false));
+            }
+            System.out.println("Ride claimed: " + bookingId);
+            
+            // Update ride only if it is still REQUESTED
+            claim = rideClaimService.commit(claim, String.format("%04d", new Random().nextInt(10000)));
+            if (claim.getOutcome() != RideClaimService.Outcome.ACCEPTED) {
+                return ResponseEntity.status(400).body(Map.of("error", "Ride already accepted or completed", "success", false));
+            }
             System.out.println("Ride updated");
             
             // Update driver
             driver.setIsAvailable(false);
             driver.setCurrentRideId(bookingId);
-            driverRepository.save(driver);
+            driverLocationService.save(driver, false);
             System.out.println("Driver updated");
             
             System.out.println("=== SUCCESS ===");
@@ -85,6 +93,7 @@ public class RideControllerSimple {
             ));
             
         } catch (Exception e) {
+            rideClaimService.release(claim);
             System.err.println("=== ERROR ===");
             e.printStackTrace();
             return ResponseEntity.status(500).body(Map.of(
@@ -2,6 +2,7 @@ package com.apnaride.controller;
 
 import com.apnaride.model.User;
 import com.apnaride.repository.UserRepository;
+import com.apnaride.service.PhoneDirectory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -22,6 +23,9 @@ public class UserController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private PhoneDirectory phoneDirectory;
+
     @GetMapping("/{id}")
     public ResponseEntity<?> getUser(@PathVariable Long id) {
         Optional<User> userOpt = userRepository.findById(id);
@@ -70,7 +74,11 @@ public class UserController {
         }
         if (payload.containsKey("phone")) {
             Object v = payload.get("phone");
-            user.setPhone(v != null ? String.valueOf(v) : null);
+            String newPhone = v != null ? String.valueOf(v) : null;
+            if (phoneDirectory.isTakenByOther(newPhone, user.getId())) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body("Phone number is already registered.");
+            }
+            user.setPhone(newPhone);
         }
         if (payload.containsKey("emergencyPhone")) {
             Object v = payload.get("emergencyPhone");
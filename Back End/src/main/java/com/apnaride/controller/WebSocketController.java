@@ -3,6 +3,8 @@ package com.apnaride.controller;
 import com.apnaride.dto.ChatMessage;
 import com.apnaride.dto.LocationUpdate;
 import com.apnaride.dto.RideUpdate;
+import com.apnaride.service.DriverLocationBroadcaster;
+import com.apnaride.service.DriverLocationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
@@ -14,21 +16,33 @@ import java.time.LocalDateTime;
 @Controller
 public class WebSocketController {
 
+    public static final String RIDE_REQUESTS_QUEUE = "/queue/ride-requests/";
+
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
+    @Autowired
+    private DriverLocationService driverLocationService;
+
+    @Autowired
+    private DriverLocationBroadcaster driverLocationBroadcaster;
+
     /**
      * Handle driver location updates
      * Client sends to: /app/driver-location
-     * Broadcast to: /topic/driver-location/{driverId}
+     * Broadcast to: /topic/driver-location/{driverId} (throttled, see DriverLocationBroadcaster)
      */
     @MessageMapping("/driver-location")
     public void handleDriverLocation(@Payload LocationUpdate locationUpdate) {
-        // Broadcast location to all subscribers (customers tracking this driver)
-        messagingTemplate.convertAndSend(
-            "/topic/driver-location/" + locationUpdate.getDriverId(),
-            locationUpdate
-        );
+        // Keep the dispatch index current; persisted later by the write-behind flusher
+        if (locationUpdate.getDriverId() != null && locationUpdate.getLatitude() != null
+                && locationUpdate.getLongitude() != null) {
+            driverLocationService.trackLocation(locationUpdate.getDriverId(),
+                    locationUpdate.getLatitude(), locationUpdate.getLongitude(), LocalDateTime.now());
+        }
+
+        // Coalesced per driver and published at a capped rate to subscribed customers only
+        driverLocationBroadcaster.submit(locationUpdate);
     }
 
     /**
@@ -62,7 +76,7 @@ public class WebSocketController {
      */
     public void sendRideRequest(Long driverId, Object rideRequest) {
         messagingTemplate.convertAndSend(
-            "/queue/ride-requests/" + driverId,
+            RIDE_REQUESTS_QUEUE + driverId,
             rideRequest
         );
     }
@@ -0,0 +1,11 @@
+package com.apnaride.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Projection for per-day GROUP BY queries: one row per calendar day
+ */
+public interface DayTotal {
+    LocalDate getDay();
+    Number getTotal();
+}
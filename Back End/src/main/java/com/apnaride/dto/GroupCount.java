@@ -0,0 +1,9 @@
+package com.apnaride.dto;
+
+/**
+ * Projection for GROUP BY count queries: one row per group label
+ */
+public interface GroupCount {
+    String getLabel();
+    Long getTotal();
+}
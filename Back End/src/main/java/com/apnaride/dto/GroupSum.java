@@ -0,0 +1,9 @@
+package com.apnaride.dto;
+
+/**
+ * Projection for GROUP BY sum queries: one row per group label
+ */
+public interface GroupSum {
+    String getLabel();
+    Double getTotal();
+}
@@ -0,0 +1,10 @@
+package com.apnaride.dto;
+
+/**
+ * Projection for per-user ride aggregates: ride count and completed-ride fare total
+ */
+public interface IdTotals {
+    Long getId();
+    Long getRides();
+    Double getAmount();
+}
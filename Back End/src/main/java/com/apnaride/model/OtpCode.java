@@ -0,0 +1,36 @@
+package com.apnaride.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Row of the shared OTP table used when apnaride.otp.store=jdbc. Times are epoch millis so
+ * every replica compares them the same way regardless of database time zone settings.
+ */
+@Entity
+@Table(name = "otp_codes", indexes = @Index(name = "idx_otp_codes_expires_at", columnList = "expiresAt"))
+public class OtpCode {
+    @Id
+    @Column(length = 32)
+    private String phone;
+    @Column(nullable = false, length = 16)
+    private String code;
+    private long expiresAt;
+    private long sentAt;
+    private int attempts;
+
+    // Getters and Setters
+    public String getPhone() { return phone; }
+    public void setPhone(String phone) { this.phone = phone; }
+
+    public String getCode() { return code; }
+    public void setCode(String code) { this.code = code; }
+
+    public long getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(long expiresAt) { this.expiresAt = expiresAt; }
+
+    public long getSentAt() { return sentAt; }
+    public void setSentAt(long sentAt) { this.sentAt = sentAt; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+}
@@ -76,4 +76,21 @@ public class PromoCode {
     
     public LocalDateTime getCreatedAt() { return validFrom; }
     public void setCreatedAt(LocalDateTime createdAt) { this.validFrom = createdAt; }
+
+    /**
+     * Active, not expired and under its usage limit at the given time
+     */
+    public boolean isRedeemableAt(LocalDateTime now) {
+        return isActive()
+                && (validUntil == null || !validUntil.isBefore(now))
+                && (usageLimit == null || getUsageCount() < usageLimit);
+    }
+
+    /**
+     * Discount on a fare: the percentage, capped at the max discount when one is set
+     */
+    public double discountFor(double fare) {
+        double discount = fare * (discountPercent != null ? discountPercent : 0.0) / 100.0;
+        return maxDiscount != null ? Math.min(discount, maxDiscount) : discount;
+    }
 }
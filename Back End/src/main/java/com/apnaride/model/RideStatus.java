@@ -0,0 +1,28 @@
+package com.apnaride.model;
+
+import java.util.Locale;
+
+/**
+ * Lifecycle of a ride. Stored by name in rides.status.
+ */
+public enum RideStatus {
+    REQUESTED,
+    ACCEPTED,
+    IN_PROGRESS,
+    COMPLETED,
+    CANCELLED;
+
+    /**
+     * Parse a stored status, or null for values outside the lifecycle
+     */
+    public static RideStatus of(String status) {
+        if (status == null) {
+            return null;
+        }
+        try {
+            return valueOf(status.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
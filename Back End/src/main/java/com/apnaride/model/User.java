@@ -15,6 +15,9 @@ public class User {
     private String password;
     private String role;
     private String phone;
+    // Digits-only national number derived from phone; indexed for OTP login lookups
+    @Column(name = "phone_normalized", unique = true, length = 20)
+    private String phoneNormalized;
     private String emergencyPhone;
 
     // Getters
@@ -24,6 +27,7 @@ public class User {
     public String getPassword() { return password; }
     public String getRole() { return role; }
     public String getPhone() { return phone; }
+    public String getPhoneNormalized() { return phoneNormalized; }
     public String getEmergencyPhone() { return emergencyPhone; }
 
     // Setters
@@ -32,6 +36,26 @@ public class User {
     public void setEmail(String email) { this.email = email; }
     public void setPassword(String password) { this.password = password; }
     public void setRole(String role) { this.role = role; }
-    public void setPhone(String phone) { this.phone = phone; }
+    public void setPhone(String phone) {
+        this.phone = phone;
+        this.phoneNormalized = normalizePhone(phone);
+    }
     public void setEmergencyPhone(String emergencyPhone) { this.emergencyPhone = emergencyPhone; }
-}
\ No newline at end of file
+
+    /**
+     * Canonical form used for phone lookups: digits only, without a leading 0 or +91 prefix
+     * on Indian numbers. Returns null when there are no digits.
+     */
+    public static String normalizePhone(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        String digits = phone.replaceAll("\\D", "");
+        if (digits.length() == 12 && digits.startsWith("91")) {
+            digits = digits.substring(2);
+        } else if (digits.length() == 11 && digits.startsWith("0")) {
+            digits = digits.substring(1);
+        }
+        return digits.isEmpty() ? null : digits;
+    }
+}
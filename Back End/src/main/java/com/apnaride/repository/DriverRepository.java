@@ -1,7 +1,11 @@
 package com.apnaride.repository;
 
+import com.apnaride.dto.GroupCount;
 import com.apnaride.model.Driver;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -12,4 +16,27 @@ public interface DriverRepository extends JpaRepository<Driver, Long> {
     Optional<Driver> findByUserId(Long userId);
     List<Driver> findByIsOnlineAndIsAvailable(Boolean isOnline, Boolean isAvailable);
     List<Driver> findByIsOnline(Boolean isOnline);
+    List<Driver> findByVerificationStatus(String verificationStatus);
+    long countByIsOnlineAndIsAvailable(Boolean isOnline, Boolean isAvailable);
+    long countByVerificationStatus(String verificationStatus);
+
+    @Query("select d.vehicleType as label, count(d) as total from Driver d group by d.vehicleType")
+    List<GroupCount> countGroupByVehicleType();
+
+    @Query("select d.city as label, count(d) as total from Driver d where d.city is not null group by d.city")
+    List<GroupCount> countGroupByCity();
+
+    /**
+     * Keyset page: drivers with id greater than the cursor, in id order; null filters are ignored
+     */
+    @Query("select d from Driver d where d.id > :after " +
+           "and (:status is null or d.verificationStatus = :status) " +
+           "and (:vehicleType is null or d.vehicleType = :vehicleType) " +
+           "and (:city is null or d.city = :city) " +
+           "order by d.id")
+    List<Driver> findPage(@Param("after") long after,
+                          @Param("status") String status,
+                          @Param("vehicleType") String vehicleType,
+                          @Param("city") String city,
+                          Pageable page);
 }
@@ -0,0 +1,14 @@
+package com.apnaride.repository;
+
+import com.apnaride.model.FareStructure;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface FareStructureRepository extends JpaRepository<FareStructure, Long> {
+    List<FareStructure> findByIsActiveTrue();
+    Optional<FareStructure> findFirstByVehicleTypeIgnoreCase(String vehicleType);
+}
@@ -1,16 +1,131 @@
 package com.apnaride.repository;
 
+import com.apnaride.dto.DayTotal;
+import com.apnaride.dto.GroupCount;
+import com.apnaride.dto.GroupSum;
+import com.apnaride.dto.IdTotals;
 import com.apnaride.model.Ride;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface RideRepository extends JpaRepository<Ride, Long> {
+
+    // Optional filters shared by keyset pages and exports; a null parameter disables its filter
+    String FILTERS =
+            "(:status is null or r.status = :status) " +
+            "and (:vehicleType is null or r.vehicleType = :vehicleType) " +
+            "and (:city is null or exists (select d.id from Driver d where d.userId = r.riderId and d.city = :city)) ";
+
     Optional<Ride> findByBookingId(String bookingId);
     List<Ride> findByCustomerId(Long customerId);
     List<Ride> findByRiderId(Long riderId);
     List<Ride> findByStatus(String status);
+
+    /**
+     * Move a ride from one status to another only if it still has the expected status; returns 1
+     * for the one request whose update got there first and 0 for everyone else. Null columns are
+     * left as they are. The persistence context is cleared afterwards, so a managed copy of the ride
+     * the caller then updates in place is not flushed again as a second full-row UPDATE.
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Ride r set r.status = :to, " +
+           "r.riderId = coalesce(:riderId, r.riderId), r.otp = coalesce(:otp, r.otp), " +
+           "r.acceptedAt = coalesce(:acceptedAt, r.acceptedAt), r.completedAt = coalesce(:completedAt, r.completedAt) " +
+           "where r.id = :id and r.status = :from")
+    int transition(@Param("id") Long id, @Param("from") String from, @Param("to") String to,
+                   @Param("riderId") Long riderId, @Param("otp") String otp,
+                   @Param("acceptedAt") LocalDateTime acceptedAt, @Param("completedAt") LocalDateTime completedAt);
+
+    @Query("select r.status as label, count(r) as total from Ride r group by r.status")
+    List<GroupCount> countGroupByStatus();
+
+    @Query("select r.vehicleType as label, count(r) as total from Ride r group by r.vehicleType")
+    List<GroupCount> countGroupByVehicleType();
+
+    @Query("select coalesce(sum(r.fare), 0) from Ride r where r.status = :status")
+    Double sumFareByStatus(@Param("status") String status);
+
+    @Query("select avg(r.fare) from Ride r where r.fare is not null")
+    Double averageFare();
+
+    @Query("select cast(r.requestedAt as LocalDate) as day, count(r) as total from Ride r " +
+           "where r.requestedAt >= :since group by cast(r.requestedAt as LocalDate)")
+    List<DayTotal> countRequestedGroupByDaySince(@Param("since") LocalDateTime since);
+
+    @Query("select cast(r.completedAt as LocalDate) as day, sum(r.fare) as total from Ride r " +
+           "where r.status = 'COMPLETED' and r.completedAt >= :since group by cast(r.completedAt as LocalDate)")
+    List<DayTotal> sumCompletedFareGroupByDaySince(@Param("since") LocalDateTime since);
+
+    @Query("select r.vehicleType as label, sum(r.fare) as total from Ride r " +
+           "where r.status = 'COMPLETED' group by r.vehicleType")
+    List<GroupSum> sumCompletedFareGroupByVehicleType();
+
+    @Query("select d.city as label, sum(r.fare) as total from Ride r, Driver d " +
+           "where r.riderId = d.userId and r.status = 'COMPLETED' group by d.city")
+    List<GroupSum> sumCompletedFareGroupByDriverCity();
+
+    @Query("select r.riderId as id, count(r) as rides, " +
+           "coalesce(sum(case when r.status = 'COMPLETED' then r.fare else 0 end), 0) as amount " +
+           "from Ride r where r.riderId is not null group by r.riderId")
+    List<IdTotals> totalsGroupByRider();
+
+    @Query("select r.customerId as id, count(r) as rides, " +
+           "coalesce(sum(case when r.status = 'COMPLETED' then r.fare else 0 end), 0) as amount " +
+           "from Ride r where r.customerId is not null group by r.customerId")
+    List<IdTotals> totalsGroupByCustomer();
+
+    @Query("select r.riderId as id, count(r) as rides, " +
+           "coalesce(sum(case when r.status = 'COMPLETED' then r.fare else 0 end), 0) as amount " +
+           "from Ride r where r.riderId in :ids group by r.riderId")
+    List<IdTotals> totalsGroupByRider(@Param("ids") Collection<Long> ids);
+
+    @Query("select r.customerId as id, count(r) as rides, " +
+           "coalesce(sum(case when r.status = 'COMPLETED' then r.fare else 0 end), 0) as amount " +
+           "from Ride r where r.customerId in :ids group by r.customerId")
+    List<IdTotals> totalsGroupByCustomer(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Keyset page: rides with id greater than the cursor, in id order, optionally scoped to a customer or rider
+     */
+    @Query("select r from Ride r where r.id > :after " +
+           "and (:customerId is null or r.customerId = :customerId) " +
+           "and (:riderId is null or r.riderId = :riderId) " +
+           "and " + FILTERS + "order by r.id")
+    List<Ride> findPage(@Param("after") long after,
+                        @Param("customerId") Long customerId,
+                        @Param("riderId") Long riderId,
+                        @Param("status") String status,
+                        @Param("vehicleType") String vehicleType,
+                        @Param("city") String city,
+                        Pageable page);
+
+    /**
+     * Cursor-backed stream for exports; must be consumed inside a transaction and closed
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("select r from Ride r where " + FILTERS + "order by r.id")
+    Stream<Ride> streamFiltered(@Param("status") String status,
+                                @Param("vehicleType") String vehicleType,
+                                @Param("city") String city);
 }
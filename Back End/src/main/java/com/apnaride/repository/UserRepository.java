@@ -1,11 +1,23 @@
 package com.apnaride.repository;
 
 import com.apnaride.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
-}
\ No newline at end of file
+    Optional<User> findByPhoneNormalized(String phoneNormalized);
+
+    @Query("select u.id from User u where u.phoneNormalized = :phone")
+    Optional<Long> findIdByPhoneNormalized(@Param("phone") String phoneNormalized);
+
+    List<User> findByRole(String role);
+    List<User> findByRoleAndIdGreaterThanOrderByIdAsc(String role, Long after, Pageable page);
+    long countByRole(String role);
+}
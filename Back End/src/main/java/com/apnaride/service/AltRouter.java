@@ -0,0 +1,379 @@
+package com.apnaride.service;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Shortest-duration routing over a {@link RoadGraph} with ALT: A* search guided by landmark
+ * lower bounds (triangle inequality on precomputed landmark distances). Preprocessing runs two
+ * Dijkstra searches per landmark; queries then settle only a small corridor of the graph.
+ * Instances are immutable after construction and safe for concurrent queries.
+ */
+public final class AltRouter {
+
+    private static final double INF = Double.POSITIVE_INFINITY;
+    // Idle workspaces kept for reuse; extra ones made under a burst are dropped when released
+    private static final int MAX_IDLE_WORKSPACES = Runtime.getRuntime().availableProcessors() * 2;
+
+    private final RoadGraph graph;
+    private final int[] landmarks;
+    private final double[][] fromLandmark; // [k][v] = duration(L_k -> v)
+    private final double[][] toLandmark;   // [k][v] = duration(v -> L_k)
+    private final int nodeCount;
+    private final BlockingQueue<Workspace> workspaces = new ArrayBlockingQueue<>(MAX_IDLE_WORKSPACES);
+
+    public AltRouter(RoadGraph graph, int landmarkCount) {
+        this.graph = graph;
+        int n = graph.nodeCount();
+        int k = Math.min(landmarkCount, n);
+        int[] chosen = new int[k];
+        double[][] from = new double[k][];
+        double[][] to = new double[k][];
+        int found = 0;
+
+        // Farthest-point selection: each new landmark is the node farthest from those chosen so far
+        double[] nearestLandmark = new double[n];
+        Arrays.fill(nearestLandmark, INF);
+        int next = 0;
+        while (found < k) {
+            chosen[found] = next;
+            from[found] = dijkstra(next, true);
+            to[found] = dijkstra(next, false);
+            int farthest = -1;
+            double best = 0;
+            for (int v = 0; v < n; v++) {
+                nearestLandmark[v] = Math.min(nearestLandmark[v], from[found][v]);
+                double d = nearestLandmark[v];
+                if (d != INF && d > best) {
+                    best = d;
+                    farthest = v;
+                }
+            }
+            found++;
+            if (farthest < 0) {
+                break; // every reachable node already coincides with a landmark
+            }
+            next = farthest;
+        }
+        this.landmarks = Arrays.copyOf(chosen, found);
+        this.fromLandmark = Arrays.copyOf(from, found);
+        this.toLandmark = Arrays.copyOf(to, found);
+        this.nodeCount = n;
+    }
+
+    public int landmarkCount() {
+        return landmarks.length;
+    }
+
+    /**
+     * Fastest path between two nodes, or null when the target is unreachable
+     */
+    public Path route(int source, int target) {
+        Workspace w = acquire();
+        try {
+            return route(w, source, target);
+        } finally {
+            workspaces.offer(w);
+        }
+    }
+
+    private Path route(Workspace w, int source, int target) {
+        w.reset();
+        w.open(source, 0, -1, -1, heuristic(source, target));
+        while (!w.heap.isEmpty()) {
+            int u = w.heap.popNode();
+            if (w.isClosed(u)) {
+                continue;
+            }
+            w.close(u);
+            w.settled++;
+            if (u == target) {
+                return w.path(graph, source, target);
+            }
+            double gu = w.g(u);
+            for (int e = graph.outStart(u), end = graph.outEnd(u); e < end; e++) {
+                int v = graph.outTarget(e);
+                double gv = gu + graph.outDuration(e);
+                if (gv < w.g(v) && !w.isClosed(v)) {
+                    w.open(v, gv, u, e, gv + heuristic(v, target));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Fastest durations and their road distances from many sources to one target, in a single
+     * backward Dijkstra that stops once every source is settled. Unreachable sources get infinity.
+     * Returns {durations, distances}, indexed like sources.
+     */
+    public double[][] toTarget(int[] sources, int target) {
+        Workspace w = acquire();
+        try {
+            return toTarget(w, sources, target);
+        } finally {
+            workspaces.offer(w);
+        }
+    }
+
+    private double[][] toTarget(Workspace w, int[] sources, int target) {
+        int n = sources.length;
+        double[][] result = new double[2][n];
+        Arrays.fill(result[0], INF);
+        Arrays.fill(result[1], INF);
+        w.reset();
+        for (int source : sources) {
+            w.markWanted(source);
+        }
+        int remaining = w.wanted;
+        w.open(target, 0, -1, -1, 0);
+        w.meters[target] = 0;
+        while (!w.heap.isEmpty() && remaining > 0) {
+            int u = w.heap.popNode();
+            if (w.isClosed(u)) {
+                continue;
+            }
+            w.close(u);
+            w.settled++;
+            if (w.isWanted(u)) {
+                remaining--;
+            }
+            double gu = w.g(u);
+            double mu = w.meters[u];
+            for (int e = graph.inStart(u), end = graph.inEnd(u); e < end; e++) {
+                int v = graph.inSource(e);
+                double gv = gu + graph.inDuration(e);
+                if (gv < w.g(v) && !w.isClosed(v)) {
+                    w.open(v, gv, u, e, gv);
+                    w.meters[v] = mu + graph.inDistance(e);
+                }
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if (w.isClosed(sources[i])) {
+                result[0][i] = w.g(sources[i]);
+                result[1][i] = w.meters[sources[i]];
+            }
+        }
+        return result;
+    }
+
+    // Search state is O(n) per workspace, so it is pooled rather than held per thread
+    private Workspace acquire() {
+        Workspace w = workspaces.poll();
+        return w != null ? w : new Workspace(nodeCount);
+    }
+
+    // Lower bound on duration(v -> t) from every landmark, in both directions
+    private double heuristic(int v, int t) {
+        double best = 0;
+        for (int i = 0; i < landmarks.length; i++) {
+            double[] from = fromLandmark[i];
+            double[] to = toLandmark[i];
+            if (from[t] != INF && from[v] != INF) {
+                best = Math.max(best, from[t] - from[v]);
+            }
+            if (to[v] != INF && to[t] != INF) {
+                best = Math.max(best, to[v] - to[t]);
+            }
+        }
+        return best;
+    }
+
+    private double[] dijkstra(int source, boolean forward) {
+        int n = graph.nodeCount();
+        double[] dist = new double[n];
+        Arrays.fill(dist, INF);
+        dist[source] = 0;
+        MinHeap heap = new MinHeap(64);
+        heap.push(0, source);
+        while (!heap.isEmpty()) {
+            double d = heap.peekKey();
+            int u = heap.popNode();
+            if (d > dist[u]) {
+                continue;
+            }
+            if (forward) {
+                for (int e = graph.outStart(u), end = graph.outEnd(u); e < end; e++) {
+                    relax(dist, heap, graph.outTarget(e), d + graph.outDuration(e));
+                }
+            } else {
+                for (int e = graph.inStart(u), end = graph.inEnd(u); e < end; e++) {
+                    relax(dist, heap, graph.inSource(e), d + graph.inDuration(e));
+                }
+            }
+        }
+        return dist;
+    }
+
+    private static void relax(double[] dist, MinHeap heap, int v, double d) {
+        if (d < dist[v]) {
+            dist[v] = d;
+            heap.push(d, v);
+        }
+    }
+
+    /**
+     * Result of a query: node sequence with total road distance and duration
+     */
+    public static final class Path {
+        private final int[] nodes;
+        private final double distanceMeters;
+        private final double durationSeconds;
+        private final int settledNodes;
+
+        Path(int[] nodes, double distanceMeters, double durationSeconds, int settledNodes) {
+            this.nodes = nodes;
+            this.distanceMeters = distanceMeters;
+            this.durationSeconds = durationSeconds;
+            this.settledNodes = settledNodes;
+        }
+
+        public int[] getNodes() { return nodes; }
+        public double getDistanceMeters() { return distanceMeters; }
+        public double getDurationSeconds() { return durationSeconds; }
+        public int getSettledNodes() { return settledNodes; }
+    }
+
+    // Search state for one query at a time; stamps avoid clearing O(n) arrays between queries
+    private static final class Workspace {
+        final double[] g;
+        final int[] parentEdge;
+        final int[] parentNode;
+        final int[] seenStamp;
+        final int[] closedStamp;
+        final int[] wantedStamp;
+        final double[] meters;
+        final MinHeap heap = new MinHeap(256);
+        int stamp;
+        int settled;
+        int wanted;
+
+        Workspace(int n) {
+            g = new double[n];
+            parentEdge = new int[n];
+            parentNode = new int[n];
+            seenStamp = new int[n];
+            closedStamp = new int[n];
+            wantedStamp = new int[n];
+            meters = new double[n];
+        }
+
+        void reset() {
+            heap.clear();
+            settled = 0;
+            wanted = 0;
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(seenStamp, 0);
+                Arrays.fill(closedStamp, 0);
+                Arrays.fill(wantedStamp, 0);
+                stamp = 1;
+            }
+        }
+
+        double g(int v) {
+            return seenStamp[v] == stamp ? g[v] : INF;
+        }
+
+        void open(int v, double gv, int fromNode, int viaEdge, double f) {
+            seenStamp[v] = stamp;
+            g[v] = gv;
+            parentNode[v] = fromNode;
+            parentEdge[v] = viaEdge;
+            heap.push(f, v);
+        }
+
+        boolean isClosed(int v) {
+            return closedStamp[v] == stamp;
+        }
+
+        void close(int v) {
+            closedStamp[v] = stamp;
+        }
+
+        // Duplicate sources count once
+        void markWanted(int v) {
+            if (wantedStamp[v] != stamp) {
+                wantedStamp[v] = stamp;
+                wanted++;
+            }
+        }
+
+        boolean isWanted(int v) {
+            return wantedStamp[v] == stamp;
+        }
+
+        Path path(RoadGraph graph, int source, int target) {
+            int length = 1;
+            for (int v = target; v != source; v = parentNode[v]) {
+                length++;
+            }
+            int[] nodes = new int[length];
+            double meters = 0;
+            int v = target;
+            for (int i = length - 1; i > 0; i--) {
+                nodes[i] = v;
+                meters += graph.outDistance(parentEdge[v]);
+                v = parentNode[v];
+            }
+            nodes[0] = source;
+            return new Path(nodes, meters, g[target], settled);
+        }
+    }
+
+    // Binary min-heap of (key, node) pairs with lazy deletion
+    private static final class MinHeap {
+        double[] keys;
+        int[] nodes;
+        int size;
+
+        MinHeap(int capacity) {
+            keys = new double[capacity];
+            nodes = new int[capacity];
+        }
+
+        boolean isEmpty() { return size == 0; }
+        void clear() { size = 0; }
+        double peekKey() { return keys[0]; }
+
+        void push(double key, int node) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) break;
+                keys[i] = keys[parent];
+                nodes[i] = nodes[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            nodes[i] = node;
+        }
+
+        int popNode() {
+            int top = nodes[0];
+            size--;
+            if (size > 0) {
+                double key = keys[size];
+                int node = nodes[size];
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) break;
+                    if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+                    if (keys[child] >= key) break;
+                    keys[i] = keys[child];
+                    nodes[i] = nodes[child];
+                    i = child;
+                }
+                keys[i] = key;
+                nodes[i] = node;
+            }
+            return top;
+        }
+    }
+}
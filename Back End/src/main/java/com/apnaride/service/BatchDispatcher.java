@@ -0,0 +1,245 @@
+package com.apnaride.service;
+
+import com.apnaride.controller.WebSocketController;
+import com.apnaride.dto.RideResponse;
+import com.apnaride.model.Driver;
+import com.apnaride.model.Ride;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends new rides to drivers. In cascade mode each ride is offered to one driver at a time (see
+ * {@link OfferCascade}). In batch mode requests are collected for one window and then matched
+ * region by region (a coarse pickup grid cell per vehicle type) with a min-cost assignment over
+ * pickup distance, so each driver gets at most one targeted offer instead of every nearby driver
+ * getting every ride. Offered drivers are held for the offer timeout; a ride that is still open
+ * afterwards goes back into the next window without that driver. Rides that find no candidate for
+ * max-rounds windows, or have no pickup coordinates, fall back to the broadcast used in broadcast mode.
+ */
+@Service
+public class BatchDispatcher {
+
+    private final DriverSpatialIndex driverSpatialIndex;
+    private final OpenRideIndex openRideIndex;
+    private final WebSocketController webSocketController;
+    private final OfferCascade offerCascade;
+    private final String mode;
+    private final double regionDegrees;
+    private final double radiusKm;
+    private final int maxCandidates;
+    private final long offerTimeoutMillis;
+    private final int maxRounds;
+
+    private final Counter offers;
+    private final Counter fallbacks;
+    private final Timer solveTimer;
+    private final DistributionSummary batchSize;
+
+    // ride id -> ride waiting for a driver or for its offer to be answered
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+    // driver user id -> offer expiry; only touched from dispatch()
+    private final Map<Long, Long> reservedUntil = new HashMap<>();
+
+    public BatchDispatcher(DriverSpatialIndex driverSpatialIndex,
+                           OpenRideIndex openRideIndex,
+                           WebSocketController webSocketController,
+                           OfferCascade offerCascade,
+                           MeterRegistry meterRegistry,
+                           @Value("${apnaride.dispatch.mode:batch}") String mode,
+                           @Value("${apnaride.dispatch.region-degrees:0.5}") double regionDegrees,
+                           @Value("${apnaride.matching.radius-km:10}") double radiusKm,
+                           @Value("${apnaride.dispatch.max-candidates:25}") int maxCandidates,
+                           @Value("${apnaride.dispatch.offer-timeout-ms:15000}") long offerTimeoutMillis,
+                           @Value("${apnaride.dispatch.max-rounds:3}") int maxRounds) {
+        this.driverSpatialIndex = driverSpatialIndex;
+        this.openRideIndex = openRideIndex;
+        this.webSocketController = webSocketController;
+        this.offerCascade = offerCascade;
+        this.mode = mode.trim().toLowerCase(Locale.ROOT);
+        this.regionDegrees = regionDegrees;
+        this.radiusKm = radiusKm;
+        this.maxCandidates = maxCandidates;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.maxRounds = maxRounds;
+        this.offers = meterRegistry.counter("apnaride.dispatch.offers");
+        this.fallbacks = meterRegistry.counter("apnaride.dispatch.fallbacks");
+        this.solveTimer = meterRegistry.timer("apnaride.dispatch.solve");
+        this.batchSize = meterRegistry.summary("apnaride.dispatch.batch.size");
+    }
+
+    /**
+     * Hand a freshly saved REQUESTED ride to dispatch
+     */
+    public void submit(Ride ride, RideResponse response) {
+        if (ride.getId() == null || ride.getPickupLat() == null || ride.getPickupLng() == null) {
+            broadcast(ride, response);
+        } else if ("cascade".equals(mode)) {
+            offerCascade.start(ride, response, () -> {
+                fallbacks.increment();
+                broadcast(ride, response);
+            });
+        } else if ("batch".equals(mode)) {
+            pending.put(ride.getId(), new Pending(ride, response));
+        } else {
+            broadcast(ride, response);
+        }
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Close the current window: drop rides that were taken or cancelled, release expired offers and
+     * match everything still waiting
+     */
+    @Scheduled(fixedDelayString = "${apnaride.dispatch.window-ms:2000}")
+    public synchronized void dispatch() {
+        long now = System.currentTimeMillis();
+        reservedUntil.values().removeIf(until -> until <= now);
+
+        Map<String, List<Pending>> regions = new HashMap<>();
+        for (Iterator<Pending> it = pending.values().iterator(); it.hasNext(); ) {
+            Pending p = it.next();
+            if (!openRideIndex.isOpen(p.ride.getId())) {
+                it.remove();
+                if (p.offeredTo != null) {
+                    reservedUntil.remove(p.offeredTo);
+                }
+                continue;
+            }
+            if (p.offeredTo != null) {
+                if (now < p.offerExpiresAt) {
+                    continue;
+                }
+                p.passed.add(p.offeredTo);
+                p.offeredTo = null;
+            }
+            regions.computeIfAbsent(regionKey(p.ride), k -> new ArrayList<>()).add(p);
+        }
+
+        for (List<Pending> rides : regions.values()) {
+            try {
+                assign(rides, now);
+            } catch (Exception e) {
+                System.err.println("Batch dispatch failed for " + rides.size() + " rides: " + e.getMessage());
+            }
+        }
+    }
+
+    private void assign(List<Pending> rides, long now) {
+        // Candidate drivers of the region: the nearest free drivers around each pickup
+        Map<Long, double[]> candidates = new LinkedHashMap<>();
+        String vehicleType = rides.get(0).ride.getVehicleType();
+        for (Pending p : rides) {
+            int taken = 0;
+            for (GeoCellIndex.Hit<Driver> hit : driverSpatialIndex.findNearby(
+                    p.ride.getPickupLat(), p.ride.getPickupLng(), radiusKm, vehicleType, true)) {
+                Long driverId = hit.getValue().getUserId();
+                if (driverId == null || reservedUntil.containsKey(driverId) || p.passed.contains(driverId)) {
+                    continue;
+                }
+                candidates.putIfAbsent(driverId, new double[]{hit.getLat(), hit.getLng()});
+                if (++taken == maxCandidates) {
+                    break;
+                }
+            }
+        }
+        batchSize.record(rides.size());
+
+        List<Long> driverIds = new ArrayList<>(candidates.keySet());
+        int[] match = new int[rides.size()];
+        Arrays.fill(match, -1);
+        if (!driverIds.isEmpty()) {
+            double[][] cost = new double[rides.size()][driverIds.size()];
+            for (int i = 0; i < rides.size(); i++) {
+                Pending p = rides.get(i);
+                for (int j = 0; j < driverIds.size(); j++) {
+                    double[] at = candidates.get(driverIds.get(j));
+                    double km = GeoDistance.haversineKm(p.ride.getPickupLat(), p.ride.getPickupLng(), at[0], at[1]);
+                    cost[i][j] = km <= radiusKm && !p.passed.contains(driverIds.get(j)) ? km : Double.POSITIVE_INFINITY;
+                }
+            }
+            long start = System.nanoTime();
+            match = MinCostAssignment.solve(cost);
+            solveTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        for (int i = 0; i < rides.size(); i++) {
+            Pending p = rides.get(i);
+            if (match[i] >= 0) {
+                Long driverId = driverIds.get(match[i]);
+                p.offeredTo = driverId;
+                p.offerExpiresAt = now + offerTimeoutMillis;
+                reservedUntil.put(driverId, p.offerExpiresAt);
+                webSocketController.sendRideRequest(driverId, p.response);
+                offers.increment();
+            } else if (++p.rounds >= maxRounds) {
+                pending.remove(p.ride.getId());
+                fallbacks.increment();
+                broadcast(p.ride, p.response);
+            }
+        }
+    }
+
+    /**
+     * Notify only online & available drivers of the ride's vehicle type: those within the matching
+     * radius of the pickup, or all of them when none are near
+     */
+    private void broadcast(Ride ride, RideResponse response) {
+        try {
+            String requestedType = ride.getVehicleType() != null ? ride.getVehicleType().trim() : null;
+            List<Long> driverIds = new ArrayList<>();
+            if (ride.getPickupLat() != null && ride.getPickupLng() != null) {
+                driverSpatialIndex.findNearby(ride.getPickupLat(), ride.getPickupLng(), radiusKm, requestedType, true)
+                        .forEach(hit -> driverIds.add(hit.getValue().getUserId()));
+            }
+            if (driverIds.isEmpty()) {
+                driverSpatialIndex.findAll(requestedType, true).forEach(d -> driverIds.add(d.getUserId()));
+            }
+            driverIds.stream().filter(Objects::nonNull).forEach(id -> webSocketController.sendRideRequest(id, response));
+        } catch (Exception e) {
+            // As a fail-safe, do not spam all drivers of other types; just log.
+            System.err.println("Type-matched dispatch failed: " + e.getMessage());
+        }
+    }
+
+    private String regionKey(Ride ride) {
+        String type = ride.getVehicleType() != null ? ride.getVehicleType().trim().toLowerCase(Locale.ROOT) : "";
+        return type + "|" + (int) Math.floor(ride.getPickupLat() / regionDegrees)
+                + "," + (int) Math.floor(ride.getPickupLng() / regionDegrees);
+    }
+
+    private static final class Pending {
+        final Ride ride;
+        final RideResponse response;
+        final Set<Long> passed = new HashSet<>(); // drivers whose offer for this ride timed out
+        Long offeredTo;
+        long offerExpiresAt;
+        int rounds;
+
+        Pending(Ride ride, RideResponse response) {
+            this.ride = ride;
+            this.response = response;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.apnaride.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of concurrent calls to one outbound integration. With request handling on
+ * virtual threads nothing else bounds how many requests wait on a slow upstream at once, so each
+ * integration gets its own limit; callers beyond it wait up to maxWaitMillis and are then
+ * rejected so they can fall back instead of piling up.
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final long maxWaitMillis;
+    private final Semaphore permits;
+    private final Counter rejected;
+
+    public Bulkhead(String name, int maxConcurrent, long maxWaitMillis, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaitMillis = maxWaitMillis;
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.rejected = meterRegistry.counter("apnaride.outbound.rejected", "integration", name);
+        Gauge.builder("apnaride.outbound.in-flight", this, Bulkhead::inFlight)
+                .tag("integration", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Take a permit, waiting up to maxWaitMillis; every true must be matched by {@link #release()}
+     */
+    public boolean tryAcquire() {
+        try {
+            if (permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Take a permit only if one is free right now, for callers that must not block
+     */
+    public boolean tryAcquireNow() {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public int inFlight() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,57 @@
+package com.apnaride.service;
+
+/**
+ * Consecutive-failure circuit breaker. After failureThreshold failures in a row the circuit
+ * opens and calls are skipped for openMillis; then a single probe is let through, and its
+ * outcome closes the circuit again or re-opens it.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt; // when the circuit opened, or when the current probe started
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Whether a call may go ahead now; moving to half-open hands out exactly one probe
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        // A probe whose outcome never arrived (e.g. it was cancelled) is replaced after openMillis
+        long now = System.currentTimeMillis();
+        if (now - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+            openedAt = now;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,281 @@
+package com.apnaride.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Road distance and duration between many points in one computation, e.g. from every candidate
+ * driver to a pickup. Cells are cached per snapped (source, destination) pair; missing cells are
+ * computed together through the OSRM table service or the local road graph, the same backends as
+ * /api/route. Cells no backend answers in time get a Haversine estimate (never cached).
+ */
+@Service
+public class DistanceMatrixService {
+
+    private final OsrmClient osrmClient;
+    private final LocalRoutingEngine localEngine;
+    private final ObjectMapper objectMapper;
+    private final boolean preferLocal;
+    private final TtlLruCache<String, double[]> cache;
+    private final double snapScale;
+    private final long timeoutMillis;
+    private final double fallbackSpeedMps;
+    private final double detourFactor;
+
+    private final Counter cacheCells;
+    private final Counter osrmCells;
+    private final Counter localCells;
+    private final Counter estimatedCells;
+
+    public DistanceMatrixService(OsrmClient osrmClient,
+                                 LocalRoutingEngine localEngine,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${apnaride.matrix.cache.max-entries:20000}") int maxEntries,
+                                 @Value("${apnaride.matrix.cache.ttl-seconds:300}") long ttlSeconds,
+                                 @Value("${apnaride.matrix.cache.snap-decimals:3}") int snapDecimals,
+                                 @Value("${apnaride.matrix.timeout-ms:1500}") long timeoutMillis,
+                                 @Value("${apnaride.matrix.fallback-speed-kmh:25}") double fallbackSpeedKmh,
+                                 @Value("${apnaride.matrix.detour-factor:1.3}") double detourFactor,
+                                 @Value("${apnaride.route.prefer-local:false}") boolean preferLocal) {
+        this.osrmClient = osrmClient;
+        this.localEngine = localEngine;
+        this.objectMapper = objectMapper;
+        this.preferLocal = preferLocal;
+        this.cache = new TtlLruCache<>(maxEntries, ttlSeconds * 1000);
+        this.snapScale = Math.pow(10, snapDecimals);
+        this.timeoutMillis = timeoutMillis;
+        this.fallbackSpeedMps = fallbackSpeedKmh / 3.6;
+        this.detourFactor = detourFactor;
+        this.cacheCells = meterRegistry.counter("apnaride.matrix.cells", "source", "cache");
+        this.osrmCells = meterRegistry.counter("apnaride.matrix.cells", "source", "osrm");
+        this.localCells = meterRegistry.counter("apnaride.matrix.cells", "source", "local");
+        this.estimatedCells = meterRegistry.counter("apnaride.matrix.cells", "source", "estimate");
+        Gauge.builder("apnaride.matrix.cache.size", cache, TtlLruCache::size).register(meterRegistry);
+        Gauge.builder("apnaride.matrix.cache.hit.ratio", cache, TtlLruCache::hitRatio).register(meterRegistry);
+    }
+
+    /**
+     * Many-to-one: from each source to a single destination
+     */
+    public CompletableFuture<Matrix> toPoint(double[] srcLat, double[] srcLng, double lat, double lng) {
+        return compute(srcLat, srcLng, new double[]{lat}, new double[]{lng});
+    }
+
+    /**
+     * Many-to-many. Completes within the configured timeout; late backend answers still fill the cache.
+     */
+    public CompletableFuture<Matrix> compute(double[] srcLat, double[] srcLng, double[] dstLat, double[] dstLng) {
+        int rows = srcLat.length;
+        int cols = dstLat.length;
+        Matrix matrix = new Matrix(rows, cols);
+        List<Integer> missingRows = new ArrayList<>();
+        List<Integer> missingCols = new ArrayList<>();
+        boolean[] colMissing = new boolean[cols];
+        for (int i = 0; i < rows; i++) {
+            boolean rowMissing = false;
+            for (int j = 0; j < cols; j++) {
+                double[] cell = cache.get(key(srcLat[i], srcLng[i], dstLat[j], dstLng[j]));
+                if (cell != null) {
+                    matrix.set(i, j, cell[0], cell[1], false);
+                    cacheCells.increment();
+                } else {
+                    rowMissing = true;
+                    colMissing[j] = true;
+                }
+            }
+            if (rowMissing) {
+                missingRows.add(i);
+            }
+        }
+        for (int j = 0; j < cols; j++) {
+            if (colMissing[j]) {
+                missingCols.add(j);
+            }
+        }
+        if (missingRows.isEmpty()) {
+            return CompletableFuture.completedFuture(matrix);
+        }
+
+        // Only the rows and columns with a miss go to a backend, as one sub-matrix
+        double[] subSrcLat = pick(srcLat, missingRows);
+        double[] subSrcLng = pick(srcLng, missingRows);
+        double[] subDstLat = pick(dstLat, missingCols);
+        double[] subDstLng = pick(dstLng, missingCols);
+        CompletableFuture<double[][][]> fetched = fetch(subSrcLat, subSrcLng, subDstLat, subDstLng)
+                .thenApply(cells -> {
+                    if (cells != null) {
+                        remember(cells, subSrcLat, subSrcLng, subDstLat, subDstLng);
+                    }
+                    return cells;
+                });
+        return fetched.copy()
+                .completeOnTimeout(null, timeoutMillis, TimeUnit.MILLISECONDS)
+                .exceptionally(error -> null)
+                .thenApply(cells -> {
+                    for (int a = 0; a < missingRows.size(); a++) {
+                        int i = missingRows.get(a);
+                        for (int b = 0; b < missingCols.size(); b++) {
+                            int j = missingCols.get(b);
+                            if (matrix.isSet(i, j)) {
+                                continue; // cached cell inside a missing row/column
+                            }
+                            if (cells != null && !Double.isNaN(cells[0][a][b])) {
+                                matrix.set(i, j, cells[0][a][b], cells[1][a][b], false);
+                            } else {
+                                double meters = GeoDistance.haversineMeters(srcLat[i], srcLng[i], dstLat[j], dstLng[j]) * detourFactor;
+                                matrix.set(i, j, meters / fallbackSpeedMps, meters, true);
+                                estimatedCells.increment();
+                            }
+                        }
+                    }
+                    return matrix;
+                });
+    }
+
+    public TtlLruCache<String, double[]> getCache() {
+        return cache;
+    }
+
+    // {durations, distances} for the sub-matrix, or null when no backend could answer
+    private CompletableFuture<double[][][]> fetch(double[] srcLat, double[] srcLng, double[] dstLat, double[] dstLng) {
+        if (preferLocal) {
+            Optional<double[][][]> routed = local(srcLat, srcLng, dstLat, dstLng);
+            if (routed.isPresent()) {
+                return CompletableFuture.completedFuture(routed.get());
+            }
+        }
+        StringBuilder coordinates = new StringBuilder();
+        StringBuilder sources = new StringBuilder();
+        StringBuilder destinations = new StringBuilder();
+        for (int i = 0; i < srcLat.length; i++) {
+            append(coordinates, srcLat[i], srcLng[i]);
+            sources.append(sources.length() > 0 ? ";" : "").append(i);
+        }
+        for (int j = 0; j < dstLat.length; j++) {
+            append(coordinates, dstLat[j], dstLng[j]);
+            destinations.append(destinations.length() > 0 ? ";" : "").append(srcLat.length + j);
+        }
+        String query = coordinates + "?sources=" + sources + "&destinations=" + destinations + "&annotations=duration,distance";
+        return osrmClient.get("table", query).thenApply(body -> {
+            double[][][] cells = body.map(json -> parseTable(json, srcLat.length, dstLat.length)).orElse(null);
+            if (cells != null) {
+                osrmCells.increment(srcLat.length * dstLat.length);
+                return cells;
+            }
+            return local(srcLat, srcLng, dstLat, dstLng).orElse(null);
+        });
+    }
+
+    private Optional<double[][][]> local(double[] srcLat, double[] srcLng, double[] dstLat, double[] dstLng) {
+        Optional<double[][][]> routed = localEngine.matrix(srcLat, srcLng, dstLat, dstLng);
+        routed.ifPresent(cells -> localCells.increment(srcLat.length * dstLat.length));
+        return routed;
+    }
+
+    // OSRM table JSON; unroutable pairs come back as null and stay NaN
+    private double[][][] parseTable(String json, int rows, int cols) {
+        try {
+            JsonNode root = objectMapper.readTree(json);
+            JsonNode durations = root.path("durations");
+            JsonNode distances = root.path("distances");
+            if (!"Ok".equals(root.path("code").asText()) || durations.size() != rows) {
+                return null;
+            }
+            double[][][] cells = new double[2][rows][cols];
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    JsonNode duration = durations.path(i).path(j);
+                    JsonNode distance = distances.path(i).path(j);
+                    boolean routed = duration.isNumber() && distance.isNumber();
+                    cells[0][i][j] = routed ? duration.asDouble() : Double.NaN;
+                    cells[1][i][j] = routed ? distance.asDouble() : Double.NaN;
+                }
+            }
+            return cells;
+        } catch (Exception e) {
+            System.err.println("Unreadable OSRM table response: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void remember(double[][][] cells, double[] srcLat, double[] srcLng, double[] dstLat, double[] dstLng) {
+        for (int i = 0; i < srcLat.length; i++) {
+            for (int j = 0; j < dstLat.length; j++) {
+                if (!Double.isNaN(cells[0][i][j])) {
+                    cache.put(key(srcLat[i], srcLng[i], dstLat[j], dstLng[j]), new double[]{cells[0][i][j], cells[1][i][j]});
+                }
+            }
+        }
+    }
+
+    private String key(double srcLat, double srcLng, double dstLat, double dstLng) {
+        return snap(srcLat) + "," + snap(srcLng) + ";" + snap(dstLat) + "," + snap(dstLng);
+    }
+
+    private long snap(double degrees) {
+        return Math.round(degrees * snapScale);
+    }
+
+    private static void append(StringBuilder coordinates, double lat, double lng) {
+        if (coordinates.length() > 0) {
+            coordinates.append(';');
+        }
+        coordinates.append(String.format(Locale.US, "%f,%f", lng, lat));
+    }
+
+    private static double[] pick(double[] values, List<Integer> indexes) {
+        double[] picked = new double[indexes.size()];
+        for (int k = 0; k < picked.length; k++) {
+            picked[k] = values[indexes.get(k)];
+        }
+        return picked;
+    }
+
+    /**
+     * Durations in seconds and distances in meters, [source][destination]. Estimated cells are
+     * Haversine distance times the detour factor at the fallback speed.
+     */
+    public static final class Matrix {
+        private final double[][] durations;
+        private final double[][] distances;
+        private final boolean[][] estimated;
+        private final boolean[][] set;
+
+        Matrix(int rows, int cols) {
+            this.durations = new double[rows][cols];
+            this.distances = new double[rows][cols];
+            this.estimated = new boolean[rows][cols];
+            this.set = new boolean[rows][cols];
+        }
+
+        void set(int i, int j, double seconds, double meters, boolean estimate) {
+            durations[i][j] = seconds;
+            distances[i][j] = meters;
+            estimated[i][j] = estimate;
+            set[i][j] = true;
+        }
+
+        boolean isSet(int i, int j) {
+            return set[i][j];
+        }
+
+        public int rows() { return durations.length; }
+        public int cols() { return durations.length > 0 ? durations[0].length : 0; }
+        public double getDurationSeconds(int i, int j) { return durations[i][j]; }
+        public double getDistanceMeters(int i, int j) { return distances[i][j]; }
+        public boolean isEstimate(int i, int j) { return estimated[i][j]; }
+    }
+}
@@ -0,0 +1,137 @@
+package com.apnaride.service;
+
+import com.apnaride.dto.LocationUpdate;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces driver location updates before they hit the STOMP broker. Only the newest
+ * update per driver is held; a scheduled tick publishes it at most once per interval,
+ * and only if someone subscribes to the driver's topic and the driver actually moved or turned.
+ */
+@Service
+public class DriverLocationBroadcaster {
+
+    public static final String DESTINATION_PREFIX = "/topic/driver-location/";
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private StompSubscriptionRegistry subscriptionRegistry;
+
+    @Value("${apnaride.broadcast.location.min-move-meters:5}")
+    private double minMoveMeters;
+
+    @Value("${apnaride.broadcast.location.min-heading-degrees:15}")
+    private double minHeadingDegrees;
+
+    private final Map<Long, LocationUpdate> pending = new ConcurrentHashMap<>();
+    private final Map<Long, LocationUpdate> latest = new ConcurrentHashMap<>();
+    private final Map<Long, LocationUpdate> lastSent = new ConcurrentHashMap<>();
+
+    private final Counter received;
+    private final Counter sent;
+    private final Counter dropped;
+
+    public DriverLocationBroadcaster(MeterRegistry meterRegistry) {
+        this.received = meterRegistry.counter("apnaride.broadcast.location", "outcome", "received");
+        this.sent = meterRegistry.counter("apnaride.broadcast.location", "outcome", "sent");
+        this.dropped = meterRegistry.counter("apnaride.broadcast.location", "outcome", "dropped");
+    }
+
+    /**
+     * Queue an update; any update still pending for the same driver is replaced
+     */
+    public void submit(LocationUpdate update) {
+        if (update.getDriverId() == null || update.getLatitude() == null || update.getLongitude() == null) {
+            return;
+        }
+        received.increment();
+        latest.put(update.getDriverId(), update);
+        if (pending.put(update.getDriverId(), update) != null) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Publish the latest pending update of each driver, rate-limited by the tick interval
+     */
+    @Scheduled(fixedRateString = "${apnaride.broadcast.location.interval-ms:1000}")
+    public void flush() {
+        Iterator<Map.Entry<Long, LocationUpdate>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, LocationUpdate> entry = it.next();
+            Long driverId = entry.getKey();
+            LocationUpdate update = entry.getValue();
+            if (!pending.remove(driverId, update)) {
+                continue; // replaced by a newer update; it will be picked up next tick
+            }
+            String destination = DESTINATION_PREFIX + driverId;
+            if (!subscriptionRegistry.hasSubscribers(destination) || !movedEnough(lastSent.get(driverId), update)) {
+                dropped.increment();
+                continue;
+            }
+            messagingTemplate.convertAndSend(destination, update);
+            lastSent.put(driverId, update);
+            sent.increment();
+        }
+    }
+
+    /**
+     * A new tracker gets the driver's current position on the next tick, even if the driver is stationary
+     */
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        String destination = StompHeaderAccessor.wrap(event.getMessage()).getDestination();
+        if (destination == null || !destination.startsWith(DESTINATION_PREFIX)) {
+            return;
+        }
+        try {
+            Long driverId = Long.valueOf(destination.substring(DESTINATION_PREFIX.length()));
+            lastSent.remove(driverId);
+            LocationUpdate current = latest.get(driverId);
+            if (current != null) {
+                pending.putIfAbsent(driverId, current);
+            }
+        } catch (NumberFormatException ignore) {
+            // not a driver topic we publish to
+        }
+    }
+
+    /**
+     * Forget a driver that went offline
+     */
+    public void evict(Long driverId) {
+        pending.remove(driverId);
+        latest.remove(driverId);
+        lastSent.remove(driverId);
+    }
+
+    private boolean movedEnough(LocationUpdate previous, LocationUpdate next) {
+        if (previous == null) {
+            return true;
+        }
+        double moved = GeoDistance.haversineMeters(previous.getLatitude(), previous.getLongitude(), next.getLatitude(), next.getLongitude());
+        if (moved >= minMoveMeters) {
+            return true;
+        }
+        if (previous.getHeading() != null && next.getHeading() != null) {
+            double turn = Math.abs(previous.getHeading() - next.getHeading()) % 360;
+            return Math.min(turn, 360 - turn) >= minHeadingDegrees;
+        }
+        return false;
+    }
+}
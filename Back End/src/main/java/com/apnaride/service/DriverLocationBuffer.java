@@ -0,0 +1,136 @@
+package com.apnaride.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind table of the latest GPS position per driver. Pings overwrite each
+ * other in memory and a background flusher persists only lat/lng/lastActive in JDBC batches.
+ */
+@Service
+public class DriverLocationBuffer {
+
+    private static final String UPDATE_SQL =
+            "UPDATE drivers SET current_lat = ?, current_lng = ?, last_active = ? WHERE user_id = ?";
+
+    private final Map<Long, PendingLocation> pending = new ConcurrentHashMap<>();
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+
+    private final Timer flushTimer;
+    private final Timer flushLag;
+    private final Counter flushedRows;
+
+    public DriverLocationBuffer(JdbcTemplate jdbcTemplate,
+                                MeterRegistry meterRegistry,
+                                @Value("${apnaride.location.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+        meterRegistry.gaugeMapSize("apnaride.location.pending", Tags.empty(), pending);
+        this.flushTimer = meterRegistry.timer("apnaride.location.flush");
+        this.flushLag = meterRegistry.timer("apnaride.location.flush.lag");
+        this.flushedRows = meterRegistry.counter("apnaride.location.flushed");
+    }
+
+    /**
+     * Record a driver's latest position; only the newest ping per driver is kept
+     */
+    public void record(Long userId, double lat, double lng, LocalDateTime at) {
+        pending.put(userId, new PendingLocation(userId, lat, lng, at, System.nanoTime()));
+    }
+
+    /**
+     * Drop a buffered position, used when a full entity save has just written a newer one
+     */
+    public void discard(Long userId) {
+        pending.remove(userId);
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Persist buffered positions in JDBC batches
+     */
+    @Scheduled(fixedDelayString = "${apnaride.location.flush-interval-ms:2000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        flushTimer.record(() -> {
+            List<PendingLocation> batch = new ArrayList<>(Math.min(pending.size(), batchSize));
+            long now = System.nanoTime();
+            for (PendingLocation location : pending.values()) {
+                // Only take the entry we saw; a newer ping arriving meanwhile stays queued
+                if (pending.remove(location.userId, location)) {
+                    flushLag.record(now - location.recordedAtNanos, TimeUnit.NANOSECONDS);
+                    batch.add(location);
+                    if (batch.size() >= batchSize) {
+                        write(batch);
+                        batch.clear();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        try {
+            flush();
+        } catch (Exception e) {
+            System.err.println("Final location flush failed: " + e.getMessage());
+        }
+    }
+
+    private void write(List<PendingLocation> batch) {
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, batch, batch.size(), (ps, location) -> {
+                ps.setDouble(1, location.lat);
+                ps.setDouble(2, location.lng);
+                ps.setTimestamp(3, Timestamp.valueOf(location.at));
+                ps.setLong(4, location.userId);
+            });
+            flushedRows.increment(batch.size());
+        } catch (Exception e) {
+            // Re-queue unless a newer ping already replaced the entry
+            batch.forEach(location -> pending.putIfAbsent(location.userId, location));
+            System.err.println("Driver location flush failed: " + e.getMessage());
+        }
+    }
+
+    private static final class PendingLocation {
+        final Long userId;
+        final double lat;
+        final double lng;
+        final LocalDateTime at;
+        final long recordedAtNanos;
+
+        PendingLocation(Long userId, double lat, double lng, LocalDateTime at, long recordedAtNanos) {
+            this.userId = userId;
+            this.lat = lat;
+            this.lng = lng;
+            this.at = at;
+            this.recordedAtNanos = recordedAtNanos;
+        }
+    }
+}
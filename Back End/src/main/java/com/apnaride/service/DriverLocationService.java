@@ -16,10 +16,28 @@ public class DriverLocationService {
     @Autowired
     private DriverRepository driverRepository;
 
+    @Autowired
+    private DriverSpatialIndex driverSpatialIndex;
+
+    @Autowired
+    private DriverLocationBuffer driverLocationBuffer;
+
     /**
-     * Update driver's real-time location
+     * Update driver's real-time location.
+     * Plain position pings for online drivers are served from memory and persisted by
+     * {@link DriverLocationBuffer}; status changes still go through a full entity save.
      */
     public Driver updateLocation(DriverLocationUpdate locationUpdate) {
+        LocalDateTime now = LocalDateTime.now();
+        boolean statusChange = locationUpdate.getIsOnline() != null || locationUpdate.getIsAvailable() != null;
+        if (!statusChange && locationUpdate.getLatitude() != null && locationUpdate.getLongitude() != null) {
+            Optional<Driver> tracked = trackLocation(
+                locationUpdate.getDriverId(), locationUpdate.getLatitude(), locationUpdate.getLongitude(), now);
+            if (tracked.isPresent()) {
+                return tracked.get();
+            }
+        }
+
         Optional<Driver> driverOpt = driverRepository.findByUserId(locationUpdate.getDriverId());
         
         if (driverOpt.isEmpty()) {
@@ -29,7 +47,7 @@ public class DriverLocationService {
         Driver driver = driverOpt.get();
         driver.setCurrentLat(locationUpdate.getLatitude());
         driver.setCurrentLng(locationUpdate.getLongitude());
-        driver.setLastActive(LocalDateTime.now());
+        driver.setLastActive(now);
         
         if (locationUpdate.getIsOnline() != null) {
             driver.setIsOnline(locationUpdate.getIsOnline());
@@ -39,7 +57,39 @@ public class DriverLocationService {
             driver.setIsAvailable(locationUpdate.getIsAvailable());
         }
         
-        return driverRepository.save(driver);
+        return save(driver, locationUpdate.getLatitude() != null && locationUpdate.getLongitude() != null);
+    }
+
+    /**
+     * Save a driver loaded from the database and re-index it. The loaded row only has the last
+     * flushed position, so unless the caller set a new one the indexed (newest) position is kept
+     * and buffered pings are left to flush.
+     */
+    public Driver save(Driver driver, boolean newPosition) {
+        if (newPosition) {
+            // The full save carries the newest position, so an older buffered one must not overwrite it
+            driverLocationBuffer.discard(driver.getUserId());
+        } else {
+            driverSpatialIndex.get(driver.getUserId()).ifPresent(indexed -> {
+                if (indexed.getCurrentLat() != null && indexed.getCurrentLng() != null) {
+                    driver.setCurrentLat(indexed.getCurrentLat());
+                    driver.setCurrentLng(indexed.getCurrentLng());
+                }
+            });
+        }
+        Driver saved = driverRepository.save(driver);
+        driverSpatialIndex.update(saved);
+        return saved;
+    }
+
+    /**
+     * Record a position ping for an online driver without touching the database.
+     * Returns empty if the driver is not online on this instance.
+     */
+    public Optional<Driver> trackLocation(Long userId, double lat, double lng, LocalDateTime at) {
+        Optional<Driver> moved = driverSpatialIndex.moveTo(userId, lat, lng, at);
+        moved.ifPresent(d -> driverLocationBuffer.record(userId, lat, lng, at));
+        return moved;
     }
 
     /**
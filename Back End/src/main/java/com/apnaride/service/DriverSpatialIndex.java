@@ -0,0 +1,147 @@
+package com.apnaride.service;
+
+import com.apnaride.model.Driver;
+import com.apnaride.repository.DriverRepository;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+@Service
+public class DriverSpatialIndex {
+
+    // ~2.2km cells: a 10km search touches about 10x10 cells
+    private static final double CELL_DEGREES = 0.02;
+
+    @Autowired
+    private DriverRepository driverRepository;
+
+    private final GeoCellIndex<Driver> index = new GeoCellIndex<>(CELL_DEGREES);
+
+    // userId -> isAvailable for every indexed driver, kept alongside the counters it drives
+    private final Map<Long, Boolean> presence = new ConcurrentHashMap<>();
+    private final LongAdder onlineCount = new LongAdder();
+    private final LongAdder availableCount = new LongAdder();
+
+    /**
+     * Load online drivers once at startup; afterwards the index is kept current by writers
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        driverRepository.findByIsOnline(true).forEach(this::update);
+    }
+
+    /**
+     * Reflect a driver's latest saved state; offline or suspended drivers are evicted
+     */
+    public void update(Driver driver) {
+        if (driver == null || driver.getUserId() == null) {
+            return;
+        }
+        if (!Boolean.TRUE.equals(driver.getIsOnline()) || Boolean.TRUE.equals(driver.getIsSuspended())) {
+            remove(driver.getUserId());
+            return;
+        }
+        index.put(driver.getUserId(), driver.getVehicleType(), driver.getCurrentLat(), driver.getCurrentLng(), driver);
+        trackPresence(driver.getUserId(), Boolean.TRUE.equals(driver.getIsAvailable()));
+    }
+
+    /**
+     * Move an indexed driver to a new position without touching the database.
+     * Returns empty when the driver is not online, so the caller can fall back to a full load.
+     * Works on a copy of the current entry, so a concurrent update or remove is never undone.
+     */
+    public Optional<Driver> moveTo(Long userId, double lat, double lng, LocalDateTime at) {
+        if (userId == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(index.move(userId, lat, lng, current -> {
+            Driver moved = new Driver();
+            BeanUtils.copyProperties(current, moved);
+            moved.setCurrentLat(lat);
+            moved.setCurrentLng(lng);
+            moved.setLastActive(at);
+            return moved;
+        }));
+    }
+
+    /**
+     * Remove a driver by user id
+     */
+    public void remove(Long userId) {
+        if (userId != null) {
+            index.remove(userId);
+            trackPresence(userId, null);
+        }
+    }
+
+    /**
+     * Get an online driver by user id
+     */
+    public Optional<Driver> get(Long userId) {
+        GeoCellIndex.Entry<Driver> entry = userId != null ? index.get(userId) : null;
+        return entry != null ? Optional.of(entry.getValue()) : Optional.empty();
+    }
+
+    /**
+     * Online drivers within radius of a point, nearest first. A null vehicleType matches all types.
+     */
+    public List<GeoCellIndex.Hit<Driver>> findNearby(double lat, double lng, double radiusKm,
+                                                     String vehicleType, boolean availableOnly) {
+        return index.within(lat, lng, radiusKm, vehicleType, filter(availableOnly));
+    }
+
+    /**
+     * Nearest online driver at any distance
+     */
+    public Optional<GeoCellIndex.Hit<Driver>> findNearest(double lat, double lng, String vehicleType, boolean availableOnly) {
+        return index.nearest(lat, lng, vehicleType, filter(availableOnly));
+    }
+
+    /**
+     * All online drivers of a vehicle type, including those without a known location
+     */
+    public List<Driver> findAll(String vehicleType, boolean availableOnly) {
+        return index.values(vehicleType, filter(availableOnly));
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public long onlineCount() {
+        return onlineCount.sum();
+    }
+
+    public long availableCount() {
+        return availableCount.sum();
+    }
+
+    // available == null means the driver left the index
+    private void trackPresence(Long userId, Boolean available) {
+        presence.compute(userId, (k, previous) -> {
+            if (previous != null) {
+                onlineCount.decrement();
+                if (previous) availableCount.decrement();
+            }
+            if (available != null) {
+                onlineCount.increment();
+                if (available) availableCount.increment();
+            }
+            return available;
+        });
+    }
+
+    private static Predicate<Driver> filter(boolean availableOnly) {
+        return availableOnly ? d -> Boolean.TRUE.equals(d.getIsAvailable()) : d -> true;
+    }
+}
@@ -0,0 +1,31 @@
+package com.apnaride.service;
+
+/**
+ * Built-in rates: a per-vehicle base fare plus a flat rate per km, used by {@link FareEngine}
+ * for vehicle types without a fare_structures row. Trips without coordinates are priced as 10 km.
+ */
+public final class FareCalculator {
+
+    public static final double DEFAULT_DISTANCE_KM = 10.0;
+    public static final double PER_KM = 10.0; // ₹10 per km
+
+    private FareCalculator() {
+    }
+
+    public static double distanceKm(Double lat1, Double lng1, Double lat2, Double lng2) {
+        if (lat1 == null || lng1 == null || lat2 == null || lng2 == null) {
+            return DEFAULT_DISTANCE_KM;
+        }
+        return GeoDistance.haversineKm(lat1, lng1, lat2, lng2);
+    }
+
+    public static double baseFare(String vehicleType) {
+        switch (vehicleType.toLowerCase()) {
+            case "share": return 30.0;
+            case "bike": return 40.0;
+            case "auto": return 50.0;
+            case "car": return 80.0;
+            default: return 50.0;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.apnaride.service;
+
+import com.apnaride.model.FareStructure;
+import com.apnaride.repository.FareStructureRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Prices trips from the active fare_structures rows. The rows are read into an immutable snapshot
+ * that is swapped in one volatile write on reload (after an admin edit, and periodically to pick
+ * up edits made on other replicas), so quoting never touches the database. Vehicle types without
+ * a row keep the built-in {@link FareCalculator} rates.
+ */
+@Service
+public class FareEngine {
+
+    private static final List<String> DEFAULT_VEHICLE_TYPES = List.of("auto", "bike", "car", "share");
+
+    @Autowired
+    private FareStructureRepository fareStructureRepository;
+
+    @Value("${apnaride.fares.average-speed-kmh:25}")
+    private double averageSpeedKmh;
+
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), 0, LocalDateTime.now());
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        reload();
+    }
+
+    /**
+     * Re-read the active rows and swap the snapshot; quotes in flight finish on the old one
+     */
+    @Scheduled(fixedDelayString = "${apnaride.fares.reload-interval-ms:60000}",
+               initialDelayString = "${apnaride.fares.reload-interval-ms:60000}")
+    public synchronized void reload() {
+        Map<String, Rates> rates = new TreeMap<>();
+        for (FareStructure row : fareStructureRepository.findByIsActiveTrue()) {
+            if (row.getVehicleType() != null && !row.getVehicleType().isBlank()) {
+                String type = key(row.getVehicleType());
+                rates.put(type, Rates.of(type, row));
+            }
+        }
+        Snapshot current = snapshot;
+        if (!rates.equals(current.rates)) {
+            snapshot = new Snapshot(Collections.unmodifiableMap(rates), current.epoch + 1, LocalDateTime.now());
+            System.out.println("Fare structures loaded: " + rates.keySet() + " (epoch " + (current.epoch + 1) + ")");
+        }
+    }
+
+    /**
+     * Fare at booking time: straight-line distance, duration estimated at the average speed
+     */
+    public double fare(String vehicleType, Double pickupLat, Double pickupLng, Double dropLat, Double dropLng) {
+        double km = FareCalculator.distanceKm(pickupLat, pickupLng, dropLat, dropLng);
+        return quote(vehicleType, km, estimatedMinutes(km)).getTotal();
+    }
+
+    public Quote quote(String vehicleType, double distanceKm, double durationMinutes) {
+        return quote(vehicleType, distanceKm, durationMinutes, 1.0);
+    }
+
+    /**
+     * Quote with a surge multiplier applied on top of the (minimum-capped) fare
+     */
+    public Quote quote(String vehicleType, double distanceKm, double durationMinutes, double surgeMultiplier) {
+        Snapshot s = snapshot;
+        return s.rates(key(vehicleType)).quote(distanceKm, durationMinutes, surgeMultiplier, s.epoch);
+    }
+
+    /**
+     * One quote per known vehicle type (configured or built in), all from the same snapshot
+     */
+    public List<Quote> quoteAll(double distanceKm, double durationMinutes) {
+        Snapshot s = snapshot;
+        List<Quote> quotes = new ArrayList<>();
+        for (String type : s.vehicleTypes()) {
+            quotes.add(s.rates(type).quote(distanceKm, durationMinutes, 1.0, s.epoch));
+        }
+        return quotes;
+    }
+
+    public double estimatedMinutes(double distanceKm) {
+        return distanceKm / averageSpeedKmh * 60.0;
+    }
+
+    /**
+     * Known vehicle types, configured or built in, sorted
+     */
+    public List<String> getVehicleTypes() {
+        return snapshot.vehicleTypes();
+    }
+
+    /**
+     * Current rates per vehicle type, including built-in ones
+     */
+    public List<Rates> getRates() {
+        Snapshot s = snapshot;
+        List<Rates> all = new ArrayList<>();
+        for (String type : s.vehicleTypes()) {
+            all.add(s.rates(type));
+        }
+        return all;
+    }
+
+    /**
+     * Incremented on every snapshot swap
+     */
+    public long getEpoch() {
+        return snapshot.epoch;
+    }
+
+    public LocalDateTime getLoadedAt() {
+        return snapshot.loadedAt;
+    }
+
+    private static String key(String vehicleType) {
+        return vehicleType != null ? vehicleType.trim().toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static final class Snapshot {
+        final Map<String, Rates> rates;
+        final long epoch;
+        final LocalDateTime loadedAt;
+
+        Snapshot(Map<String, Rates> rates, long epoch, LocalDateTime loadedAt) {
+            this.rates = rates;
+            this.epoch = epoch;
+            this.loadedAt = loadedAt;
+        }
+
+        Rates rates(String type) {
+            Rates configured = rates.get(type);
+            return configured != null ? configured : Rates.builtIn(type);
+        }
+
+        List<String> vehicleTypes() {
+            TreeMap<String, Boolean> types = new TreeMap<>();
+            DEFAULT_VEHICLE_TYPES.forEach(t -> types.put(t, true));
+            rates.keySet().forEach(t -> types.put(t, true));
+            return new ArrayList<>(types.keySet());
+        }
+    }
+
+    /**
+     * Rates of one vehicle type. Missing columns fall back to the built-in base fare and per-km
+     * rate, and to zero for the rest.
+     */
+    public static final class Rates {
+        private final String vehicleType;
+        private final double baseFare;
+        private final double perKmRate;
+        private final double perMinuteRate;
+        private final double minimumFare;
+        private final double cancellationFee;
+        private final boolean configured;
+
+        Rates(String vehicleType, double baseFare, double perKmRate, double perMinuteRate,
+              double minimumFare, double cancellationFee, boolean configured) {
+            this.vehicleType = vehicleType;
+            this.baseFare = baseFare;
+            this.perKmRate = perKmRate;
+            this.perMinuteRate = perMinuteRate;
+            this.minimumFare = minimumFare;
+            this.cancellationFee = cancellationFee;
+            this.configured = configured;
+        }
+
+        static Rates of(String type, FareStructure row) {
+            return new Rates(type,
+                    orElse(row.getBaseFare(), FareCalculator.baseFare(type)),
+                    orElse(row.getPerKmRate(), FareCalculator.PER_KM),
+                    orElse(row.getPerMinuteRate(), 0.0),
+                    orElse(row.getMinimumFare(), 0.0),
+                    orElse(row.getCancellationFee(), 0.0),
+                    true);
+        }
+
+        static Rates builtIn(String type) {
+            return new Rates(type, FareCalculator.baseFare(type), FareCalculator.PER_KM, 0.0, 0.0, 0.0, false);
+        }
+
+        Quote quote(double distanceKm, double durationMinutes, double surgeMultiplier, long epoch) {
+            double distanceFare = distanceKm * perKmRate;
+            double timeFare = durationMinutes * perMinuteRate;
+            double total = Math.max(minimumFare, baseFare + distanceFare + timeFare) * surgeMultiplier;
+            return new Quote(vehicleType, distanceKm, durationMinutes, baseFare, distanceFare, timeFare,
+                    surgeMultiplier, total, epoch);
+        }
+
+        private static double orElse(Double value, double fallback) {
+            return value != null ? value : fallback;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Rates)) {
+                return false;
+            }
+            Rates r = (Rates) o;
+            return vehicleType.equals(r.vehicleType) && baseFare == r.baseFare && perKmRate == r.perKmRate
+                    && perMinuteRate == r.perMinuteRate && minimumFare == r.minimumFare
+                    && cancellationFee == r.cancellationFee && configured == r.configured;
+        }
+
+        @Override
+        public int hashCode() {
+            return vehicleType.hashCode();
+        }
+
+        public String getVehicleType() { return vehicleType; }
+        public double getBaseFare() { return baseFare; }
+        public double getPerKmRate() { return perKmRate; }
+        public double getPerMinuteRate() { return perMinuteRate; }
+        public double getMinimumFare() { return minimumFare; }
+        public double getCancellationFee() { return cancellationFee; }
+        public boolean isConfigured() { return configured; }
+    }
+
+    /**
+     * A priced trip; the epoch identifies the fare snapshot it was priced from
+     */
+    public static final class Quote {
+        private final String vehicleType;
+        private final double distanceKm;
+        private final double durationMinutes;
+        private final double baseFare;
+        private final double distanceFare;
+        private final double timeFare;
+        private final double surgeMultiplier;
+        private final double total;
+        private final long epoch;
+
+        Quote(String vehicleType, double distanceKm, double durationMinutes, double baseFare,
+              double distanceFare, double timeFare, double surgeMultiplier, double total, long epoch) {
+            this.vehicleType = vehicleType;
+            this.distanceKm = distanceKm;
+            this.durationMinutes = durationMinutes;
+            this.baseFare = baseFare;
+            this.distanceFare = distanceFare;
+            this.timeFare = timeFare;
+            this.surgeMultiplier = surgeMultiplier;
+            this.total = total;
+            this.epoch = epoch;
+        }
+
+        public String getVehicleType() { return vehicleType; }
+        public double getDistanceKm() { return distanceKm; }
+        public double getDurationMinutes() { return durationMinutes; }
+        public double getBaseFare() { return baseFare; }
+        public double getDistanceFare() { return distanceFare; }
+        public double getTimeFare() { return timeFare; }
+        public double getSurgeMultiplier() { return surgeMultiplier; }
+        public double getTotal() { return total; }
+        public long getEpoch() { return epoch; }
+
+        /**
+         * The same trip with a different surge multiplier over the same minimum-capped fare
+         */
+        Quote withSurge(double multiplier) {
+            if (multiplier == surgeMultiplier) {
+                return this;
+            }
+            return new Quote(vehicleType, distanceKm, durationMinutes, baseFare, distanceFare, timeFare,
+                    multiplier, total / surgeMultiplier * multiplier, epoch);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.apnaride.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Fare quotes cached per (pickup cell, drop cell, vehicle type, rate epoch). Customers re-quote
+ * while dragging pins, and bookings price the same trip again, so both go through here. Trips are
+ * priced between the cell centers, which keeps a cached quote identical to a fresh one and the
+ * booked fare identical to the quote shown. The cache holds unsurged quotes; the pickup cell's
+ * surge multiplier is applied after the lookup, so a surge change in one cell leaves every other
+ * cached quote in place. Reloaded rates start a new epoch that misses every old key, and the cache
+ * is also cleared then to free the memory.
+ */
+@Service
+public class FareQuoteService {
+
+    private final FareEngine fareEngine;
+    private final SurgeEngine surgeEngine;
+    private final TtlLruCache<String, FareEngine.Quote> cache;
+    private final double snapScale;
+    private final Counter invalidations;
+
+    private volatile long cachedEpoch = -1;
+
+    public FareQuoteService(FareEngine fareEngine,
+                            SurgeEngine surgeEngine,
+                            MeterRegistry meterRegistry,
+                            @Value("${apnaride.quote.cache.max-entries:50000}") int maxEntries,
+                            @Value("${apnaride.quote.cache.ttl-seconds:300}") long ttlSeconds,
+                            @Value("${apnaride.quote.cache.snap-decimals:3}") int snapDecimals) {
+        this.fareEngine = fareEngine;
+        this.surgeEngine = surgeEngine;
+        this.cache = new TtlLruCache<>(maxEntries, ttlSeconds * 1000);
+        this.snapScale = Math.pow(10, snapDecimals);
+        this.invalidations = meterRegistry.counter("apnaride.quote.cache.invalidations");
+        Gauge.builder("apnaride.quote.cache.size", cache, TtlLruCache::size).register(meterRegistry);
+        Gauge.builder("apnaride.quote.cache.hit.ratio", cache, TtlLruCache::hitRatio).register(meterRegistry);
+    }
+
+    /**
+     * Quote for one vehicle type; trips without coordinates are priced at the default distance
+     */
+    public FareEngine.Quote quote(String vehicleType, Double pickupLat, Double pickupLng, Double dropLat, Double dropLng) {
+        long epoch = pricingEpoch();
+        String key = cellKey(pickupLat, pickupLng, dropLat, dropLng) + "|" + normalize(vehicleType) + "|" + epoch;
+        double surge = pickupLat != null && pickupLng != null
+                ? surgeEngine.multiplier(center(pickupLat), center(pickupLng), vehicleType)
+                : 1.0;
+        FareEngine.Quote cached = cache.get(key);
+        if (cached != null) {
+            return cached.withSurge(surge);
+        }
+        double km = FareCalculator.distanceKm(center(pickupLat), center(pickupLng), center(dropLat), center(dropLng));
+        FareEngine.Quote quote = fareEngine.quote(vehicleType, km, fareEngine.estimatedMinutes(km));
+        // Only cache what was priced in the epoch of the key; a change in between prices afresh next time
+        if (pricingEpoch() == epoch) {
+            cache.put(key, quote);
+        }
+        return quote.withSurge(surge);
+    }
+
+    /**
+     * One quote per known vehicle type
+     */
+    public List<FareEngine.Quote> quoteAll(Double pickupLat, Double pickupLng, Double dropLat, Double dropLng) {
+        List<FareEngine.Quote> quotes = new ArrayList<>();
+        for (String type : fareEngine.getVehicleTypes()) {
+            quotes.add(quote(type, pickupLat, pickupLng, dropLat, dropLng));
+        }
+        return quotes;
+    }
+
+    /**
+     * Changes whenever a cached quote could be wrong, i.e. when the rates are reloaded
+     */
+    public long pricingEpoch() {
+        long epoch = fareEngine.getEpoch();
+        if (epoch != cachedEpoch) {
+            synchronized (this) {
+                if (epoch != cachedEpoch) {
+                    cache.invalidateAll();
+                    invalidations.increment();
+                    cachedEpoch = epoch;
+                }
+            }
+        }
+        return epoch;
+    }
+
+    public TtlLruCache<String, FareEngine.Quote> getCache() {
+        return cache;
+    }
+
+    private String cellKey(Double pickupLat, Double pickupLng, Double dropLat, Double dropLng) {
+        if (pickupLat == null || pickupLng == null || dropLat == null || dropLng == null) {
+            return "none";
+        }
+        return snap(pickupLat) + "," + snap(pickupLng) + ";" + snap(dropLat) + "," + snap(dropLng);
+    }
+
+    private long snap(double degrees) {
+        return Math.round(degrees * snapScale);
+    }
+
+    private Double center(Double degrees) {
+        return degrees != null ? snap(degrees) / snapScale : null;
+    }
+
+    private static String normalize(String vehicleType) {
+        return vehicleType != null ? vehicleType.trim().toLowerCase(Locale.ROOT) : "";
+    }
+}
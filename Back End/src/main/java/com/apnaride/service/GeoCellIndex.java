@@ -0,0 +1,272 @@
+package com.apnaride.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Concurrent uniform-grid index of points keyed by id and bucketed by category
+ * (vehicle type). Radius queries only visit the cells overlapping the search circle.
+ */
+public class GeoCellIndex<V> {
+
+    private static final double KM_PER_DEGREE = 111.32;
+    private static final double MAX_RING_KM = 200.0;
+
+    private final double cellDegrees;
+    private final Map<Long, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Map<String, Map<Long, Set<Long>>> cells = new ConcurrentHashMap<>();
+
+    public GeoCellIndex(double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+    }
+
+    /**
+     * Insert or replace the entry for id. Entries without coordinates are kept
+     * (so they show up in {@link #values}) but are never returned by radius queries.
+     */
+    public void put(Long id, String category, Double lat, Double lng, V value) {
+        String key = normalize(category);
+        entries.compute(id, (k, previous) -> {
+            if (previous != null) {
+                unlink(previous);
+            }
+            Entry<V> next = new Entry<>(id, key, lat, lng, value);
+            link(next);
+            return next;
+        });
+    }
+
+    /**
+     * Move an existing entry to a new position, replacing its value with update(current value).
+     * Atomic with put and remove; returns null and does nothing when id is not indexed.
+     */
+    public V move(Long id, Double lat, Double lng, UnaryOperator<V> update) {
+        Entry<V> moved = entries.computeIfPresent(id, (k, previous) -> {
+            unlink(previous);
+            Entry<V> next = new Entry<>(id, previous.category, lat, lng, update.apply(previous.value));
+            link(next);
+            return next;
+        });
+        return moved != null ? moved.value : null;
+    }
+
+    public void remove(Long id) {
+        entries.computeIfPresent(id, (k, previous) -> {
+            unlink(previous);
+            return null;
+        });
+    }
+
+    public Entry<V> get(Long id) {
+        return entries.get(id);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * All entries of the category (null means any) whose value passes the filter.
+     */
+    public List<V> values(String category, Predicate<V> filter) {
+        String key = category != null ? normalize(category) : null;
+        List<V> result = new ArrayList<>();
+        for (Entry<V> entry : entries.values()) {
+            if ((key == null || key.equals(entry.category)) && filter.test(entry.value)) {
+                result.add(entry.value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Entries within radiusKm of the given point, nearest first.
+     */
+    public List<Hit<V>> within(double lat, double lng, double radiusKm, String category, Predicate<V> filter) {
+        List<Hit<V>> hits = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+
+        double latSpan = radiusKm / KM_PER_DEGREE;
+        double cosLat = Math.max(Math.cos(Math.toRadians(lat)), 0.01);
+        double lngSpan = Math.min(radiusKm / (KM_PER_DEGREE * cosLat), 180.0);
+        int minLat = cellOf(lat - latSpan);
+        int maxLat = cellOf(lat + latSpan);
+        int minLng = cellOf(lng - lngSpan);
+        int maxLng = cellOf(lng + lngSpan);
+        long cellsInRange = ((long) maxLat - minLat + 1) * ((long) maxLng - minLng + 1);
+
+        for (Map.Entry<String, Map<Long, Set<Long>>> bucket : cells.entrySet()) {
+            if (category != null && !normalize(category).equals(bucket.getKey())) {
+                continue;
+            }
+            Map<Long, Set<Long>> grid = bucket.getValue();
+            if (cellsInRange > grid.size()) {
+                // Sparse category: walking the occupied cells is cheaper than probing the range
+                for (Map.Entry<Long, Set<Long>> cell : grid.entrySet()) {
+                    int cellLat = (int) (cell.getKey() >> 32);
+                    int cellLng = (int) (long) cell.getKey();
+                    if (cellLat >= minLat && cellLat <= maxLat && cellLng >= minLng && cellLng <= maxLng) {
+                        collect(cell.getValue(), lat, lng, radiusKm, filter, seen, hits);
+                    }
+                }
+            } else {
+                for (int i = minLat; i <= maxLat; i++) {
+                    for (int j = minLng; j <= maxLng; j++) {
+                        Set<Long> ids = grid.get(cellKey(i, j));
+                        if (ids != null) {
+                            collect(ids, lat, lng, radiusKm, filter, seen, hits);
+                        }
+                    }
+                }
+            }
+        }
+
+        hits.sort(Comparator.comparingDouble(Hit::getDistanceKm));
+        return hits;
+    }
+
+    /**
+     * Nearest matching entry at any distance, searching outward in widening rings.
+     */
+    public Optional<Hit<V>> nearest(double lat, double lng, String category, Predicate<V> filter) {
+        double radius = cellDegrees * KM_PER_DEGREE;
+        while (radius < MAX_RING_KM) {
+            List<Hit<V>> hits = within(lat, lng, radius, category, filter);
+            if (!hits.isEmpty()) {
+                return Optional.of(hits.get(0));
+            }
+            radius *= 4;
+        }
+        return within(lat, lng, Double.MAX_VALUE / 4, category, filter).stream().findFirst();
+    }
+
+    /**
+     * Nearest matching entry within maxKm, widening rings only up to that radius
+     */
+    public Optional<Hit<V>> nearest(double lat, double lng, double maxKm, String category, Predicate<V> filter) {
+        double radius = Math.min(cellDegrees * KM_PER_DEGREE, maxKm);
+        while (true) {
+            List<Hit<V>> hits = within(lat, lng, radius, category, filter);
+            if (!hits.isEmpty()) {
+                return Optional.of(hits.get(0));
+            }
+            if (radius >= maxKm) {
+                return Optional.empty();
+            }
+            radius = Math.min(radius * 4, maxKm);
+        }
+    }
+
+    private void collect(Set<Long> ids, double lat, double lng, double radiusKm,
+                         Predicate<V> filter, Set<Long> seen, List<Hit<V>> hits) {
+        double cosLat = GeoDistance.cosLat(lat);
+        // Equirectangular pre-filter with a margin covering its error at this range; exact Haversine for survivors
+        double bound = radiusKm <= MAX_RING_KM ? radiusKm * (1 + 4 * radiusKm / GeoDistance.EARTH_RADIUS_KM) + 0.01 : Double.MAX_VALUE;
+        double boundSq = bound * bound;
+        for (Long id : ids) {
+            Entry<V> entry = entries.get(id);
+            if (entry == null || entry.lat == null || entry.lng == null || !seen.add(id)) {
+                continue;
+            }
+            double entryLat = entry.lat;
+            double entryLng = entry.lng;
+            if (GeoDistance.equirectangularSqKm(lat, lng, entryLat, entryLng, cosLat) > boundSq) {
+                continue;
+            }
+            double distance = GeoDistance.haversineKm(lat, lng, cosLat, entryLat, entryLng, entry.cosLat);
+            if (distance <= radiusKm && filter.test(entry.value)) {
+                hits.add(new Hit<>(entry.value, entry.lat, entry.lng, distance));
+            }
+        }
+    }
+
+    private void link(Entry<V> entry) {
+        if (entry.lat == null || entry.lng == null) {
+            return;
+        }
+        cells.computeIfAbsent(entry.category, k -> new ConcurrentHashMap<>())
+                .compute(cellKey(cellOf(entry.lat), cellOf(entry.lng)), (k, ids) -> {
+                    Set<Long> target = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                    target.add(entry.id);
+                    return target;
+                });
+    }
+
+    private void unlink(Entry<V> entry) {
+        if (entry.lat == null || entry.lng == null) {
+            return;
+        }
+        Map<Long, Set<Long>> grid = cells.get(entry.category);
+        if (grid == null) {
+            return;
+        }
+        grid.computeIfPresent(cellKey(cellOf(entry.lat), cellOf(entry.lng)), (k, ids) -> {
+            ids.remove(entry.id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private int cellOf(double degrees) {
+        return (int) Math.floor(degrees / cellDegrees);
+    }
+
+    private static long cellKey(int latCell, int lngCell) {
+        return ((long) latCell << 32) | (lngCell & 0xffffffffL);
+    }
+
+    private static String normalize(String category) {
+        return category == null ? "" : category.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public static final class Entry<V> {
+        private final Long id;
+        private final String category;
+        private final Double lat;
+        private final Double lng;
+        private final V value;
+        private final double cosLat; // precomputed for distance queries
+
+        Entry(Long id, String category, Double lat, Double lng, V value) {
+            this.id = id;
+            this.category = category;
+            this.lat = lat;
+            this.lng = lng;
+            this.value = value;
+            this.cosLat = lat != null ? GeoDistance.cosLat(lat) : 0;
+        }
+
+        public Long getId() { return id; }
+        public String getCategory() { return category; }
+        public Double getLat() { return lat; }
+        public Double getLng() { return lng; }
+        public V getValue() { return value; }
+    }
+
+    public static final class Hit<V> {
+        private final V value;
+        private final double lat;
+        private final double lng;
+        private final double distanceKm;
+
+        Hit(V value, double lat, double lng, double distanceKm) {
+            this.value = value;
+            this.lat = lat;
+            this.lng = lng;
+            this.distanceKm = distanceKm;
+        }
+
+        public V getValue() { return value; }
+        public double getLat() { return lat; }
+        public double getLng() { return lng; }
+        public double getDistanceKm() { return distanceKm; }
+    }
+}
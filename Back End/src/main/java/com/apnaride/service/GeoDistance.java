@@ -0,0 +1,60 @@
+package com.apnaride.service;
+
+/**
+ * Great-circle distances on primitive doubles. Haversine is exact enough for ranking and fares;
+ * the equirectangular approximation (error well under 0.1% within tens of km) is for cheap
+ * radius filtering. Callers that compare one point against many can pass a precomputed
+ * {@link #cosLat} for each side instead of paying for the cosines on every call.
+ */
+public final class GeoDistance {
+
+    public static final double EARTH_RADIUS_KM = 6371.0;
+    public static final double EARTH_RADIUS_M = 6371000.0;
+
+    private static final double RADIANS = Math.PI / 180.0;
+
+    private GeoDistance() {
+    }
+
+    public static double cosLat(double lat) {
+        return Math.cos(lat * RADIANS);
+    }
+
+    /**
+     * Haversine distance in km
+     */
+    public static double haversineKm(double lat1, double lng1, double lat2, double lng2) {
+        return haversineKm(lat1, lng1, cosLat(lat1), lat2, lng2, cosLat(lat2));
+    }
+
+    /**
+     * Haversine distance in km with the cosine of each latitude supplied by the caller
+     */
+    public static double haversineKm(double lat1, double lng1, double cosLat1, double lat2, double lng2, double cosLat2) {
+        double sinLat = Math.sin((lat2 - lat1) * RADIANS / 2);
+        double sinLng = Math.sin((lng2 - lng1) * RADIANS / 2);
+        double a = sinLat * sinLat + cosLat1 * cosLat2 * sinLng * sinLng;
+        return EARTH_RADIUS_KM * 2 * Math.asin(Math.sqrt(Math.min(1.0, a)));
+    }
+
+    public static double haversineMeters(double lat1, double lng1, double lat2, double lng2) {
+        return haversineKm(lat1, lng1, lat2, lng2) * 1000.0;
+    }
+
+    /**
+     * Equirectangular approximation in km, scaled by the cosine of the mean latitude
+     */
+    public static double equirectangularKm(double lat1, double lng1, double lat2, double lng2) {
+        return Math.sqrt(equirectangularSqKm(lat1, lng1, lat2, lng2, cosLat((lat1 + lat2) / 2)));
+    }
+
+    /**
+     * Squared equirectangular distance in km^2 with a caller-supplied longitude scale, typically
+     * the cosine of the query latitude. Compare against radius^2 to skip the square root.
+     */
+    public static double equirectangularSqKm(double lat1, double lng1, double lat2, double lng2, double cosLat) {
+        double x = (lng2 - lng1) * RADIANS * cosLat;
+        double y = (lat2 - lat1) * RADIANS;
+        return (x * x + y * y) * EARTH_RADIUS_KM * EARTH_RADIUS_KM;
+    }
+}
@@ -0,0 +1,118 @@
+package com.apnaride.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single-replica OTP store. Entries expire through a timing wheel swept every second, and the
+ * number of live codes is capped, so memory stays flat however much send-otp traffic arrives.
+ */
+@Service
+@ConditionalOnProperty(name = "apnaride.otp.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryOtpStore implements OtpStore {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final TimingWheel<String> expiry;
+    private final long ttlMillis;
+    private final long resendCooldownMillis;
+    private final int maxAttempts;
+    private final int maxEntries;
+
+    public InMemoryOtpStore(@Value("${apnaride.otp.ttl-seconds:300}") long ttlSeconds,
+                            @Value("${apnaride.otp.resend-cooldown-seconds:60}") long resendCooldownSeconds,
+                            @Value("${apnaride.otp.max-attempts:5}") int maxAttempts,
+                            @Value("${apnaride.otp.max-entries:100000}") int maxEntries,
+                            MeterRegistry meterRegistry) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.resendCooldownMillis = resendCooldownSeconds * 1000;
+        this.maxAttempts = maxAttempts;
+        this.maxEntries = maxEntries;
+        // One-second ticks; a wheel spanning the TTL means each pass only touches due entries
+        this.expiry = new TimingWheel<>(1000, (int) Math.max(64, ttlSeconds + 1), System.currentTimeMillis());
+        meterRegistry.gaugeMapSize("apnaride.otp.entries", Tags.empty(), entries);
+    }
+
+    @Override
+    public IssueResult issue(String phone, String code) {
+        long now = System.currentTimeMillis();
+        IssueResult[] result = new IssueResult[1];
+        entries.compute(phone, (k, existing) -> {
+            long cooldownEnds = existing != null ? existing.sentAt + resendCooldownMillis : 0;
+            if (existing != null && now < existing.expiresAt && now < cooldownEnds) {
+                result[0] = IssueResult.cooldown((cooldownEnds - now + 999) / 1000);
+                return existing;
+            }
+            if (existing == null && entries.size() >= maxEntries) {
+                result[0] = IssueResult.full();
+                return null;
+            }
+            Entry fresh = new Entry(code, now + ttlMillis, now);
+            result[0] = IssueResult.issued(LocalDateTime.now().plus(Duration.ofMillis(ttlMillis)));
+            return fresh;
+        });
+        if (result[0].getStatus() == IssueResult.Status.ISSUED) {
+            expiry.schedule(phone, now + ttlMillis);
+        }
+        return result[0];
+    }
+
+    @Override
+    public VerifyResult verify(String phone, String code) {
+        Entry entry = entries.get(phone);
+        if (entry == null || System.currentTimeMillis() >= entry.expiresAt) {
+            return VerifyResult.EXPIRED;
+        }
+        if (entry.attempts.incrementAndGet() > maxAttempts) {
+            return VerifyResult.LOCKED;
+        }
+        if (!entry.code.equals(code)) {
+            return VerifyResult.INVALID;
+        }
+        // Consume; a concurrent verify of the same code loses
+        if (!entries.remove(phone, entry)) {
+            return VerifyResult.EXPIRED;
+        }
+        expiry.cancel(phone);
+        return VerifyResult.VALID;
+    }
+
+    @Override
+    public long size() {
+        return entries.size();
+    }
+
+    @Scheduled(fixedRate = 1000)
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        expiry.advance(now, phone -> entries.computeIfPresent(phone, (k, entry) -> {
+            if (now < entry.expiresAt) {
+                expiry.schedule(phone, entry.expiresAt); // reissued meanwhile
+                return entry;
+            }
+            return null;
+        }));
+    }
+
+    private static final class Entry {
+        final String code;
+        final long expiresAt;
+        final long sentAt;
+        final AtomicInteger attempts = new AtomicInteger();
+
+        Entry(String code, long expiresAt, long sentAt) {
+            this.code = code;
+            this.expiresAt = expiresAt;
+            this.sentAt = sentAt;
+        }
+    }
+}
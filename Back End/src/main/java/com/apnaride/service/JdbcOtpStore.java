@@ -0,0 +1,99 @@
+package com.apnaride.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * OTP store backed by the shared otp_codes table, so any replica can verify a code issued by
+ * another. Cooldown and attempt limits are enforced with conditional UPDATEs, which keeps them
+ * correct under concurrent requests without row locks. Expired rows are purged periodically.
+ */
+@Service
+@ConditionalOnProperty(name = "apnaride.otp.store", havingValue = "jdbc")
+public class JdbcOtpStore implements OtpStore {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long ttlMillis;
+    private final long resendCooldownMillis;
+    private final int maxAttempts;
+
+    public JdbcOtpStore(JdbcTemplate jdbcTemplate,
+                        @Value("${apnaride.otp.ttl-seconds:300}") long ttlSeconds,
+                        @Value("${apnaride.otp.resend-cooldown-seconds:60}") long resendCooldownSeconds,
+                        @Value("${apnaride.otp.max-attempts:5}") int maxAttempts) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.resendCooldownMillis = resendCooldownSeconds * 1000;
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    public IssueResult issue(String phone, String code) {
+        long now = System.currentTimeMillis();
+        long expiresAt = now + ttlMillis;
+        // Replace the previous code only once its cooldown has passed (or it expired)
+        int replaced = jdbcTemplate.update(
+                "UPDATE otp_codes SET code = ?, expires_at = ?, sent_at = ?, attempts = 0 " +
+                "WHERE phone = ? AND (sent_at <= ? OR expires_at <= ?)",
+                code, expiresAt, now, phone, now - resendCooldownMillis, now);
+        if (replaced == 0) {
+            try {
+                jdbcTemplate.update(
+                        "INSERT INTO otp_codes (phone, code, expires_at, sent_at, attempts) VALUES (?, ?, ?, ?, 0)",
+                        phone, code, expiresAt, now);
+            } catch (DuplicateKeyException e) {
+                return IssueResult.cooldown((retryAfterMillis(phone, now) + 999) / 1000);
+            }
+        }
+        return IssueResult.issued(LocalDateTime.ofInstant(Instant.ofEpochMilli(expiresAt), ZoneId.systemDefault()));
+    }
+
+    @Override
+    public VerifyResult verify(String phone, String code) {
+        long now = System.currentTimeMillis();
+        // Count the attempt first so concurrent guesses cannot exceed the limit
+        int counted = jdbcTemplate.update(
+                "UPDATE otp_codes SET attempts = attempts + 1 WHERE phone = ? AND expires_at > ? AND attempts < ?",
+                phone, now, maxAttempts);
+        if (counted == 0) {
+            List<Integer> attempts = jdbcTemplate.queryForList(
+                    "SELECT attempts FROM otp_codes WHERE phone = ? AND expires_at > ?", Integer.class, phone, now);
+            return attempts.isEmpty() ? VerifyResult.EXPIRED : VerifyResult.LOCKED;
+        }
+        // Consume on match; only one concurrent verifier can delete the row
+        int consumed = jdbcTemplate.update(
+                "DELETE FROM otp_codes WHERE phone = ? AND code = ? AND expires_at > ?", phone, code, now);
+        return consumed == 1 ? VerifyResult.VALID : VerifyResult.INVALID;
+    }
+
+    @Override
+    public long size() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM otp_codes", Long.class);
+        return count != null ? count : 0;
+    }
+
+    @Scheduled(fixedDelayString = "${apnaride.otp.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        jdbcTemplate.update("DELETE FROM otp_codes WHERE expires_at <= ?", System.currentTimeMillis());
+    }
+
+    private long retryAfterMillis(String phone, long now) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT sent_at FROM otp_codes WHERE phone = ?", phone);
+        if (rows.isEmpty()) {
+            return 1000;
+        }
+        long sentAt = ((Number) rows.get(0).get("sent_at")).longValue();
+        return Math.max(1000, sentAt + resendCooldownMillis - now);
+    }
+}
@@ -0,0 +1,217 @@
+package com.apnaride.service;
+
+import com.apnaride.dto.DayTotal;
+import com.apnaride.dto.GroupCount;
+import com.apnaride.dto.GroupSum;
+import com.apnaride.model.Driver;
+import com.apnaride.model.Ride;
+import com.apnaride.repository.DriverRepository;
+import com.apnaride.repository.RideRepository;
+import com.apnaride.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admin dashboard figures maintained incrementally on every ride transition, so reading
+ * them costs the same however large the rides table gets. Counters are periodically
+ * reconciled against the database to absorb drift, and pushed to subscribed dashboards.
+ */
+@Service
+public class LiveAnalyticsService {
+
+    public static final String TOPIC = "/topic/admin/analytics";
+    private static final int RETAINED_DAYS = 30;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private DriverRepository driverRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DriverSpatialIndex driverSpatialIndex;
+
+    @Autowired
+    private StompSubscriptionRegistry subscriptionRegistry;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    private volatile Counters counters = new Counters();
+
+    // Figures that do not change with ride transitions; refreshed on reconcile
+    private volatile Map<String, Object> directory = Map.of();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        reconcile();
+    }
+
+    /**
+     * Record a newly requested ride
+     */
+    public void onRequested(Ride ride) {
+        Counters c = counters;
+        c.totalRides.increment();
+        c.ridesByDay.computeIfAbsent(LocalDate.now(), k -> new LongAdder()).increment();
+        c.status(ride.getStatus()).increment();
+    }
+
+    /**
+     * Record a status change of an existing ride; ride carries the new status
+     */
+    public void onTransition(String fromStatus, Ride ride) {
+        String toStatus = ride.getStatus();
+        if (Objects.equals(fromStatus, toStatus)) {
+            return;
+        }
+        Counters c = counters;
+        c.status(fromStatus).decrement();
+        c.status(toStatus).increment();
+
+        if ("COMPLETED".equals(toStatus) && ride.getFare() != null) {
+            double fare = ride.getFare();
+            c.totalRevenue.add(fare);
+            c.revenueByDay.computeIfAbsent(LocalDate.now(), k -> new DoubleAdder()).add(fare);
+            c.revenueByVehicleType.computeIfAbsent(label(ride.getVehicleType()), k -> new DoubleAdder()).add(fare);
+            String city = driverSpatialIndex.get(ride.getRiderId()).map(Driver::getCity).orElse(null);
+            c.revenueByCity.computeIfAbsent(label(city), k -> new DoubleAdder()).add(fare);
+        }
+    }
+
+    /**
+     * Current figures, in the shape of the original /api/admin/analytics response plus live extras
+     */
+    public Map<String, Object> snapshot() {
+        Counters c = counters;
+        LocalDate today = LocalDate.now();
+        Map<String, Object> analytics = new HashMap<>(directory);
+
+        analytics.put("totalRides", c.totalRides.sum());
+        analytics.put("totalRevenue", c.totalRevenue.sum());
+        LongAdder todayRides = c.ridesByDay.get(today);
+        DoubleAdder todayRevenue = c.revenueByDay.get(today);
+        analytics.put("todayRides", todayRides != null ? todayRides.sum() : 0L);
+        analytics.put("todayRevenue", todayRevenue != null ? todayRevenue.sum() : 0.0);
+        analytics.put("activeDrivers", driverSpatialIndex.availableCount());
+        analytics.put("onlineDrivers", driverSpatialIndex.onlineCount());
+
+        Map<String, Long> statuses = new HashMap<>();
+        c.ridesByStatus.forEach((k, v) -> statuses.put(k, v.sum()));
+        analytics.put("rideStatusDistribution", statuses);
+        analytics.put("revenueByVehicleType", sums(c.revenueByVehicleType));
+        analytics.put("revenueByCity", sums(c.revenueByCity));
+        Map<String, Double> byDay = new TreeMap<>();
+        c.revenueByDay.forEach((k, v) -> byDay.put(k.toString(), v.sum()));
+        analytics.put("revenueByDay", byDay);
+        analytics.put("generatedAt", LocalDateTime.now().toString());
+        return analytics;
+    }
+
+    /**
+     * Rebuild counters from aggregate queries. Transitions racing with the swap may be lost
+     * until the next reconcile, which is why this runs on a slow cadence.
+     */
+    @Scheduled(fixedDelayString = "${apnaride.analytics.reconcile-interval-ms:300000}",
+               initialDelayString = "${apnaride.analytics.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        // The whole retained window, rides by request day and revenue by completion day as counted live
+        LocalDateTime windowStart = LocalDate.now().minusDays(RETAINED_DAYS).atStartOfDay();
+        Counters fresh = new Counters();
+        fresh.totalRides.add(rideRepository.count());
+        fresh.totalRevenue.add(rideRepository.sumFareByStatus("COMPLETED"));
+        for (DayTotal row : rideRepository.countRequestedGroupByDaySince(windowStart)) {
+            fresh.ridesByDay.computeIfAbsent(row.getDay(), k -> new LongAdder()).add(row.getTotal().longValue());
+        }
+        for (DayTotal row : rideRepository.sumCompletedFareGroupByDaySince(windowStart)) {
+            fresh.revenueByDay.computeIfAbsent(row.getDay(), k -> new DoubleAdder()).add(row.getTotal().doubleValue());
+        }
+        for (GroupCount row : rideRepository.countGroupByStatus()) {
+            fresh.status(row.getLabel()).add(row.getTotal());
+        }
+        for (GroupSum row : rideRepository.sumCompletedFareGroupByVehicleType()) {
+            fresh.revenueByVehicleType.computeIfAbsent(label(row.getLabel()), k -> new DoubleAdder()).add(orZero(row.getTotal()));
+        }
+        for (GroupSum row : rideRepository.sumCompletedFareGroupByDriverCity()) {
+            fresh.revenueByCity.computeIfAbsent(label(row.getLabel()), k -> new DoubleAdder()).add(orZero(row.getTotal()));
+        }
+        counters = fresh;
+
+        Map<String, Object> dir = new HashMap<>();
+        dir.put("totalDrivers", driverRepository.count());
+        dir.put("totalCustomers", userRepository.countByRole("customer"));
+        dir.put("pendingApprovals", driverRepository.countByVerificationStatus("PENDING"));
+        dir.put("vehicleDistribution", countsByLabel(driverRepository.countGroupByVehicleType()));
+        directory = dir;
+    }
+
+    /**
+     * Push the snapshot to admin dashboards at a fixed cadence, only while someone listens
+     */
+    @Scheduled(fixedRateString = "${apnaride.analytics.push-interval-ms:5000}")
+    public void push() {
+        Counters c = counters;
+        c.ridesByDay.keySet().removeIf(day -> day.isBefore(LocalDate.now().minusDays(RETAINED_DAYS)));
+        c.revenueByDay.keySet().removeIf(day -> day.isBefore(LocalDate.now().minusDays(RETAINED_DAYS)));
+        if (subscriptionRegistry.hasSubscribers(TOPIC)) {
+            messagingTemplate.convertAndSend(TOPIC, snapshot());
+        }
+    }
+
+    /**
+     * GROUP BY rows as a map; null labels are reported as "Unknown", as the dashboard expects
+     */
+    public static Map<String, Long> countsByLabel(List<GroupCount> rows) {
+        Map<String, Long> result = new HashMap<>();
+        for (GroupCount row : rows) {
+            result.merge(label(row.getLabel()), row.getTotal(), Long::sum);
+        }
+        return result;
+    }
+
+    private static Map<String, Double> sums(Map<String, DoubleAdder> adders) {
+        Map<String, Double> result = new HashMap<>();
+        adders.forEach((k, v) -> result.put(k, v.sum()));
+        return result;
+    }
+
+    private static String label(String value) {
+        return value != null ? value : "Unknown";
+    }
+
+    private static double orZero(Double value) {
+        return value != null ? value : 0.0;
+    }
+
+    private static final class Counters {
+        final LongAdder totalRides = new LongAdder();
+        final DoubleAdder totalRevenue = new DoubleAdder();
+        final Map<String, LongAdder> ridesByStatus = new ConcurrentHashMap<>();
+        final Map<LocalDate, LongAdder> ridesByDay = new ConcurrentHashMap<>();
+        final Map<LocalDate, DoubleAdder> revenueByDay = new ConcurrentHashMap<>();
+        final Map<String, DoubleAdder> revenueByVehicleType = new ConcurrentHashMap<>();
+        final Map<String, DoubleAdder> revenueByCity = new ConcurrentHashMap<>();
+
+        LongAdder status(String status) {
+            return ridesByStatus.computeIfAbsent(label(status), k -> new LongAdder());
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.apnaride.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * In-process routing over a local road graph (apnaride.route.graph-file), used by RouteService
+ * when OSRM cannot answer, or first when apnaride.route.prefer-local is set. Without a graph
+ * file the engine stays disabled and routing falls back to a straight line as before.
+ */
+@Service
+public class LocalRoutingEngine {
+
+    // Speed assumed for the stretch between a requested point and its snapped graph node
+    private static final double ACCESS_SPEED_MPS = 30 / 3.6;
+
+    private final String graphFile;
+    private final int landmarkCount;
+    private final double maxSnapKm;
+
+    private volatile AltRouter router;
+    private volatile RoadGraph graph;
+
+    public LocalRoutingEngine(@Value("${apnaride.route.graph-file:}") String graphFile,
+                              @Value("${apnaride.route.landmarks:16}") int landmarkCount,
+                              @Value("${apnaride.route.max-snap-km:2}") double maxSnapKm) {
+        this.graphFile = graphFile;
+        this.landmarkCount = landmarkCount;
+        this.maxSnapKm = maxSnapKm;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (graphFile == null || graphFile.isBlank()) {
+            return;
+        }
+        Path path = Path.of(graphFile);
+        if (!Files.isReadable(path)) {
+            System.err.println("Road graph file not readable, local routing disabled: " + path);
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            use(RoadGraph.load(path));
+            System.out.println("Local routing ready: " + graph.nodeCount() + " nodes, " + graph.edgeCount() + " edges, "
+                    + router.landmarkCount() + " landmarks in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (Exception e) {
+            System.err.println("Failed to load road graph " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Preprocess and switch to the given graph
+     */
+    public void use(RoadGraph roadGraph) {
+        AltRouter prepared = new AltRouter(roadGraph, landmarkCount);
+        this.graph = roadGraph;
+        this.router = prepared;
+    }
+
+    public boolean isReady() {
+        return router != null;
+    }
+
+    /**
+     * Fastest path between two coordinates, snapped to the nearest graph nodes
+     */
+    public Optional<AltRouter.Path> path(double startLat, double startLng, double endLat, double endLng) {
+        AltRouter r = router;
+        RoadGraph g = graph;
+        if (r == null) {
+            return Optional.empty();
+        }
+        Optional<Integer> source = g.nearestNode(startLat, startLng, maxSnapKm);
+        Optional<Integer> target = g.nearestNode(endLat, endLng, maxSnapKm);
+        if (source.isEmpty() || target.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(r.route(source.get(), target.get()));
+    }
+
+    /**
+     * Durations (seconds) and distances (meters) from every source to every destination as
+     * {durations[source][destination], distances[source][destination]}, with one backward search
+     * per destination. Cells that cannot be snapped or routed are NaN.
+     */
+    public Optional<double[][][]> matrix(double[] srcLat, double[] srcLng, double[] dstLat, double[] dstLng) {
+        AltRouter r = router;
+        RoadGraph g = graph;
+        if (r == null) {
+            return Optional.empty();
+        }
+        int rows = srcLat.length;
+        int cols = dstLat.length;
+        double[][] durations = new double[rows][cols];
+        double[][] distances = new double[rows][cols];
+        for (double[] row : durations) Arrays.fill(row, Double.NaN);
+        for (double[] row : distances) Arrays.fill(row, Double.NaN);
+
+        // Snap sources once; unsnappable ones are left out of the searches
+        int[] snapped = new int[rows];
+        double[] sourceAccess = new double[rows];
+        int[] routable = new int[rows];
+        int routableCount = 0;
+        for (int i = 0; i < rows; i++) {
+            Optional<Integer> node = g.nearestNode(srcLat[i], srcLng[i], maxSnapKm);
+            snapped[i] = node.orElse(-1);
+            if (node.isPresent()) {
+                sourceAccess[i] = GeoDistance.haversineMeters(srcLat[i], srcLng[i], g.lat(snapped[i]), g.lng(snapped[i]));
+                routable[routableCount++] = snapped[i];
+            }
+        }
+        int[] sources = Arrays.copyOf(routable, routableCount);
+        for (int j = 0; j < cols; j++) {
+            Optional<Integer> target = g.nearestNode(dstLat[j], dstLng[j], maxSnapKm);
+            if (target.isEmpty() || sources.length == 0) {
+                continue;
+            }
+            double targetAccess = GeoDistance.haversineMeters(dstLat[j], dstLng[j], g.lat(target.get()), g.lng(target.get()));
+            double[][] column = r.toTarget(sources, target.get());
+            for (int i = 0, k = 0; i < rows; i++) {
+                if (snapped[i] < 0) {
+                    continue;
+                }
+                double seconds = column[0][k];
+                double meters = column[1][k];
+                k++;
+                if (seconds != Double.POSITIVE_INFINITY) {
+                    double access = sourceAccess[i] + targetAccess;
+                    durations[i][j] = seconds + access / ACCESS_SPEED_MPS;
+                    distances[i][j] = meters + access;
+                }
+            }
+        }
+        return Optional.of(new double[][][]{durations, distances});
+    }
+
+    /**
+     * Route in the OSRM response shape consumed by the frontend
+     */
+    public Optional<Map<String, Object>> route(double startLat, double startLng, double endLat, double endLng) {
+        RoadGraph g = graph;
+        return path(startLat, startLng, endLat, endLng).map(p -> {
+            int[] nodes = p.getNodes();
+            List<List<Double>> coordinates = new ArrayList<>(nodes.length + 2);
+            coordinates.add(List.of(startLng, startLat));
+            for (int node : nodes) {
+                coordinates.add(List.of(g.lng(node), g.lat(node)));
+            }
+            coordinates.add(List.of(endLng, endLat));
+            double access = GeoDistance.haversineMeters(startLat, startLng, g.lat(nodes[0]), g.lng(nodes[0]))
+                    + GeoDistance.haversineMeters(endLat, endLng, g.lat(nodes[nodes.length - 1]), g.lng(nodes[nodes.length - 1]));
+
+            Map<String, Object> geometry = new HashMap<>();
+            geometry.put("type", "LineString");
+            geometry.put("coordinates", coordinates);
+            Map<String, Object> route0 = new HashMap<>();
+            route0.put("geometry", geometry);
+            route0.put("distance", p.getDistanceMeters() + access);
+            route0.put("duration", p.getDurationSeconds() + access / ACCESS_SPEED_MPS);
+            route0.put("legs", Collections.emptyList());
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("code", "Ok");
+            payload.put("routes", List.of(route0));
+            payload.put("waypoints", Collections.emptyList());
+            return payload;
+        });
+    }
+}
@@ -0,0 +1,162 @@
+package com.apnaride.service;
+
+import java.util.Arrays;
+
+/**
+ * Rectangular assignment problems: match rows (rides) to columns (drivers) so that every row gets
+ * at most one column, every column at most one row, and the total cost is minimal. Infinite or NaN
+ * cells mark pairs that must not be matched; rows left without a finite pairing map to -1.
+ */
+public final class MinCostAssignment {
+
+    private MinCostAssignment() {
+    }
+
+    /**
+     * Hungarian algorithm with row/column potentials, O(n²·m) for n rows and m columns (n ≤ m, the
+     * matrix is transposed otherwise). Returns the column assigned to each row, or -1.
+     */
+    public static int[] solve(double[][] cost) {
+        int rows = cost.length;
+        int cols = rows == 0 ? 0 : cost[0].length;
+        if (rows == 0 || cols == 0) {
+            return unassigned(rows);
+        }
+        if (rows > cols) {
+            int[] byCol = solve(transpose(cost));
+            int[] byRow = unassigned(rows);
+            for (int c = 0; c < byCol.length; c++) {
+                if (byCol[c] >= 0) {
+                    byRow[byCol[c]] = c;
+                }
+            }
+            return byRow;
+        }
+
+        // Forbidden pairs get a cost above any finite total so they are only used when a row has no
+        // other option, and are dropped from the result afterwards
+        double forbidden = 1.0;
+        for (double[] row : cost) {
+            for (double c : row) {
+                if (allowed(c)) {
+                    forbidden += Math.abs(c);
+                }
+            }
+        }
+
+        // 1-based arrays; column 0 is the virtual column the augmenting path starts from
+        double[] u = new double[rows + 1];
+        double[] v = new double[cols + 1];
+        int[] rowOfCol = new int[cols + 1];
+        int[] way = new int[cols + 1];
+        double[] minv = new double[cols + 1];
+        boolean[] used = new boolean[cols + 1];
+        for (int i = 1; i <= rows; i++) {
+            rowOfCol[0] = i;
+            int col0 = 0;
+            Arrays.fill(minv, Double.POSITIVE_INFINITY);
+            Arrays.fill(used, false);
+            do {
+                used[col0] = true;
+                int row0 = rowOfCol[col0];
+                double delta = Double.POSITIVE_INFINITY;
+                int col1 = 0;
+                double[] costRow = cost[row0 - 1];
+                for (int j = 1; j <= cols; j++) {
+                    if (!used[j]) {
+                        double c = costRow[j - 1];
+                        double reduced = (allowed(c) ? c : forbidden) - u[row0] - v[j];
+                        if (reduced < minv[j]) {
+                            minv[j] = reduced;
+                            way[j] = col0;
+                        }
+                        if (minv[j] < delta) {
+                            delta = minv[j];
+                            col1 = j;
+                        }
+                    }
+                }
+                for (int j = 0; j <= cols; j++) {
+                    if (used[j]) {
+                        u[rowOfCol[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                col0 = col1;
+            } while (rowOfCol[col0] != 0);
+            do {
+                int col1 = way[col0];
+                rowOfCol[col0] = rowOfCol[col1];
+                col0 = col1;
+            } while (col0 != 0);
+        }
+
+        int[] result = unassigned(rows);
+        for (int j = 1; j <= cols; j++) {
+            int row = rowOfCol[j];
+            if (row != 0 && allowed(cost[row - 1][j - 1])) {
+                result[row - 1] = j - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Greedy nearest matching in row order: each row takes its cheapest free column. This is what
+     * per-request dispatch amounts to, and the baseline the batch solve is measured against.
+     */
+    public static int[] greedy(double[][] cost) {
+        int rows = cost.length;
+        int cols = rows == 0 ? 0 : cost[0].length;
+        int[] result = unassigned(rows);
+        boolean[] taken = new boolean[cols];
+        for (int i = 0; i < rows; i++) {
+            int best = -1;
+            for (int j = 0; j < cols; j++) {
+                if (!taken[j] && allowed(cost[i][j]) && (best < 0 || cost[i][j] < cost[i][best])) {
+                    best = j;
+                }
+            }
+            if (best >= 0) {
+                taken[best] = true;
+                result[i] = best;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sum of the costs of the assigned pairs
+     */
+    public static double totalCost(double[][] cost, int[] assignment) {
+        double total = 0;
+        for (int i = 0; i < assignment.length; i++) {
+            if (assignment[i] >= 0) {
+                total += cost[i][assignment[i]];
+            }
+        }
+        return total;
+    }
+
+    private static boolean allowed(double c) {
+        return c < Double.POSITIVE_INFINITY; // false for NaN as well
+    }
+
+    private static int[] unassigned(int rows) {
+        int[] result = new int[rows];
+        Arrays.fill(result, -1);
+        return result;
+    }
+
+    private static double[][] transpose(double[][] cost) {
+        double[][] t = new double[cost[0].length][cost.length];
+        for (int i = 0; i < cost.length; i++) {
+            for (int j = 0; j < cost[i].length; j++) {
+                t[j][i] = cost[i][j];
+            }
+        }
+        return t;
+    }
+}
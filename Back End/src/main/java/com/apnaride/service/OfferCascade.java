@@ -0,0 +1,221 @@
+package com.apnaride.service;
+
+import com.apnaride.controller.WebSocketController;
+import com.apnaride.dto.RideResponse;
+import com.apnaride.model.Driver;
+import com.apnaride.model.Ride;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sequential offers: a ride goes to one driver at a time, best ranked first, and moves on to the
+ * next candidate when the offer is not accepted within the timeout. Timeouts live in a hashed
+ * timing wheel swept by one scheduled task, so outstanding offers cost a map entry each and no
+ * threads. An offer is withdrawn as soon as the ride is accepted or cancelled, and the cascade
+ * moves on at once when the offered driver goes offline or drops their ride-request subscription.
+ */
+@Service
+public class OfferCascade {
+
+    private final RideMatchingService rideMatchingService;
+    private final DriverSpatialIndex driverSpatialIndex;
+    private final OpenRideIndex openRideIndex;
+    private final WebSocketController webSocketController;
+    private final long offerTimeoutMillis;
+    private final int maxOffers;
+    private final TimingWheel<Long> timeouts;
+
+    private final Timer timeToAccept;
+    private final DistributionSummary offersPerRide;
+    private final Counter expired;
+
+    // ride id -> cascade in progress
+    private final Map<Long, Cascade> cascades = new ConcurrentHashMap<>();
+    // driver user id -> ride id of the offer the driver currently holds
+    private final Map<Long, Long> offeredRide = new ConcurrentHashMap<>();
+
+    public OfferCascade(RideMatchingService rideMatchingService,
+                        DriverSpatialIndex driverSpatialIndex,
+                        OpenRideIndex openRideIndex,
+                        WebSocketController webSocketController,
+                        StompSubscriptionRegistry subscriptionRegistry,
+                        MeterRegistry meterRegistry,
+                        @Value("${apnaride.dispatch.offer-timeout-ms:15000}") long offerTimeoutMillis,
+                        @Value("${apnaride.dispatch.cascade.max-offers:5}") int maxOffers,
+                        @Value("${apnaride.dispatch.cascade.tick-ms:250}") long tickMillis) {
+        this.rideMatchingService = rideMatchingService;
+        this.driverSpatialIndex = driverSpatialIndex;
+        this.openRideIndex = openRideIndex;
+        this.webSocketController = webSocketController;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.maxOffers = maxOffers;
+        // A wheel spanning two timeouts keeps every deadline within one revolution
+        this.timeouts = new TimingWheel<>(tickMillis, (int) Math.max(64, 2 * offerTimeoutMillis / tickMillis),
+                System.currentTimeMillis());
+        this.timeToAccept = meterRegistry.timer("apnaride.dispatch.cascade.time-to-accept");
+        this.offersPerRide = meterRegistry.summary("apnaride.dispatch.cascade.offers-per-ride");
+        this.expired = meterRegistry.counter("apnaride.dispatch.cascade.expired");
+        Gauge.builder("apnaride.dispatch.cascade.outstanding", timeouts, TimingWheel::size).register(meterRegistry);
+        subscriptionRegistry.onLastUnsubscribe(destination -> {
+            if (destination.startsWith(WebSocketController.RIDE_REQUESTS_QUEUE)) {
+                try {
+                    onDriverGone(Long.valueOf(destination.substring(WebSocketController.RIDE_REQUESTS_QUEUE.length())));
+                } catch (NumberFormatException ignored) {
+                    // not a driver queue
+                }
+            }
+        });
+    }
+
+    /**
+     * Start offering a saved REQUESTED ride. Candidates are ranked off the request thread;
+     * onExhausted runs when no candidate is left without an accept.
+     */
+    public void start(Ride ride, RideResponse response, Runnable onExhausted) {
+        Cascade cascade = new Cascade(ride, response, onExhausted);
+        cascades.put(ride.getId(), cascade);
+        rideMatchingService.rankCandidates(ride.getPickupLat(), ride.getPickupLng(), ride.getVehicleType())
+                .whenComplete((ranked, error) -> {
+                    synchronized (cascade) {
+                        if (ranked != null) {
+                            ranked.stream().map(Driver::getUserId).filter(Objects::nonNull).limit(maxOffers)
+                                    .forEach(cascade.candidates::add);
+                        } else {
+                            System.err.println("Ranking drivers for " + ride.getBookingId() + " failed: " + error.getMessage());
+                        }
+                        offerNext(cascade);
+                    }
+                });
+    }
+
+    /**
+     * The ride left REQUESTED (accepted, cancelled, ...): withdraw its offer and end the cascade
+     */
+    public void onRideClosed(Ride ride) {
+        Cascade cascade = ride != null && ride.getId() != null ? cascades.remove(ride.getId()) : null;
+        if (cascade == null) {
+            return;
+        }
+        synchronized (cascade) {
+            timeouts.cancel(ride.getId());
+            release(cascade);
+            cascade.done = true;
+            offersPerRide.record(cascade.offers);
+            if ("ACCEPTED".equalsIgnoreCase(ride.getStatus())) {
+                timeToAccept.record(Duration.ofNanos(System.nanoTime() - cascade.startedNanos));
+            }
+        }
+    }
+
+    /**
+     * The driver went offline or disconnected: pass their pending offer on to the next candidate
+     */
+    public void onDriverGone(Long driverId) {
+        Long rideId = driverId != null ? offeredRide.get(driverId) : null;
+        Cascade cascade = rideId != null ? cascades.get(rideId) : null;
+        if (cascade == null) {
+            return;
+        }
+        synchronized (cascade) {
+            if (driverId.equals(cascade.offeredTo)) {
+                timeouts.cancel(rideId);
+                release(cascade);
+                offerNext(cascade);
+            }
+        }
+    }
+
+    public int outstandingOffers() {
+        return timeouts.size();
+    }
+
+    @Scheduled(fixedRateString = "${apnaride.dispatch.cascade.tick-ms:250}")
+    public void sweep() {
+        timeouts.advance(System.currentTimeMillis(), rideId -> {
+            Cascade cascade = cascades.get(rideId);
+            if (cascade == null) {
+                return;
+            }
+            synchronized (cascade) {
+                // The offer may have moved on (driver gone) since this deadline was taken off the wheel
+                if (cascade.offeredTo == null || System.currentTimeMillis() < cascade.offerExpiresAt) {
+                    return;
+                }
+                expired.increment();
+                release(cascade);
+                offerNext(cascade);
+            }
+        });
+    }
+
+    /**
+     * Offer to the next candidate that is still free, or end the cascade. Caller holds the cascade lock.
+     */
+    private void offerNext(Cascade cascade) {
+        if (cascade.done) {
+            return;
+        }
+        Long rideId = cascade.ride.getId();
+        if (openRideIndex.isOpen(rideId)) {
+            while (!cascade.candidates.isEmpty()) {
+                Long driverId = cascade.candidates.poll();
+                boolean free = driverSpatialIndex.get(driverId)
+                        .map(d -> Boolean.TRUE.equals(d.getIsAvailable()))
+                        .orElse(false);
+                // A driver holds one offer at a time
+                if (free && offeredRide.putIfAbsent(driverId, rideId) == null) {
+                    cascade.offeredTo = driverId;
+                    cascade.offers++;
+                    cascade.offerExpiresAt = System.currentTimeMillis() + offerTimeoutMillis;
+                    timeouts.schedule(rideId, cascade.offerExpiresAt);
+                    webSocketController.sendRideRequest(driverId, cascade.response);
+                    return;
+                }
+            }
+        }
+        cascades.remove(rideId, cascade);
+        cascade.done = true;
+        offersPerRide.record(cascade.offers);
+        if (openRideIndex.isOpen(rideId)) {
+            cascade.onExhausted.run();
+        }
+    }
+
+    private void release(Cascade cascade) {
+        if (cascade.offeredTo != null) {
+            offeredRide.remove(cascade.offeredTo, cascade.ride.getId());
+            cascade.offeredTo = null;
+        }
+    }
+
+    private static final class Cascade {
+        final Ride ride;
+        final RideResponse response;
+        final Runnable onExhausted;
+        final Deque<Long> candidates = new ArrayDeque<>();
+        final long startedNanos = System.nanoTime();
+        Long offeredTo;
+        long offerExpiresAt;
+        int offers;
+        boolean done;
+
+        Cascade(Ride ride, RideResponse response, Runnable onExhausted) {
+            this.ride = ride;
+            this.response = response;
+            this.onExhausted = onExhausted;
+        }
+    }
+}
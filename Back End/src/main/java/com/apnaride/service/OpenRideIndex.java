@@ -0,0 +1,141 @@
+package com.apnaride.service;
+
+import com.apnaride.model.Ride;
+import com.apnaride.repository.RideRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+@Service
+public class OpenRideIndex {
+
+    private static final double CELL_DEGREES = 0.02;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    private final GeoCellIndex<OpenRide> index = new GeoCellIndex<>(CELL_DEGREES);
+    private final Map<String, Long> rideIds = new ConcurrentHashMap<>(); // booking id -> ride id
+
+    /**
+     * Load REQUESTED rides once at startup; afterwards every ride transition keeps the index current
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        rideRepository.findByStatus("REQUESTED").forEach(this::update);
+    }
+
+    /**
+     * Reflect a ride's latest saved state: REQUESTED rides are indexed by pickup cell, anything else is evicted
+     */
+    public void update(Ride ride) {
+        if (ride == null || ride.getId() == null) {
+            return;
+        }
+        if (!"REQUESTED".equalsIgnoreCase(ride.getStatus())) {
+            index.remove(ride.getId());
+            if (ride.getBookingId() != null) {
+                rideIds.remove(ride.getBookingId(), ride.getId());
+            }
+            return;
+        }
+        // Re-indexing the same ride keeps its claim, so an in-flight accept is not dropped
+        GeoCellIndex.Entry<OpenRide> existing = index.get(ride.getId());
+        AtomicLong claimedBy = existing != null ? existing.getValue().claimedBy : new AtomicLong();
+        index.put(ride.getId(), ride.getVehicleType(), ride.getPickupLat(), ride.getPickupLng(), new OpenRide(ride, claimedBy));
+        if (ride.getBookingId() != null) {
+            rideIds.put(ride.getBookingId(), ride.getId());
+        }
+    }
+
+    /**
+     * The indexed entry of an open ride, or null if this replica does not hold it as REQUESTED
+     */
+    public OpenRide get(String bookingId) {
+        Long rideId = bookingId != null ? rideIds.get(bookingId) : null;
+        GeoCellIndex.Entry<OpenRide> entry = rideId != null ? index.get(rideId) : null;
+        return entry != null ? entry.getValue() : null;
+    }
+
+    /**
+     * Open rides whose pickup is within radius of the driver, nearest first.
+     * Null filters are ignored; a null vehicleType matches all types.
+     */
+    public List<GeoCellIndex.Hit<OpenRide>> findNearby(double lat, double lng, double radiusKm, String vehicleType,
+                                                       Double minTripKm, Double maxTripKm, Double minFare) {
+        Predicate<OpenRide> filter = r ->
+                (minTripKm == null || r.getTripDistanceKm() >= minTripKm)
+                && (maxTripKm == null || r.getTripDistanceKm() <= maxTripKm)
+                && (minFare == null || r.getFare() >= minFare);
+        return index.within(lat, lng, radiusKm, vehicleType, filter);
+    }
+
+    /**
+     * All open rides, oldest request first
+     */
+    public List<Ride> findAll(String vehicleType) {
+        return index.values(vehicleType, r -> true).stream()
+                .sorted(Comparator.comparing(OpenRide::getRequestedAt, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .map(OpenRide::getRide)
+                .toList();
+    }
+
+    /**
+     * Whether a ride is still REQUESTED as far as the index knows
+     */
+    public boolean isOpen(Long rideId) {
+        return rideId != null && index.get(rideId) != null;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Indexed view of a REQUESTED ride with its trip length precomputed for filtering
+     */
+    public static final class OpenRide {
+        private final Ride ride;
+        private final double tripDistanceKm;
+        private final double fare;
+        private final AtomicLong claimedBy; // driver user id, 0 while unclaimed
+
+        OpenRide(Ride ride, AtomicLong claimedBy) {
+            this.ride = ride;
+            this.claimedBy = claimedBy;
+            this.tripDistanceKm = tripDistance(ride);
+            this.fare = ride.getFare() != null ? ride.getFare() : 0.0;
+        }
+
+        public Ride getRide() { return ride; }
+        public double getTripDistanceKm() { return tripDistanceKm; }
+        public double getFare() { return fare; }
+        public LocalDateTime getRequestedAt() { return ride.getRequestedAt(); }
+        public long getClaimedBy() { return claimedBy.get(); }
+
+        /**
+         * First driver to claim wins; everyone after sees the claim until it is released
+         */
+        public boolean claim(long driverId) {
+            return claimedBy.compareAndSet(0, driverId);
+        }
+
+        public void release(long driverId) {
+            claimedBy.compareAndSet(driverId, 0);
+        }
+
+        private static double tripDistance(Ride ride) {
+            // Same default as the fare path for rides without coordinates
+            return FareCalculator.distanceKm(ride.getPickupLat(), ride.getPickupLng(), ride.getDropLat(), ride.getDropLng());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.apnaride.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking client for one or more OSRM servers. A request goes to the first healthy
+ * endpoint; if it has not answered within the hedge delay (or fails earlier) the same request
+ * is sent to the next one, and the first successful response wins. Endpoints that keep
+ * failing are skipped by a per-endpoint circuit breaker. A bulkhead caps the logical requests
+ * in flight; beyond it requests complete empty at once so callers fall back without queueing.
+ */
+@Service
+public class OsrmClient {
+
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final HttpClient http;
+    private final Duration timeout;
+    private final long hedgeDelayMillis;
+    private final Bulkhead bulkhead;
+
+    public OsrmClient(@Value("${apnaride.route.osrm-endpoints}") List<String> baseUrls,
+                      @Value("${apnaride.route.timeout-ms:6000}") long timeoutMillis,
+                      @Value("${apnaride.route.hedge-delay-ms:400}") long hedgeDelayMillis,
+                      @Value("${apnaride.route.breaker.failure-threshold:3}") int failureThreshold,
+                      @Value("${apnaride.route.breaker.open-ms:30000}") long openMillis,
+                      @Value("${apnaride.route.max-concurrent:200}") int maxConcurrent,
+                      MeterRegistry meterRegistry) {
+        for (String base : baseUrls) {
+            if (base != null && !base.isBlank()) {
+                endpoints.add(new Endpoint(base.trim(), new CircuitBreaker(failureThreshold, openMillis)));
+            }
+        }
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.hedgeDelayMillis = hedgeDelayMillis;
+        this.bulkhead = new Bulkhead("osrm", maxConcurrent, 0, meterRegistry);
+        this.http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    /**
+     * GET an OSRM service (e.g. "route", "table") with the given coordinates and query.
+     * Completes with the response body, or empty when no endpoint produced a 2xx in time.
+     */
+    public CompletableFuture<Optional<String>> get(String service, String coordinatesAndQuery) {
+        List<Endpoint> healthy = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.breaker.tryAcquire()) {
+                healthy.add(endpoint);
+            }
+        }
+        if (healthy.isEmpty() || !bulkhead.tryAcquireNow()) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        Hedge hedge = new Hedge(healthy, service, coordinatesAndQuery);
+        hedge.result.whenComplete((body, error) -> bulkhead.release());
+        hedge.launchNext();
+        return hedge.result;
+    }
+
+    public List<String> getEndpointStates() {
+        List<String> states = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            states.add(endpoint.base + "=" + endpoint.breaker.getState());
+        }
+        return states;
+    }
+
+    // One logical request fanned out over the healthy endpoints, at most one new attempt per trigger
+    private final class Hedge {
+        final CompletableFuture<Optional<String>> result = new CompletableFuture<>();
+        final List<Endpoint> candidates;
+        final String service;
+        final String coordinatesAndQuery;
+        final List<CompletableFuture<?>> inFlight = new ArrayList<>();
+        final AtomicInteger launched = new AtomicInteger();
+        final AtomicInteger finished = new AtomicInteger();
+
+        Hedge(List<Endpoint> candidates, String service, String coordinatesAndQuery) {
+            this.candidates = candidates;
+            this.service = service;
+            this.coordinatesAndQuery = coordinatesAndQuery;
+        }
+
+        void launchNext() {
+            int index;
+            do {
+                index = launched.get();
+                if (index >= candidates.size() || result.isDone()) {
+                    return;
+                }
+            } while (!launched.compareAndSet(index, index + 1));
+            Endpoint endpoint = candidates.get(index);
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(endpoint.url(service, coordinatesAndQuery)))
+                    .timeout(timeout)
+                    .GET()
+                    .build();
+            CompletableFuture<HttpResponse<String>> call = http.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+            synchronized (inFlight) {
+                inFlight.add(call);
+            }
+            call.whenComplete((response, error) -> onComplete(endpoint, response, error));
+            if (index + 1 < candidates.size()) {
+                Executor later = CompletableFuture.delayedExecutor(hedgeDelayMillis, TimeUnit.MILLISECONDS);
+                int next = index + 1;
+                later.execute(() -> {
+                    if (!result.isDone() && launched.get() == next) {
+                        launchNext();
+                    }
+                });
+            }
+        }
+
+        void onComplete(Endpoint endpoint, HttpResponse<String> response, Throwable error) {
+            boolean ok = error == null && response.statusCode() >= 200 && response.statusCode() < 300;
+            if (ok) {
+                endpoint.breaker.onSuccess();
+                if (result.complete(Optional.of(response.body()))) {
+                    cancelOthers();
+                }
+            } else if (!result.isDone()) {
+                endpoint.breaker.onFailure();
+                launchNext(); // fail over immediately instead of waiting for the hedge delay
+            }
+            // Every endpoint was tried and none succeeded
+            if (finished.incrementAndGet() == candidates.size() && launched.get() == candidates.size()) {
+                result.complete(Optional.empty());
+            }
+        }
+
+        void cancelOthers() {
+            synchronized (inFlight) {
+                inFlight.forEach(call -> call.cancel(true));
+            }
+        }
+    }
+
+    private static final class Endpoint {
+        final String base;
+        final CircuitBreaker breaker;
+
+        Endpoint(String base, CircuitBreaker breaker) {
+            this.base = base;
+            this.breaker = breaker;
+        }
+
+        // Endpoints are configured as route service bases, e.g. https://host/route/v1/driving
+        String url(String service, String coordinatesAndQuery) {
+            return base.replace("/route/v1/", "/" + service + "/v1/") + "/" + coordinatesAndQuery;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.apnaride.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Storage for one-time login codes, keyed by normalized phone number. Implementations
+ * enforce the resend cooldown, expiry and a per-code attempt limit; a code is consumed
+ * by its first successful verification.
+ */
+public interface OtpStore {
+
+    /**
+     * Store a fresh code for the phone, replacing any previous one unless still in its resend cooldown
+     */
+    IssueResult issue(String phone, String code);
+
+    /**
+     * Check a code; every call counts as an attempt against the current code
+     */
+    VerifyResult verify(String phone, String code);
+
+    /**
+     * Codes currently held
+     */
+    long size();
+
+    enum VerifyResult { VALID, INVALID, EXPIRED, LOCKED }
+
+    final class IssueResult {
+        public enum Status { ISSUED, COOLDOWN, FULL }
+
+        private final Status status;
+        private final LocalDateTime expiresAt;
+        private final long retryAfterSeconds;
+
+        private IssueResult(Status status, LocalDateTime expiresAt, long retryAfterSeconds) {
+            this.status = status;
+            this.expiresAt = expiresAt;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public static IssueResult issued(LocalDateTime expiresAt) {
+            return new IssueResult(Status.ISSUED, expiresAt, 0);
+        }
+
+        public static IssueResult cooldown(long retryAfterSeconds) {
+            return new IssueResult(Status.COOLDOWN, null, Math.max(1, retryAfterSeconds));
+        }
+
+        public static IssueResult full() {
+            return new IssueResult(Status.FULL, null, 0);
+        }
+
+        public Status getStatus() { return status; }
+        public LocalDateTime getExpiresAt() { return expiresAt; }
+        public long getRetryAfterSeconds() { return retryAfterSeconds; }
+    }
+}
@@ -0,0 +1,44 @@
+package com.apnaride.service;
+
+import com.apnaride.model.User;
+import com.apnaride.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Resolves a phone number to its user through the unique index on the normalized phone, so any
+ * formatting of the number is one indexed lookup.
+ */
+@Service
+public class PhoneDirectory {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * User registered with this phone number, in any formatting
+     */
+    public Optional<User> findUser(String phone) {
+        String normalized = User.normalizePhone(phone);
+        if (normalized == null) {
+            return Optional.empty();
+        }
+        return userRepository.findByPhoneNormalized(normalized);
+    }
+
+    /**
+     * Whether the phone number is registered to a user other than userId
+     */
+    public boolean isTakenByOther(String phone, Long userId) {
+        String normalized = User.normalizePhone(phone);
+        if (normalized == null) {
+            return false;
+        }
+        return userRepository.findIdByPhoneNormalized(normalized)
+                .map(id -> !Objects.equals(id, userId))
+                .orElse(false);
+    }
+}
@@ -0,0 +1,95 @@
+package com.apnaride.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Razorpay orders API. Calls block the request thread (cheap when it is virtual) and are capped
+ * by a bulkhead; any failure, including a rejected permit, comes back as empty so the caller can
+ * fall back to a mock order as before.
+ */
+@Service
+public class RazorpayClient {
+
+    private final HttpClient http;
+    private final ObjectMapper objectMapper;
+    private final Bulkhead bulkhead;
+    private final String baseUrl;
+    private final String keyId;
+    private final String keySecret;
+    private final Duration timeout;
+
+    public RazorpayClient(ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry,
+                          @Value("${apnaride.payments.razorpay.base-url:https://api.razorpay.com}") String baseUrl,
+                          @Value("${apnaride.payments.razorpay.key-id:}") String keyId,
+                          @Value("${apnaride.payments.razorpay.key-secret:}") String keySecret,
+                          @Value("${apnaride.payments.razorpay.timeout-ms:10000}") long timeoutMillis,
+                          @Value("${apnaride.payments.razorpay.max-concurrent:50}") int maxConcurrent,
+                          @Value("${apnaride.payments.razorpay.max-wait-ms:2000}") long maxWaitMillis) {
+        this.objectMapper = objectMapper;
+        this.baseUrl = baseUrl.replaceAll("/+$", "");
+        this.keyId = keyId;
+        this.keySecret = keySecret;
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.bulkhead = new Bulkhead("razorpay", maxConcurrent, maxWaitMillis, meterRegistry);
+        this.http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public boolean isConfigured() {
+        return !keyId.isBlank() && !keySecret.isBlank();
+    }
+
+    /**
+     * Create an order and return its id, or empty when not configured or the call failed
+     */
+    public Optional<String> createOrder(int amount, String currency, String receipt) {
+        if (!isConfigured() || !bulkhead.tryAcquire()) {
+            return Optional.empty();
+        }
+        try {
+            Map<String, Object> order = new LinkedHashMap<>();
+            order.put("amount", amount);
+            order.put("currency", currency);
+            order.put("receipt", receipt);
+            String basic = Base64.getEncoder().encodeToString((keyId + ":" + keySecret).getBytes(StandardCharsets.UTF_8));
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(baseUrl + "/v1/orders"))
+                    .timeout(timeout)
+                    .header("Authorization", "Basic " + basic)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(order)))
+                    .build();
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                return Optional.empty();
+            }
+            JsonNode id = objectMapper.readTree(response.body()).path("id");
+            return id.isMissingNode() ? Optional.empty() : Optional.of(id.asText());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } catch (Exception e) {
+            System.err.println("Razorpay order failed: " + e.getMessage());
+            return Optional.empty();
+        } finally {
+            bulkhead.release();
+        }
+    }
+}
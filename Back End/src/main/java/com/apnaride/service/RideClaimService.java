@@ -0,0 +1,134 @@
+package com.apnaride.service;
+
+import com.apnaride.model.Ride;
+import com.apnaride.repository.RideRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * Ride acceptance without locks. Drivers racing for a ride this replica has indexed contend on one
+ * CAS over its in-memory entry, and the winner is remembered for a minute after the ride leaves the
+ * index, so the losers are turned away without touching the database. The winner, and any accept
+ * for a ride that is not indexed here, then moves the row through {@link RideStateMachine}, whose
+ * conditional UPDATE ... WHERE status = 'REQUESTED' settles races between replicas: only one
+ * update changes the row.
+ */
+@Service
+public class RideClaimService {
+
+    /**
+     * CONTENDED: another driver's accept is in flight and the ride is still REQUESTED, worth a retry.
+     * TAKEN: another driver's accept went through on this replica within the last minute.
+     */
+    public enum Outcome { CLAIMED, ACCEPTED, CONTENDED, TAKEN, NOT_OPEN, NOT_FOUND }
+
+    // Rides leave the index once accepted; drivers still arriving for them are answered from here
+    private static final int RECENT_ACCEPTS = 10_000;
+    private static final long RECENT_ACCEPT_TTL_MILLIS = 60_000;
+
+    private final OpenRideIndex openRideIndex;
+    private final RideRepository rideRepository;
+    private final RideStateMachine rideStateMachine;
+    private final TtlLruCache<String, Long> acceptedBy = new TtlLruCache<>(RECENT_ACCEPTS, RECENT_ACCEPT_TTL_MILLIS);
+    private final Counter won;
+    private final Counter lostInMemory;
+    private final Counter lostInDatabase;
+
+    public RideClaimService(OpenRideIndex openRideIndex, RideRepository rideRepository,
+                            RideStateMachine rideStateMachine, MeterRegistry meterRegistry) {
+        this.openRideIndex = openRideIndex;
+        this.rideRepository = rideRepository;
+        this.rideStateMachine = rideStateMachine;
+        this.won = meterRegistry.counter("apnaride.ride.accept", "result", "won");
+        this.lostInMemory = meterRegistry.counter("apnaride.ride.accept", "result", "lost-claim");
+        this.lostInDatabase = meterRegistry.counter("apnaride.ride.accept", "result", "lost-update");
+    }
+
+    /**
+     * Claim a ride for a driver. CONTENDED and TAKEN are answered from memory without a query;
+     * NOT_OPEN carries the ride as stored for the already-accepted response.
+     */
+    public Claim claim(String bookingId, Long driverId) {
+        OpenRideIndex.OpenRide open = openRideIndex.get(bookingId);
+        if (open != null) {
+            long holder;
+            do {
+                if (open.claim(driverId)) {
+                    return new Claim(Outcome.CLAIMED, open.getRide(), driverId, open);
+                }
+                holder = open.getClaimedBy();
+            } while (holder == 0); // released between the CAS and the read
+            if (holder != driverId) {
+                lostInMemory.increment();
+                return new Claim(Outcome.CONTENDED, open.getRide(), driverId, null);
+            }
+            // The same driver again while their first accept is in flight: the UPDATE decides
+        } else {
+            Long winner = acceptedBy.get(bookingId);
+            if (winner != null && !winner.equals(driverId)) {
+                lostInMemory.increment();
+                return new Claim(Outcome.TAKEN, null, driverId, null);
+            }
+        }
+        Optional<Ride> ride = rideRepository.findByBookingId(bookingId);
+        if (ride.isEmpty()) {
+            return new Claim(Outcome.NOT_FOUND, null, driverId, null);
+        }
+        if (!"REQUESTED".equals(ride.get().getStatus())) {
+            return new Claim(Outcome.NOT_OPEN, ride.get(), driverId, null);
+        }
+        return new Claim(Outcome.CLAIMED, ride.get(), driverId, null);
+    }
+
+    /**
+     * Write the accept for a CLAIMED ride through the state machine. Returns ACCEPTED with the ride
+     * updated in place, or NOT_OPEN with the ride as stored when another driver's update got there first.
+     */
+    public Claim commit(Claim claim, String otp) {
+        Ride ride = claim.ride;
+        // Recorded before the transition hooks drop the ride from the index, so no late driver slips between
+        acceptedBy.put(ride.getBookingId(), claim.driverId);
+        if (rideStateMachine.accept(ride, claim.driverId, otp) == RideStateMachine.Outcome.APPLIED) {
+            won.increment();
+            return new Claim(Outcome.ACCEPTED, ride, claim.driverId, null);
+        }
+        acceptedBy.invalidate(ride.getBookingId());
+        lostInDatabase.increment();
+        release(claim);
+        Ride current = rideRepository.findByBookingId(ride.getBookingId()).orElse(ride);
+        if ("ACCEPTED".equals(current.getStatus()) && current.getRiderId() != null) {
+            acceptedBy.put(current.getBookingId(), current.getRiderId());
+        }
+        openRideIndex.update(current);
+        return new Claim(Outcome.NOT_OPEN, current, claim.driverId, null);
+    }
+
+    /**
+     * Give up a claim that will not be committed, so other drivers can accept the ride
+     */
+    public void release(Claim claim) {
+        if (claim != null && claim.entry != null) {
+            claim.entry.release(claim.driverId);
+        }
+    }
+
+    public static final class Claim {
+        private final Outcome outcome;
+        private final Ride ride;
+        private final long driverId;
+        private final OpenRideIndex.OpenRide entry; // set while holding the in-memory claim
+
+        Claim(Outcome outcome, Ride ride, long driverId, OpenRideIndex.OpenRide entry) {
+            this.outcome = outcome;
+            this.ride = ride;
+            this.driverId = driverId;
+            this.entry = entry;
+        }
+
+        public Outcome getOutcome() { return outcome; }
+        public Ride getRide() { return ride; }
+    }
+}
@@ -0,0 +1,158 @@
+package com.apnaride.service;
+
+import com.apnaride.model.Ride;
+import com.apnaride.repository.RideRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Flushable;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Streams rides straight from a database cursor to the response as CSV or JSON. Each row is
+ * detached once written, so memory stays flat no matter how many rides are exported.
+ */
+@Service
+public class RideExportService {
+
+    private static final int FLUSH_EVERY = 1000;
+
+    // Exported columns, in order. The ride OTP is deliberately left out.
+    private static final Map<String, Function<Ride, Object>> COLUMNS = new LinkedHashMap<>();
+    static {
+        COLUMNS.put("id", Ride::getId);
+        COLUMNS.put("bookingId", Ride::getBookingId);
+        COLUMNS.put("customerId", Ride::getCustomerId);
+        COLUMNS.put("riderId", Ride::getRiderId);
+        COLUMNS.put("status", Ride::getStatus);
+        COLUMNS.put("vehicleType", Ride::getVehicleType);
+        COLUMNS.put("fare", Ride::getFare);
+        COLUMNS.put("pickupLocation", Ride::getPickupLocation);
+        COLUMNS.put("dropLocation", Ride::getDropLocation);
+        COLUMNS.put("pickupLat", Ride::getPickupLat);
+        COLUMNS.put("pickupLng", Ride::getPickupLng);
+        COLUMNS.put("dropLat", Ride::getDropLat);
+        COLUMNS.put("dropLng", Ride::getDropLng);
+        COLUMNS.put("requestedAt", Ride::getRequestedAt);
+        COLUMNS.put("acceptedAt", Ride::getAcceptedAt);
+        COLUMNS.put("completedAt", Ride::getCompletedAt);
+    }
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate readOnlyTx;
+
+    public RideExportService(PlatformTransactionManager transactionManager) {
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    /**
+     * Write matching rides as CSV with a header row; null filters are ignored
+     */
+    public void writeCsv(String status, String vehicleType, String city, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(String.join(",", COLUMNS.keySet()));
+        writer.write('\n');
+        forEach(status, vehicleType, city, ride -> {
+            try {
+                boolean first = true;
+                for (Function<Ride, Object> column : COLUMNS.values()) {
+                    if (!first) {
+                        writer.write(',');
+                    }
+                    writer.write(csv(column.apply(ride)));
+                    first = false;
+                }
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, () -> flush(writer));
+        writer.flush();
+    }
+
+    /**
+     * Write matching rides as a JSON array of flat objects; null filters are ignored
+     */
+    public void writeJson(String status, String vehicleType, String city, OutputStream out) throws IOException {
+        try (JsonGenerator json = objectMapper.createGenerator(out)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.writeStartArray();
+            forEach(status, vehicleType, city, ride -> {
+                try {
+                    json.writeStartObject();
+                    for (Map.Entry<String, Function<Ride, Object>> column : COLUMNS.entrySet()) {
+                        json.writeObjectField(column.getKey(), column.getValue().apply(ride));
+                    }
+                    json.writeEndObject();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, () -> flush(json));
+            json.writeEndArray();
+        }
+    }
+
+    private void forEach(String status, String vehicleType, String city, Consumer<Ride> row, Runnable flush) throws IOException {
+        try {
+            readOnlyTx.executeWithoutResult(tx -> {
+                try (Stream<Ride> rides = rideRepository.streamFiltered(status, vehicleType, city)) {
+                    long[] written = {0};
+                    rides.forEach(ride -> {
+                        row.accept(ride);
+                        entityManager.detach(ride);
+                        if (++written[0] % FLUSH_EVERY == 0) {
+                            flush.run();
+                        }
+                    });
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause(); // client went away
+        }
+    }
+
+    private static void flush(Flushable target) {
+        try {
+            target.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
@@ -1,91 +1,118 @@
 package com.apnaride.service;
 
 import com.apnaride.model.Driver;
-import com.apnaride.repository.DriverRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Service
 public class RideMatchingService {
 
     @Autowired
-    private DriverRepository driverRepository;
+    private DriverSpatialIndex driverSpatialIndex;
+
+    @Autowired
+    private DistanceMatrixService distanceMatrixService;
+
+    @Value("${apnaride.matching.radius-km:10}")
+    private double matchingRadiusKm;
+
+    @Value("${apnaride.matching.max-candidates:25}")
+    private int maxCandidates;
 
     /**
-     * Find the best driver for a ride based on proximity and availability
+     * Find the best driver for a ride: the nearest candidates by straight line are ranked by road ETA
+     * to the pickup in one matrix call. Beyond the matching radius the nearest driver at any distance is used.
      */
     public Optional<Driver> findBestDriver(Double pickupLat, Double pickupLng, String vehicleType) {
-        List<Driver> availableDrivers = driverRepository.findByIsOnlineAndIsAvailable(true, true);
-        
-        // Filter by vehicle type
-        List<Driver> matchingDrivers = availableDrivers.stream()
-                .filter(driver -> driver.getVehicleType().equalsIgnoreCase(vehicleType))
-                .collect(Collectors.toList());
-        
-        if (matchingDrivers.isEmpty()) {
-            return Optional.empty();
-        }
-        
-        // Find nearest driver
-        Driver nearestDriver = null;
-        double minDistance = Double.MAX_VALUE;
-        
-        for (Driver driver : matchingDrivers) {
-            if (driver.getCurrentLat() != null && driver.getCurrentLng() != null) {
-                double distance = calculateDistance(
-                    pickupLat, pickupLng,
-                    driver.getCurrentLat(), driver.getCurrentLng()
-                );
-                
-                if (distance < minDistance) {
-                    minDistance = distance;
-                    nearestDriver = driver;
-                }
-            }
-        }
-        
-        return Optional.ofNullable(nearestDriver);
+        return rankCandidates(pickupLat, pickupLng, vehicleType).join().stream().findFirst();
     }
 
     /**
-     * Calculate distance between two points using Haversine formula
+     * Candidate drivers for a pickup, best first: the nearest max-candidates within the matching radius
+     * ranked by road ETA, or the nearest driver at any distance when none are within it
      */
-    private double calculateDistance(Double lat1, Double lng1, Double lat2, Double lng2) {
-        if (lat1 == null || lng1 == null || lat2 == null || lng2 == null) {
-            return Double.MAX_VALUE;
+    public CompletableFuture<List<Driver>> rankCandidates(Double pickupLat, Double pickupLng, String vehicleType) {
+        if (pickupLat == null || pickupLng == null) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        List<GeoCellIndex.Hit<Driver>> candidates =
+                driverSpatialIndex.findNearby(pickupLat, pickupLng, matchingRadiusKm, vehicleType, true);
+        if (candidates.size() <= 1) {
+            List<Driver> single = candidates.isEmpty()
+                    ? driverSpatialIndex.findNearest(pickupLat, pickupLng, vehicleType, true)
+                            .map(hit -> List.of(hit.getValue())).orElse(List.of())
+                    : List.of(candidates.get(0).getValue());
+            return CompletableFuture.completedFuture(single);
         }
-        
-        double R = 6371; // Earth's radius in km
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLng = Math.toRadians(lng2 - lng1);
-        
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                   Math.sin(dLng / 2) * Math.sin(dLng / 2);
-        
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        
-        return R * c;
+        return rankByEta(candidates, pickupLat, pickupLng).thenApply(ranked -> ranked.stream()
+                .map(RankedDriver::getDriver)
+                .collect(Collectors.toList()));
     }
 
     /**
-     * Get all available drivers within radius
+     * Get all available drivers within radius, nearest first
      */
     public List<Driver> getDriversWithinRadius(Double lat, Double lng, Double radiusKm) {
-        List<Driver> availableDrivers = driverRepository.findByIsOnlineAndIsAvailable(true, true);
-        
-        return availableDrivers.stream()
-                .filter(driver -> {
-                    if (driver.getCurrentLat() == null || driver.getCurrentLng() == null) {
-                        return false;
-                    }
-                    double distance = calculateDistance(lat, lng, driver.getCurrentLat(), driver.getCurrentLng());
-                    return distance <= radiusKm;
-                })
+        if (lat == null || lng == null || radiusKm == null) {
+            return List.of();
+        }
+        return driverSpatialIndex.findNearby(lat, lng, radiusKm, null, true).stream()
+                .map(GeoCellIndex.Hit::getValue)
                 .collect(Collectors.toList());
     }
+
+    /**
+     * Road ETA of the nearest max-candidates hits to a point, fastest first; hits must be nearest first.
+     * Further hits are not routed and are left out.
+     */
+    public CompletableFuture<List<RankedDriver>> rankByEta(List<GeoCellIndex.Hit<Driver>> hits, double lat, double lng) {
+        List<GeoCellIndex.Hit<Driver>> candidates = hits.subList(0, Math.min(hits.size(), maxCandidates));
+        int n = candidates.size();
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        for (int i = 0; i < n; i++) {
+            lats[i] = candidates.get(i).getLat();
+            lngs[i] = candidates.get(i).getLng();
+        }
+        return distanceMatrixService.toPoint(lats, lngs, lat, lng).thenApply(matrix -> {
+            List<RankedDriver> ranked = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                ranked.add(new RankedDriver(candidates.get(i), matrix.getDurationSeconds(i, 0),
+                        matrix.getDistanceMeters(i, 0), matrix.isEstimate(i, 0)));
+            }
+            ranked.sort(Comparator.comparingDouble(RankedDriver::getEtaSeconds));
+            return ranked;
+        });
+    }
+
+    /**
+     * A candidate driver with its road ETA and distance to the pickup
+     */
+    public static final class RankedDriver {
+        private final GeoCellIndex.Hit<Driver> hit;
+        private final double etaSeconds;
+        private final double roadDistanceMeters;
+        private final boolean estimate;
+
+        RankedDriver(GeoCellIndex.Hit<Driver> hit, double etaSeconds, double roadDistanceMeters, boolean estimate) {
+            this.hit = hit;
+            this.etaSeconds = etaSeconds;
+            this.roadDistanceMeters = roadDistanceMeters;
+            this.estimate = estimate;
+        }
+
+        public GeoCellIndex.Hit<Driver> getHit() { return hit; }
+        public Driver getDriver() { return hit.getValue(); }
+        public double getEtaSeconds() { return etaSeconds; }
+        public double getRoadDistanceMeters() { return roadDistanceMeters; }
+        public boolean isEstimate() { return estimate; }
+    }
 }
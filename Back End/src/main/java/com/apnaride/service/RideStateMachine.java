@@ -0,0 +1,175 @@
+package com.apnaride.service;
+
+import com.apnaride.controller.WebSocketController;
+import com.apnaride.dto.RideResponse;
+import com.apnaride.dto.RideUpdate;
+import com.apnaride.model.Ride;
+import com.apnaride.model.RideStatus;
+import com.apnaride.repository.RideRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The one place ride status changes. Allowed moves come from a fixed transition table; a move is a
+ * single conditional UPDATE ... WHERE status = <the status the caller read>, so two requests
+ * racing on the same ride cannot both apply, and nothing is re-read. Once the row has moved the
+ * ride object is updated in place and the hooks run synchronously: open-ride index, live
+ * counters, outstanding offers and the customer/driver notifications.
+ */
+@Service
+public class RideStateMachine {
+
+    public enum Outcome { APPLIED, ILLEGAL, STALE }
+
+    /**
+     * Runs after a transition has been written; ride already carries the new status
+     */
+    public interface Hook {
+        void onTransition(RideStatus from, RideStatus to, Ride ride);
+    }
+
+    private static final Map<RideStatus, Set<RideStatus>> TRANSITIONS = transitions();
+
+    private final RideRepository rideRepository;
+    private final List<Hook> hooks = new CopyOnWriteArrayList<>();
+    private final Map<RideStatus, Map<RideStatus, Counter>> counters = new EnumMap<>(RideStatus.class);
+
+    public RideStateMachine(RideRepository rideRepository,
+                            OpenRideIndex openRideIndex,
+                            LiveAnalyticsService liveAnalyticsService,
+                            OfferCascade offerCascade,
+                            WebSocketController webSocketController,
+                            MeterRegistry meterRegistry) {
+        this.rideRepository = rideRepository;
+        TRANSITIONS.forEach((from, targets) -> {
+            Map<RideStatus, Counter> byTarget = new EnumMap<>(RideStatus.class);
+            targets.forEach(to -> byTarget.put(to, meterRegistry.counter("apnaride.ride.transitions",
+                    "from", from.name(), "to", to.name())));
+            counters.put(from, byTarget);
+        });
+        hooks.add((from, to, ride) -> openRideIndex.update(ride));
+        hooks.add((from, to, ride) -> liveAnalyticsService.onTransition(from.name(), ride));
+        hooks.add((from, to, ride) -> {
+            if (from == RideStatus.REQUESTED) {
+                offerCascade.onRideClosed(ride);
+            }
+        });
+        hooks.add((from, to, ride) -> notify(webSocketController, to, ride));
+    }
+
+    private static Map<RideStatus, Set<RideStatus>> transitions() {
+        Map<RideStatus, Set<RideStatus>> table = new EnumMap<>(RideStatus.class);
+        table.put(RideStatus.REQUESTED, EnumSet.of(RideStatus.ACCEPTED, RideStatus.CANCELLED));
+        table.put(RideStatus.ACCEPTED, EnumSet.of(RideStatus.IN_PROGRESS, RideStatus.COMPLETED, RideStatus.CANCELLED));
+        table.put(RideStatus.IN_PROGRESS, EnumSet.of(RideStatus.COMPLETED, RideStatus.CANCELLED));
+        table.put(RideStatus.COMPLETED, EnumSet.noneOf(RideStatus.class));
+        table.put(RideStatus.CANCELLED, EnumSet.noneOf(RideStatus.class));
+        table.replaceAll((from, targets) -> Collections.unmodifiableSet(targets));
+        return Collections.unmodifiableMap(table);
+    }
+
+    public static boolean canTransition(RideStatus from, RideStatus to) {
+        return from != null && to != null && TRANSITIONS.get(from).contains(to);
+    }
+
+    /**
+     * Register a hook; hooks run in registration order after the built-in ones
+     */
+    public void addHook(Hook hook) {
+        hooks.add(hook);
+    }
+
+    /**
+     * REQUESTED -> ACCEPTED for a driver, with the OTP the customer will read out at pickup
+     */
+    public Outcome accept(Ride ride, Long riderId, String otp) {
+        return apply(ride, RideStatus.ACCEPTED, riderId, otp, LocalDateTime.now(), null);
+    }
+
+    /**
+     * Any other move; completing stamps completedAt
+     */
+    public Outcome transition(Ride ride, RideStatus to) {
+        return apply(ride, to, null, null, null, to == RideStatus.COMPLETED ? LocalDateTime.now() : null);
+    }
+
+    private Outcome apply(Ride ride, RideStatus to, Long riderId, String otp,
+                          LocalDateTime acceptedAt, LocalDateTime completedAt) {
+        RideStatus from = RideStatus.of(ride.getStatus());
+        if (!canTransition(from, to)) {
+            return Outcome.ILLEGAL;
+        }
+        if (rideRepository.transition(ride.getId(), ride.getStatus(), to.name(), riderId, otp, acceptedAt, completedAt) != 1) {
+            return Outcome.STALE;
+        }
+        ride.setStatus(to.name());
+        if (riderId != null) {
+            ride.setRiderId(riderId);
+        }
+        if (otp != null) {
+            ride.setOtp(otp);
+        }
+        if (acceptedAt != null) {
+            ride.setAcceptedAt(acceptedAt);
+        }
+        if (completedAt != null) {
+            ride.setCompletedAt(completedAt);
+        }
+        counters.get(from).get(to).increment();
+        for (Hook hook : hooks) {
+            try {
+                hook.onTransition(from, to, ride);
+            } catch (Exception e) {
+                System.err.println("Ride " + ride.getBookingId() + " " + from + " -> " + to + " hook failed: " + e.getMessage());
+            }
+        }
+        return Outcome.APPLIED;
+    }
+
+    /**
+     * Tell the customer (and the driver, on cancellation) about the new status. Accepts are
+     * announced by the accepting endpoint, which has the driver details at hand.
+     */
+    private static void notify(WebSocketController webSocketController, RideStatus to, Ride ride) {
+        RideUpdate update;
+        switch (to) {
+            case IN_PROGRESS:
+                update = new RideUpdate("RIDE_STARTED", ride.getBookingId(), to.name());
+                update.setMessage("Your ride has started!");
+                break;
+            case COMPLETED:
+                update = new RideUpdate("RIDE_COMPLETED", ride.getBookingId(), to.name());
+                update.setMessage("Ride completed successfully!");
+                break;
+            case CANCELLED:
+                update = new RideUpdate("RIDE_CANCELLED", ride.getBookingId(), to.name());
+                update.setMessage("Ride was cancelled");
+                break;
+            default:
+                return;
+        }
+        RideResponse response = new RideResponse(ride.getBookingId(), ride.getPickupLocation(), ride.getDropLocation(),
+                ride.getVehicleType(), ride.getFare(), ride.getStatus());
+        if (to == RideStatus.CANCELLED) {
+            response.setDriverId(ride.getRiderId());
+            response.setOtp(ride.getOtp());
+        }
+        update.setRide(response);
+        if (ride.getCustomerId() != null) {
+            webSocketController.sendRideUpdate(ride.getCustomerId(), update);
+        }
+        if (to == RideStatus.CANCELLED && ride.getRiderId() != null) {
+            webSocketController.sendRideUpdate(ride.getRiderId(), update);
+        }
+    }
+}
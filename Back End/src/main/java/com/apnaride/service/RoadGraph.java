@@ -0,0 +1,191 @@
+package com.apnaride.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Immutable directed road graph in compressed adjacency arrays (forward and reverse), with a
+ * cell index for snapping coordinates to the nearest node.
+ *
+ * <p>Edge-list file format, one record per line ('#' starts a comment):
+ * <pre>
+ * n,&lt;nodeId&gt;,&lt;lat&gt;,&lt;lng&gt;
+ * e,&lt;fromId&gt;,&lt;toId&gt;,&lt;distanceMeters&gt;,&lt;durationSeconds&gt;[,oneway]
+ * </pre>
+ * Node ids are arbitrary (e.g. OSM ids). Edges are two-way unless the last column is 1/true/oneway.
+ */
+public final class RoadGraph {
+
+    private final double[] lat;
+    private final double[] lng;
+    private final int[] outStart;
+    private final int[] outTarget;
+    private final double[] outDistance;
+    private final double[] outDuration;
+    private final int[] inStart;
+    private final int[] inSource;
+    private final double[] inDistance;
+    private final double[] inDuration;
+    private final GeoCellIndex<Integer> nodeIndex = new GeoCellIndex<>(0.01);
+
+    private RoadGraph(double[] lat, double[] lng, int edgeCount, int[] from, int[] to, double[] distance, double[] duration) {
+        int n = lat.length;
+        this.lat = lat;
+        this.lng = lng;
+        this.outStart = new int[n + 1];
+        this.outTarget = new int[edgeCount];
+        this.outDistance = new double[edgeCount];
+        this.outDuration = new double[edgeCount];
+        this.inStart = new int[n + 1];
+        this.inSource = new int[edgeCount];
+        this.inDistance = new double[edgeCount];
+        this.inDuration = new double[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            outStart[from[e] + 1]++;
+            inStart[to[e] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            outStart[v + 1] += outStart[v];
+            inStart[v + 1] += inStart[v];
+        }
+        int[] outFill = Arrays.copyOf(outStart, n);
+        int[] inFill = Arrays.copyOf(inStart, n);
+        for (int e = 0; e < edgeCount; e++) {
+            int o = outFill[from[e]]++;
+            outTarget[o] = to[e];
+            outDistance[o] = distance[e];
+            outDuration[o] = duration[e];
+            int i = inFill[to[e]]++;
+            inSource[i] = from[e];
+            inDistance[i] = distance[e];
+            inDuration[i] = duration[e];
+        }
+        for (int v = 0; v < n; v++) {
+            nodeIndex.put((long) v, null, lat[v], lng[v], v);
+        }
+    }
+
+    /**
+     * Build from dense node arrays and directed edges
+     */
+    public static RoadGraph of(double[] lat, double[] lng, int[] from, int[] to, double[] distanceMeters, double[] durationSeconds) {
+        return new RoadGraph(lat, lng, from.length, from, to, distanceMeters, durationSeconds);
+    }
+
+    /**
+     * Load an edge-list file (see class comment)
+     */
+    public static RoadGraph load(Path file) throws IOException {
+        Map<String, Integer> ids = new HashMap<>();
+        GrowableDoubles lats = new GrowableDoubles();
+        GrowableDoubles lngs = new GrowableDoubles();
+        GrowableInts from = new GrowableInts();
+        GrowableInts to = new GrowableInts();
+        GrowableDoubles distance = new GrowableDoubles();
+        GrowableDoubles duration = new GrowableDoubles();
+        // Edges may reference nodes declared later, so keep raw ids until all nodes are known
+        List<String[]> edges = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] f = line.split(",");
+                if ("n".equals(f[0]) && f.length >= 4) {
+                    ids.put(f[1].trim(), lats.size());
+                    lats.add(Double.parseDouble(f[2].trim()));
+                    lngs.add(Double.parseDouble(f[3].trim()));
+                } else if ("e".equals(f[0]) && f.length >= 5) {
+                    edges.add(f);
+                } else {
+                    throw new IOException("Malformed road graph record at line " + lineNo + ": " + line);
+                }
+            }
+        }
+        for (String[] f : edges) {
+            Integer a = ids.get(f[1].trim());
+            Integer b = ids.get(f[2].trim());
+            if (a == null || b == null) {
+                continue; // edge leaves the extract
+            }
+            double meters = Double.parseDouble(f[3].trim());
+            double seconds = Double.parseDouble(f[4].trim());
+            boolean oneway = f.length > 5 && isOneway(f[5].trim());
+            from.add(a); to.add(b); distance.add(meters); duration.add(seconds);
+            if (!oneway) {
+                from.add(b); to.add(a); distance.add(meters); duration.add(seconds);
+            }
+        }
+        return new RoadGraph(lats.toArray(), lngs.toArray(), from.size(),
+                from.toArray(), to.toArray(), distance.toArray(), duration.toArray());
+    }
+
+    public int nodeCount() {
+        return lat.length;
+    }
+
+    public int edgeCount() {
+        return outTarget.length;
+    }
+
+    public double lat(int node) { return lat[node]; }
+    public double lng(int node) { return lng[node]; }
+
+    int outStart(int node) { return outStart[node]; }
+    int outEnd(int node) { return outStart[node + 1]; }
+    int outTarget(int edge) { return outTarget[edge]; }
+    double outDistance(int edge) { return outDistance[edge]; }
+    double outDuration(int edge) { return outDuration[edge]; }
+
+    int inStart(int node) { return inStart[node]; }
+    int inEnd(int node) { return inStart[node + 1]; }
+    int inSource(int edge) { return inSource[edge]; }
+    double inDistance(int edge) { return inDistance[edge]; }
+    double inDuration(int edge) { return inDuration[edge]; }
+
+    /**
+     * Nearest node within maxKm of the point
+     */
+    public Optional<Integer> nearestNode(double latitude, double longitude, double maxKm) {
+        return nodeIndex.nearest(latitude, longitude, maxKm, null, v -> true).map(GeoCellIndex.Hit::getValue);
+    }
+
+    private static boolean isOneway(String flag) {
+        return "1".equals(flag) || "true".equalsIgnoreCase(flag) || "oneway".equalsIgnoreCase(flag) || "yes".equalsIgnoreCase(flag);
+    }
+
+    private static final class GrowableInts {
+        int[] values = new int[1024];
+        int size;
+        void add(int v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+        int size() { return size; }
+        int[] toArray() { return Arrays.copyOf(values, size); }
+    }
+
+    private static final class GrowableDoubles {
+        double[] values = new double[1024];
+        int size;
+        void add(double v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+        int size() { return size; }
+        double[] toArray() { return Arrays.copyOf(values, size); }
+    }
+}
@@ -0,0 +1,141 @@
+package com.apnaride.service;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Geometry helpers for compact route responses: Douglas-Peucker simplification with a
+ * tolerance in meters, and the encoded polyline format (precision 5) that map SDKs decode
+ * natively. Coordinates are passed as parallel lat/lng arrays to avoid per-point objects.
+ */
+public final class RouteGeometry {
+
+    private RouteGeometry() {
+    }
+
+    /**
+     * Indexes of the points kept by Douglas-Peucker at the given tolerance, in order.
+     * The first and last points are always kept.
+     */
+    public static int[] simplify(double[] lats, double[] lngs, double toleranceMeters) {
+        int n = lats.length;
+        if (n <= 2 || toleranceMeters <= 0) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) all[i] = i;
+            return all;
+        }
+        // Project once to a local plane in meters; accurate enough at route scale
+        double cosLat = Math.cos(Math.toRadians(lats[0]));
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = Math.toRadians(lngs[i]) * cosLat * GeoDistance.EARTH_RADIUS_M;
+            y[i] = Math.toRadians(lats[i]) * GeoDistance.EARTH_RADIUS_M;
+        }
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        double toleranceSq = toleranceMeters * toleranceMeters;
+        Deque<int[]> stack = new ArrayDeque<>();
+        stack.push(new int[]{0, n - 1});
+        int kept = 2;
+        while (!stack.isEmpty()) {
+            int[] span = stack.pop();
+            int first = span[0];
+            int last = span[1];
+            double maxSq = -1;
+            int index = -1;
+            for (int i = first + 1; i < last; i++) {
+                double d = segmentDistanceSq(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if (d > maxSq) {
+                    maxSq = d;
+                    index = i;
+                }
+            }
+            if (index >= 0 && maxSq > toleranceSq) {
+                keep[index] = true;
+                kept++;
+                stack.push(new int[]{first, index});
+                stack.push(new int[]{index, last});
+            }
+        }
+        int[] result = new int[kept];
+        for (int i = 0, k = 0; i < n; i++) {
+            if (keep[i]) result[k++] = i;
+        }
+        return result;
+    }
+
+    /**
+     * Encode the selected points (all points when indexes is null) as a polyline string
+     */
+    public static String encode(double[] lats, double[] lngs, int[] indexes) {
+        int count = indexes != null ? indexes.length : lats.length;
+        StringBuilder out = new StringBuilder(count * 6);
+        long prevLat = 0;
+        long prevLng = 0;
+        for (int k = 0; k < count; k++) {
+            int i = indexes != null ? indexes[k] : k;
+            long lat = Math.round(lats[i] * 1e5);
+            long lng = Math.round(lngs[i] * 1e5);
+            encodeValue(lat - prevLat, out);
+            encodeValue(lng - prevLng, out);
+            prevLat = lat;
+            prevLng = lng;
+        }
+        return out.toString();
+    }
+
+    /**
+     * Decode a polyline string into {lats, lngs}
+     */
+    public static double[][] decode(String polyline) {
+        double[] lats = new double[polyline.length() / 2 + 1];
+        double[] lngs = new double[lats.length];
+        int count = 0;
+        int[] pos = {0};
+        long lat = 0;
+        long lng = 0;
+        while (pos[0] < polyline.length()) {
+            lat += decodeValue(polyline, pos);
+            lng += decodeValue(polyline, pos);
+            lats[count] = lat / 1e5;
+            lngs[count] = lng / 1e5;
+            count++;
+        }
+        return new double[][]{Arrays.copyOf(lats, count), Arrays.copyOf(lngs, count)};
+    }
+
+    private static void encodeValue(long value, StringBuilder out) {
+        long v = value < 0 ? ~(value << 1) : value << 1;
+        while (v >= 0x20) {
+            out.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>= 5;
+        }
+        out.append((char) (v + 63));
+    }
+
+    private static long decodeValue(String polyline, int[] pos) {
+        long result = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = polyline.charAt(pos[0]++) - 63;
+            result |= (long) (b & 0x1f) << shift;
+            shift += 5;
+        } while (b >= 0x20);
+        return (result & 1) != 0 ? ~(result >> 1) : result >> 1;
+    }
+
+    private static double segmentDistanceSq(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSq = dx * dx + dy * dy;
+        double t = lengthSq == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSq;
+        t = Math.max(0, Math.min(1, t));
+        double ex = ax + t * dx - px;
+        double ey = ay + t * dy - py;
+        return ex * ex + ey * ey;
+    }
+}
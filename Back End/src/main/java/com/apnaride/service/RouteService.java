@@ -0,0 +1,221 @@
+package com.apnaride.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Driving routes for /api/route. Results are cached by start/end snapped to a small grid, so
+ * repeat pickup/drop pairs skip the external call, and concurrent identical requests share one
+ * upstream call. When no OSRM endpoint answers, the local road graph routes instead, and a
+ * straight line is the last resort (neither is cached).
+ */
+@Service
+public class RouteService {
+
+    private static final String ROUTE_QUERY = "?overview=full&geometries=geojson&steps=";
+
+    private final OsrmClient osrmClient;
+    private final LocalRoutingEngine localEngine;
+    private final boolean preferLocal;
+    private final ObjectMapper objectMapper;
+    private final TtlLruCache<String, String> cache;
+    private final TtlLruCache<String, ObjectNode> compactCache;
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final double snapScale;
+
+    private final Counter cacheHits;
+    private final Counter upstream;
+    private final Counter local;
+    private final Counter fallbacks;
+
+    public RouteService(OsrmClient osrmClient,
+                        LocalRoutingEngine localEngine,
+                        ObjectMapper objectMapper,
+                        MeterRegistry meterRegistry,
+                        @Value("${apnaride.route.cache.max-entries:5000}") int maxEntries,
+                        @Value("${apnaride.route.cache.ttl-seconds:600}") long ttlSeconds,
+                        @Value("${apnaride.route.cache.snap-decimals:4}") int snapDecimals,
+                        @Value("${apnaride.route.prefer-local:false}") boolean preferLocal) {
+        this.osrmClient = osrmClient;
+        this.localEngine = localEngine;
+        this.preferLocal = preferLocal;
+        this.objectMapper = objectMapper;
+        this.cache = new TtlLruCache<>(maxEntries, ttlSeconds * 1000);
+        this.compactCache = new TtlLruCache<>(maxEntries, ttlSeconds * 1000);
+        this.snapScale = Math.pow(10, snapDecimals);
+        this.cacheHits = meterRegistry.counter("apnaride.route.requests", "source", "cache");
+        this.upstream = meterRegistry.counter("apnaride.route.requests", "source", "osrm");
+        this.local = meterRegistry.counter("apnaride.route.requests", "source", "local");
+        this.fallbacks = meterRegistry.counter("apnaride.route.requests", "source", "fallback");
+        Gauge.builder("apnaride.route.cache.size", cache, TtlLruCache::size).register(meterRegistry);
+        Gauge.builder("apnaride.route.cache.hit.ratio", cache, TtlLruCache::hitRatio).register(meterRegistry);
+    }
+
+    /**
+     * OSRM route JSON (GeoJSON geometry, with steps) as a String, or the straight-line fallback as a Map
+     */
+    public CompletableFuture<Object> route(double startLat, double startLng, double endLat, double endLng) {
+        return route(startLat, startLng, endLat, endLng, true);
+    }
+
+    /**
+     * Compact route: geometry simplified to the tolerance and encoded as a polyline string,
+     * steps (without their per-step geometry) only when asked for
+     */
+    public CompletableFuture<ObjectNode> compactRoute(double startLat, double startLng, double endLat, double endLng,
+                                                      double toleranceMeters, boolean steps) {
+        String key = key(startLat, startLng, endLat, endLng, steps) + "~" + toleranceMeters;
+        ObjectNode cached = compactCache.get(key);
+        if (cached != null) {
+            cacheHits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+        return route(startLat, startLng, endLat, endLng, steps).thenApply(body -> {
+            ObjectNode compact = compact(body, toleranceMeters, steps);
+            if (body instanceof String) {
+                compactCache.put(key, compact);
+            }
+            return compact;
+        });
+    }
+
+    private CompletableFuture<Object> route(double startLat, double startLng, double endLat, double endLng, boolean steps) {
+        if (preferLocal) {
+            Optional<Map<String, Object>> routed = localEngine.route(startLat, startLng, endLat, endLng);
+            if (routed.isPresent()) {
+                local.increment();
+                return CompletableFuture.completedFuture(routed.get());
+            }
+        }
+        String key = key(startLat, startLng, endLat, endLng, steps);
+        String cached = cache.get(key);
+        if (cached != null) {
+            cacheHits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        CompletableFuture<Object> shared = inFlight.putIfAbsent(key, created);
+        if (shared != null) {
+            return shared;
+        }
+        String coordinates = String.format(Locale.US, "%f,%f;%f,%f", startLng, startLat, endLng, endLat);
+        osrmClient.get("route", coordinates + ROUTE_QUERY + steps).whenComplete((body, error) -> {
+            inFlight.remove(key, created);
+            if (error == null && body.isPresent()) {
+                upstream.increment();
+                cache.put(key, body.get());
+                created.complete(body.get());
+            } else {
+                created.complete(offline(startLat, startLng, endLat, endLng));
+            }
+        });
+        return created;
+    }
+
+    public TtlLruCache<String, String> getCache() {
+        return cache;
+    }
+
+    // Local road graph when loaded, otherwise a straight line
+    private Object offline(double startLat, double startLng, double endLat, double endLng) {
+        Optional<Map<String, Object>> routed = localEngine.route(startLat, startLng, endLat, endLng);
+        if (routed.isPresent()) {
+            local.increment();
+            return routed.get();
+        }
+        fallbacks.increment();
+        return straightLine(startLat, startLng, endLat, endLng);
+    }
+
+    private String key(double startLat, double startLng, double endLat, double endLng, boolean steps) {
+        return snap(startLat) + "," + snap(startLng) + ";" + snap(endLat) + "," + snap(endLng) + (steps ? "+steps" : "");
+    }
+
+    private long snap(double degrees) {
+        return Math.round(degrees * snapScale);
+    }
+
+    private ObjectNode compact(Object body, double toleranceMeters, boolean steps) {
+        JsonNode source = body instanceof String ? readTree((String) body) : objectMapper.valueToTree(body);
+        ObjectNode out = objectMapper.createObjectNode();
+        out.put("code", source.path("code").asText("Ok"));
+        ArrayNode routes = out.putArray("routes");
+        for (JsonNode route : source.path("routes")) {
+            JsonNode coordinates = route.path("geometry").path("coordinates");
+            int n = coordinates.size();
+            double[] lats = new double[n];
+            double[] lngs = new double[n];
+            for (int i = 0; i < n; i++) {
+                lngs[i] = coordinates.get(i).get(0).asDouble();
+                lats[i] = coordinates.get(i).get(1).asDouble();
+            }
+            int[] kept = RouteGeometry.simplify(lats, lngs, toleranceMeters);
+
+            ObjectNode compact = routes.addObject();
+            compact.set("distance", route.path("distance"));
+            compact.set("duration", route.path("duration"));
+            compact.put("geometry", RouteGeometry.encode(lats, lngs, kept));
+            compact.put("geometryFormat", "polyline");
+            compact.put("points", kept.length);
+            if (steps) {
+                ArrayNode legs = compact.putArray("legs");
+                for (JsonNode leg : route.path("legs")) {
+                    ArrayNode legSteps = legs.addObject().putArray("steps");
+                    for (JsonNode step : leg.path("steps")) {
+                        ObjectNode s = ((ObjectNode) step.deepCopy());
+                        s.remove("geometry"); // the route polyline already covers it
+                        s.remove("intersections");
+                        legSteps.add(s);
+                    }
+                }
+            }
+        }
+        out.set("waypoints", source.path("waypoints").isMissingNode() ? objectMapper.createArrayNode() : source.path("waypoints"));
+        return out;
+    }
+
+    private JsonNode readTree(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable OSRM response", e);
+        }
+    }
+
+    // Same shape as an OSRM response so the frontend can render it unchanged
+    private static Map<String, Object> straightLine(double startLat, double startLng, double endLat, double endLng) {
+        Map<String, Object> geometry = new HashMap<>();
+        geometry.put("type", "LineString");
+        List<List<Double>> coords = List.of(
+                List.of(startLng, startLat),
+                List.of(endLng, endLat)
+        );
+        geometry.put("coordinates", coords);
+        Map<String, Object> route0 = new HashMap<>();
+        route0.put("geometry", geometry);
+        route0.put("distance", GeoDistance.haversineMeters(startLat, startLng, endLat, endLng));
+        route0.put("duration", 0);
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("code", "Ok");
+        payload.put("routes", List.of(route0));
+        payload.put("waypoints", Collections.emptyList());
+        return payload;
+    }
+}
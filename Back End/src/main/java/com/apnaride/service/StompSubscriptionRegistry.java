@@ -0,0 +1,89 @@
+package com.apnaride.service;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Tracks which STOMP destinations currently have subscribers on the simple broker,
+ * so publishers can skip work for topics nobody is listening to.
+ */
+@Service
+public class StompSubscriptionRegistry {
+
+    private final Map<String, AtomicInteger> subscribers = new ConcurrentHashMap<>();
+    // sessionId -> (subscriptionId -> destination)
+    private final Map<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> lastUnsubscribeListeners = new CopyOnWriteArrayList<>();
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String sessionId = accessor.getSessionId();
+        String subscriptionId = accessor.getSubscriptionId();
+        String destination = accessor.getDestination();
+        if (sessionId == null || subscriptionId == null || destination == null) {
+            return;
+        }
+        String previous = sessions.computeIfAbsent(sessionId, k -> new ConcurrentHashMap<>())
+                .put(subscriptionId, destination);
+        if (previous != null) {
+            decrement(previous);
+        }
+        subscribers.computeIfAbsent(destination, k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> subscriptions = accessor.getSessionId() != null ? sessions.get(accessor.getSessionId()) : null;
+        if (subscriptions == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        String destination = subscriptions.remove(accessor.getSubscriptionId());
+        if (destination != null) {
+            decrement(destination);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> subscriptions = sessions.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::decrement);
+        }
+    }
+
+    public boolean hasSubscribers(String destination) {
+        AtomicInteger count = subscribers.get(destination);
+        return count != null && count.get() > 0;
+    }
+
+    /**
+     * Called with a destination whenever its last subscriber unsubscribes or disconnects
+     */
+    public void onLastUnsubscribe(Consumer<String> listener) {
+        lastUnsubscribeListeners.add(listener);
+    }
+
+    private void decrement(String destination) {
+        boolean[] emptied = new boolean[1];
+        subscribers.computeIfPresent(destination, (k, count) -> {
+            emptied[0] = count.decrementAndGet() <= 0;
+            return emptied[0] ? null : count;
+        });
+        if (emptied[0]) {
+            lastUnsubscribeListeners.forEach(listener -> listener.accept(destination));
+        }
+    }
+}
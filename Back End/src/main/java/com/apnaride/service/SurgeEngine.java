@@ -0,0 +1,258 @@
+package com.apnaride.service;
+
+import com.apnaride.model.Driver;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Surge multipliers per grid cell and vehicle type from live demand and supply. Ride requests are
+ * counted as they arrive and available drivers are sampled from the spatial index on every tick,
+ * both into a ring of per-tick buckets per cell. Each tick turns the window into a target
+ * multiplier (requests per available driver above 1 raise it), smooths it exponentially and
+ * publishes an immutable snapshot, so the fare path reads a multiplier with two map lookups and no
+ * database access. The epoch moves only when a published multiplier changes.
+ */
+@Service
+public class SurgeEngine {
+
+    public static final String TOPIC = "/topic/surge";
+
+    @Autowired
+    private DriverSpatialIndex driverSpatialIndex;
+
+    @Autowired
+    private StompSubscriptionRegistry subscriptionRegistry;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Value("${apnaride.surge.enabled:false}")
+    private boolean enabled;
+
+    @Value("${apnaride.surge.cell-degrees:0.02}")
+    private double cellDegrees;
+
+    @Value("${apnaride.surge.window-ticks:10}")
+    private int windowTicks;
+
+    @Value("${apnaride.surge.sensitivity:0.5}")
+    private double sensitivity;
+
+    @Value("${apnaride.surge.max-multiplier:2.5}")
+    private double maxMultiplier;
+
+    @Value("${apnaride.surge.smoothing:0.3}")
+    private double smoothing;
+
+    @Value("${apnaride.surge.step:0.1}")
+    private double step;
+
+    // "type|cell" -> window; cells drop out once they are idle and back at 1.0
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    private volatile int bucket;
+
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), List.of(), 0, LocalDateTime.now());
+
+    /**
+     * Count a ride request at its pickup
+     */
+    public void recordRequest(Double lat, Double lng, String vehicleType) {
+        if (!enabled || lat == null || lng == null) {
+            return;
+        }
+        long cell = cellKey(lat, lng);
+        Window window = windows.computeIfAbsent(type(vehicleType) + "|" + cell, k -> new Window(type(vehicleType), cell, windowTicks));
+        synchronized (window) {
+            window.demand[bucket]++;
+        }
+    }
+
+    /**
+     * Current multiplier at a point, 1.0 outside hot zones
+     */
+    public double multiplier(double lat, double lng, String vehicleType) {
+        Map<Long, Zone> zones = snapshot.byType.get(type(vehicleType));
+        if (zones == null) {
+            return 1.0;
+        }
+        Zone zone = zones.get(cellKey(lat, lng));
+        return zone != null ? zone.multiplier : 1.0;
+    }
+
+    /**
+     * Cells currently above 1.0
+     */
+    public List<Zone> getZones() {
+        return snapshot.zones;
+    }
+
+    /**
+     * Incremented whenever a published multiplier changes
+     */
+    public long getEpoch() {
+        return snapshot.epoch;
+    }
+
+    public LocalDateTime getGeneratedAt() {
+        return snapshot.generatedAt;
+    }
+
+    public double getCellDegrees() {
+        return cellDegrees;
+    }
+
+    @Scheduled(fixedRateString = "${apnaride.surge.tick-ms:30000}")
+    public synchronized void tick() {
+        if (!enabled) {
+            return;
+        }
+        Map<String, Integer> supply = new HashMap<>();
+        for (Driver driver : driverSpatialIndex.findAll(null, true)) {
+            if (driver.getCurrentLat() != null && driver.getCurrentLng() != null) {
+                String type = type(driver.getVehicleType());
+                long cell = cellKey(driver.getCurrentLat(), driver.getCurrentLng());
+                supply.merge(type + "|" + cell, 1, Integer::sum);
+                windows.computeIfAbsent(type + "|" + cell, k -> new Window(type, cell, windowTicks));
+            }
+        }
+
+        // The new bucket starts empty for requests and holds this tick's supply sample
+        int next = (bucket + 1) % windowTicks;
+        Map<String, Map<Long, Zone>> byType = new HashMap<>();
+        List<Zone> zones = new ArrayList<>();
+        boolean changed = false;
+        for (Map.Entry<String, Window> e : windows.entrySet()) {
+            Window w = e.getValue();
+            long demand = 0;
+            int supplySum = 0;
+            synchronized (w) {
+                w.demand[next] = 0;
+                w.supply[next] = supply.getOrDefault(e.getKey(), 0);
+                w.samples = Math.min(w.samples + 1, windowTicks);
+                for (int i = 0; i < windowTicks; i++) {
+                    demand += w.demand[i];
+                    supplySum += w.supply[i];
+                }
+            }
+            // Average over the ticks this window has sampled, so a new cell is not diluted by empty buckets
+            double drivers = (double) supplySum / w.samples;
+            double ratio = demand / Math.max(drivers, 1.0);
+            double target = Math.min(maxMultiplier, Math.max(1.0, 1.0 + sensitivity * (ratio - 1.0)));
+            w.smoothed = smoothing * target + (1 - smoothing) * w.smoothed;
+            double published = Math.max(1.0, Math.round(Math.round(w.smoothed / step) * step * 100) / 100.0);
+            if (published != w.published) {
+                changed = true;
+                w.published = published;
+            }
+            if (published > 1.0) {
+                Zone zone = new Zone(w.vehicleType, ((int) (w.cell >> 32) + 0.5) * cellDegrees,
+                        ((int) w.cell + 0.5) * cellDegrees, published, demand, drivers);
+                byType.computeIfAbsent(w.vehicleType, k -> new HashMap<>()).put(w.cell, zone);
+                zones.add(zone);
+            } else if (demand == 0 && supplySum == 0 && w.smoothed < 1.0 + step / 2) {
+                windows.remove(e.getKey(), w);
+            }
+        }
+        bucket = next;
+
+        // Zone figures refresh every tick; the epoch only on a new multiplier
+        long epoch = snapshot.epoch + (changed ? 1 : 0);
+        snapshot = new Snapshot(byType, List.copyOf(zones), epoch, LocalDateTime.now());
+        if (subscriptionRegistry.hasSubscribers(TOPIC)) {
+            messagingTemplate.convertAndSend(TOPIC, toMessage());
+        }
+    }
+
+    /**
+     * The payload pushed on the topic
+     */
+    public Map<String, Object> toMessage() {
+        Snapshot s = snapshot;
+        Map<String, Object> message = new HashMap<>();
+        message.put("epoch", s.epoch);
+        message.put("cellDegrees", cellDegrees);
+        message.put("zones", s.zones);
+        message.put("generatedAt", s.generatedAt.toString());
+        return message;
+    }
+
+    private long cellKey(double lat, double lng) {
+        int latCell = (int) Math.floor(lat / cellDegrees);
+        int lngCell = (int) Math.floor(lng / cellDegrees);
+        return ((long) latCell << 32) | (lngCell & 0xffffffffL);
+    }
+
+    private static String type(String vehicleType) {
+        return vehicleType != null ? vehicleType.trim().toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static final class Window {
+        final String vehicleType;
+        final long cell;
+        final long[] demand;
+        final int[] supply;
+        double smoothed = 1.0;
+        double published = 1.0;
+        int samples; // supply samples taken since the window was created, up to the window length
+
+        Window(String vehicleType, long cell, int buckets) {
+            this.vehicleType = vehicleType;
+            this.cell = cell;
+            this.demand = new long[buckets];
+            this.supply = new int[buckets];
+        }
+    }
+
+    private static final class Snapshot {
+        final Map<String, Map<Long, Zone>> byType;
+        final List<Zone> zones;
+        final long epoch;
+        final LocalDateTime generatedAt;
+
+        Snapshot(Map<String, Map<Long, Zone>> byType, List<Zone> zones, long epoch, LocalDateTime generatedAt) {
+            this.byType = byType;
+            this.zones = zones;
+            this.epoch = epoch;
+            this.generatedAt = generatedAt;
+        }
+    }
+
+    /**
+     * A hot cell: center point, multiplier, and the window's requests and average available drivers
+     */
+    public static final class Zone {
+        private final String vehicleType;
+        private final double lat;
+        private final double lng;
+        private final double multiplier;
+        private final long requests;
+        private final double availableDrivers;
+
+        Zone(String vehicleType, double lat, double lng, double multiplier, long requests, double availableDrivers) {
+            this.vehicleType = vehicleType;
+            this.lat = lat;
+            this.lng = lng;
+            this.multiplier = multiplier;
+            this.requests = requests;
+            this.availableDrivers = availableDrivers;
+        }
+
+        public String getVehicleType() { return vehicleType; }
+        public double getLat() { return lat; }
+        public double getLng() { return lng; }
+        public double getMultiplier() { return multiplier; }
+        public long getRequests() { return requests; }
+        public double getAvailableDrivers() { return availableDrivers; }
+    }
+}
@@ -0,0 +1,88 @@
+package com.apnaride.service;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel for expiring keys. Scheduling and cancelling are O(1); each advance
+ * only visits the slots that elapsed since the previous one, so the cost of expiry does not
+ * grow with the number of live keys. Deadlines beyond one revolution simply stay in their
+ * slot until a later pass reaches them.
+ */
+public class TimingWheel<K> {
+
+    private final long tickMillis;
+    private final Set<K>[] slots;
+    private final Map<K, Long> deadlines = new ConcurrentHashMap<>(); // key -> deadline tick
+    private volatile long lastTick;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int slotCount, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.slots = new Set[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = ConcurrentHashMap.newKeySet();
+        }
+        this.lastTick = nowMillis / tickMillis;
+    }
+
+    /**
+     * Schedule (or reschedule) a key to expire at the given time
+     */
+    public void schedule(K key, long deadlineMillis) {
+        // Past deadlines fire on the next advance instead of a full revolution later
+        long tick = Math.max((deadlineMillis + tickMillis - 1) / tickMillis, lastTick + 1);
+        Long previous = deadlines.put(key, tick);
+        if (previous != null && slot(previous) != slot(tick)) {
+            slots[slot(previous)].remove(key);
+        }
+        slots[slot(tick)].add(key);
+    }
+
+    /**
+     * Cancel a pending expiry; returns false if the key was not scheduled
+     */
+    public boolean cancel(K key) {
+        Long previous = deadlines.remove(key);
+        if (previous == null) {
+            return false;
+        }
+        slots[slot(previous)].remove(key);
+        return true;
+    }
+
+    public int size() {
+        return deadlines.size();
+    }
+
+    /**
+     * Expire every key whose deadline is at or before now, handing each to the callback once
+     */
+    public synchronized void advance(long nowMillis, Consumer<K> onExpired) {
+        long target = nowMillis / tickMillis;
+        // After a long pause one full revolution is enough to visit every slot
+        long from = Math.max(lastTick + 1, target - slots.length + 1);
+        for (long tick = from; tick <= target; tick++) {
+            int index = slot(tick);
+            Iterator<K> it = slots[index].iterator();
+            while (it.hasNext()) {
+                K key = it.next();
+                Long deadline = deadlines.get(key);
+                if (deadline == null || slot(deadline) != index) {
+                    it.remove(); // cancelled or moved to another slot
+                } else if (deadline <= target && deadlines.remove(key, deadline)) {
+                    it.remove();
+                    onExpired.accept(key);
+                }
+            }
+        }
+        lastTick = Math.max(lastTick, target);
+    }
+
+    private int slot(long tick) {
+        return (int) Math.floorMod(tick, (long) slots.length);
+    }
+}
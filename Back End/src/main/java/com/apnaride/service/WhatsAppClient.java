@@ -0,0 +1,86 @@
+package com.apnaride.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * WhatsApp Cloud API text messages (OTP delivery). Blocking, capped by a bulkhead like the
+ * other outbound integrations.
+ */
+@Service
+public class WhatsAppClient {
+
+    private final HttpClient http;
+    private final ObjectMapper objectMapper;
+    private final Bulkhead bulkhead;
+    private final String baseUrl;
+    private final String token;
+    private final String phoneNumberId;
+    private final Duration timeout;
+
+    public WhatsAppClient(ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry,
+                          @Value("${apnaride.whatsapp.base-url:https://graph.facebook.com/v20.0}") String baseUrl,
+                          @Value("${apnaride.whatsapp.token:}") String token,
+                          @Value("${apnaride.whatsapp.phone-number-id:}") String phoneNumberId,
+                          @Value("${apnaride.whatsapp.timeout-ms:10000}") long timeoutMillis,
+                          @Value("${apnaride.whatsapp.max-concurrent:50}") int maxConcurrent,
+                          @Value("${apnaride.whatsapp.max-wait-ms:2000}") long maxWaitMillis) {
+        this.objectMapper = objectMapper;
+        this.baseUrl = baseUrl.replaceAll("/+$", "");
+        this.token = token.trim();
+        this.phoneNumberId = phoneNumberId.trim();
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.bulkhead = new Bulkhead("whatsapp", maxConcurrent, maxWaitMillis, meterRegistry);
+        this.http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public boolean isConfigured() {
+        return !token.isEmpty() && !phoneNumberId.isEmpty();
+    }
+
+    /**
+     * Send a text message; false when the message could not be handed to WhatsApp
+     */
+    public boolean sendText(String to, String body) {
+        if (!isConfigured() || !bulkhead.tryAcquire()) {
+            return false;
+        }
+        try {
+            Map<String, Object> message = new LinkedHashMap<>();
+            message.put("messaging_product", "whatsapp");
+            message.put("to", to);
+            message.put("type", "text");
+            message.put("text", Map.of("body", body));
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(baseUrl + "/" + phoneNumberId + "/messages"))
+                    .timeout(timeout)
+                    .header("Authorization", "Bearer " + token)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(message)))
+                    .build();
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            return response.statusCode() >= 200 && response.statusCode() < 300;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            System.err.println("WhatsApp message failed: " + e.getMessage());
+            return false;
+        } finally {
+            bulkhead.release();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.apnaride.controller;
+
+import com.apnaride.ApnarideBackendApplication;
+import com.apnaride.model.Driver;
+import com.apnaride.model.Ride;
+import com.apnaride.model.User;
+import com.apnaride.repository.DriverRepository;
+import com.apnaride.repository.RideRepository;
+import com.apnaride.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Admin list endpoints must issue a constant number of statements regardless of table size,
+ * checked per endpoint over a seeded dataset.
+ */
+@SpringBootTest(classes = ApnarideBackendApplication.class)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:admin-queries;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=warn"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class AdminControllerQueryCountTest {
+
+    private static final int DRIVERS = 300;
+    private static final int CUSTOMERS = 300;
+    private static final int RIDES = 3000;
+    private static final int MAX_STATEMENTS = 4;
+
+    @Autowired
+    private AdminController adminController;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DriverRepository driverRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<Long> driverUserIds = new ArrayList<>();
+    private final List<Long> customerIds = new ArrayList<>();
+
+    @BeforeAll
+    void seed() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < DRIVERS + CUSTOMERS; i++) {
+            User user = new User();
+            user.setName("User " + i);
+            user.setEmail("user" + i + "@example.com");
+            user.setPassword("secret");
+            user.setRole(i < DRIVERS ? "rider" : "customer");
+            users.add(user);
+        }
+        userRepository.saveAll(users);
+
+        List<Driver> drivers = new ArrayList<>();
+        for (User user : users) {
+            if (!"rider".equals(user.getRole())) {
+                customerIds.add(user.getId());
+                continue;
+            }
+            driverUserIds.add(user.getId());
+            Driver driver = new Driver();
+            driver.setUserId(user.getId());
+            driver.setVehicleType(drivers.size() % 2 == 0 ? "bike" : "car");
+            driver.setVerificationStatus(drivers.size() % 3 == 0 ? "PENDING" : "APPROVED");
+            driver.setIsOnline(false);
+            driver.setIsAvailable(false);
+            drivers.add(driver);
+        }
+        driverRepository.saveAll(drivers);
+
+        List<Ride> rides = new ArrayList<>();
+        for (int i = 0; i < RIDES; i++) {
+            Ride ride = new Ride();
+            ride.setCustomerId(customerIds.get(i % customerIds.size()));
+            ride.setRiderId(driverUserIds.get(i % driverUserIds.size()));
+            ride.setVehicleType(i % 2 == 0 ? "bike" : "car");
+            ride.setFare(50.0 + i % 7);
+            ride.setStatus(i % 4 == 0 ? "CANCELLED" : "COMPLETED");
+            ride.setRequestedAt(LocalDateTime.now().minusMinutes(i));
+            rides.add(ride);
+        }
+        rideRepository.saveAll(rides);
+    }
+
+    @Test
+    void driverListUsesConstantQueries() {
+        List<Map<String, Object>> body = measure("drivers", () -> adminController.getAllDrivers(null, null, null, null, null).getBody());
+        assertEquals(DRIVERS, body.size());
+        assertEquals((long) RIDES / DRIVERS, body.get(0).get("totalRides"));
+    }
+
+    @Test
+    void pendingDriverListUsesConstantQueries() {
+        List<Map<String, Object>> body = measure("drivers/pending", () -> adminController.getPendingDrivers().getBody());
+        assertEquals(DRIVERS / 3, body.size());
+        assertTrue(body.stream().allMatch(row -> row.get("name") != null));
+    }
+
+    @Test
+    void customerListUsesConstantQueries() {
+        List<Map<String, Object>> body = measure("customers", () -> adminController.getAllCustomers(null, null).getBody());
+        assertEquals(CUSTOMERS, body.size());
+        double spent = body.stream().mapToDouble(row -> (Double) row.get("totalSpent")).sum();
+        assertEquals(rideRepository.sumFareByStatus("COMPLETED"), spent, 0.001);
+    }
+
+    @Test
+    void rideListUsesConstantQueries() {
+        List<Map<String, Object>> body = measure("rides/all", () -> adminController.getAllRides(null, null, null, null, null).getBody());
+        assertEquals(RIDES, body.size());
+        assertTrue(body.stream().allMatch(row -> row.get("customerName") != null && row.get("riderName") != null));
+    }
+
+    @Test
+    void ridePagesFollowCursorToTheEnd() {
+        Long after = null;
+        int seen = 0;
+        int pages = 0;
+        do {
+            Long cursor = after;
+            ResponseEntity<List<Map<String, Object>>> page =
+                    measure("rides/all?limit=1000", () -> adminController.getAllRides(cursor, 1000, null, null, null));
+            seen += page.getBody().size();
+            pages++;
+            String next = page.getHeaders().getFirst("X-Next-Cursor");
+            after = next != null ? Long.valueOf(next) : null;
+        } while (after != null);
+        assertEquals(RIDES, seen);
+        assertEquals(RIDES / 1000 + 1, pages);
+    }
+
+    @Test
+    void rideExportStreamsEveryMatchingRow() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        adminController.exportRides("csv", "CANCELLED", null, null).getBody().writeTo(out);
+        long lines = out.toString(StandardCharsets.UTF_8).lines().count();
+        assertEquals(RIDES / 4 + 1, lines); // header + cancelled rides
+    }
+
+    private <T> T measure(String endpoint, Supplier<T> call) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        call.get(); // warm-up, so only the steady-state statements are counted
+        statistics.clear();
+        T result = call.get();
+        long statements = statistics.getPrepareStatementCount();
+        assertTrue(statements <= MAX_STATEMENTS, endpoint + " issued " + statements + " statements");
+        return result;
+    }
+}
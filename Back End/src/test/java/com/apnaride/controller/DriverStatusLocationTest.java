@@ -0,0 +1,82 @@
+package com.apnaride.controller;
+
+import com.apnaride.ApnarideBackendApplication;
+import com.apnaride.model.Driver;
+import com.apnaride.repository.DriverRepository;
+import com.apnaride.service.DriverLocationBuffer;
+import com.apnaride.service.DriverSpatialIndex;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A status toggle without a position must not roll a driver back to the last flushed location
+ * while a newer ping is still buffered.
+ */
+@SpringBootTest(classes = ApnarideBackendApplication.class)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:driver-status;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "apnaride.location.flush-interval-ms=3600000"
+})
+class DriverStatusLocationTest {
+
+    private static final long USER_ID = 20_000L;
+
+    @Autowired
+    private DriverController driverController;
+
+    @Autowired
+    private DriverRepository driverRepository;
+
+    @Autowired
+    private DriverSpatialIndex driverSpatialIndex;
+
+    @Autowired
+    private DriverLocationBuffer driverLocationBuffer;
+
+    @Test
+    void statusToggleKeepsTheBufferedPosition() {
+        Driver driver = new Driver();
+        driver.setUserId(USER_ID);
+        driver.setVehicleType("Car");
+        driver.setVehicleNumber("TS09AB" + USER_ID);
+        driver.setLicenseNumber("DL" + USER_ID);
+        driver.setIsOnline(true);
+        driver.setIsAvailable(true);
+        driver.setIsApproved(true);
+        driver.setIsSuspended(false);
+        driver.setCurrentLat(17.385);
+        driver.setCurrentLng(78.486);
+        driverSpatialIndex.update(driverRepository.save(driver));
+
+        // Buffered only: the row still has the old position
+        driverController.updateDriverStatus(USER_ID, Map.of("lat", 17.44, "lng", 78.35));
+        assertEquals(17.385, driverRepository.findByUserId(USER_ID).orElseThrow().getCurrentLat());
+
+        driverController.updateDriverStatus(USER_ID, Map.of("isOnline", true));
+        assertPosition(17.44, 78.35);
+
+        driverLocationBuffer.flush();
+        assertPosition(17.44, 78.35);
+    }
+
+    private void assertPosition(double lat, double lng) {
+        Driver stored = driverRepository.findByUserId(USER_ID).orElseThrow();
+        assertEquals(lat, stored.getCurrentLat());
+        assertEquals(lng, stored.getCurrentLng());
+        Driver indexed = driverSpatialIndex.get(USER_ID).orElseThrow();
+        assertEquals(lat, indexed.getCurrentLat());
+        assertEquals(lng, indexed.getCurrentLng());
+    }
+}
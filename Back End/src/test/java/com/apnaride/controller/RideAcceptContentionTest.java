@@ -0,0 +1,246 @@
+package com.apnaride.controller;
+
+import com.apnaride.ApnarideBackendApplication;
+import com.apnaride.model.Driver;
+import com.apnaride.model.Ride;
+import com.apnaride.repository.DriverRepository;
+import com.apnaride.repository.RideRepository;
+import com.apnaride.service.DriverSpatialIndex;
+import com.apnaride.service.OpenRideIndex;
+import com.apnaride.service.RideClaimService;
+import com.apnaride.service.RideStateMachine;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 100 drivers accept the same ride at once: exactly one wins, in memory on the replica that indexed
+ * the ride and through the conditional UPDATE on one that did not.
+ */
+@SpringBootTest(classes = ApnarideBackendApplication.class)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ride-accept;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=warn"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class RideAcceptContentionTest {
+
+    private static final int ACCEPTORS = 100;
+
+    @Autowired
+    private RideController rideController;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private DriverRepository driverRepository;
+
+    @Autowired
+    private OpenRideIndex openRideIndex;
+
+    @Autowired
+    private DriverSpatialIndex driverSpatialIndex;
+
+    @Autowired
+    private RideClaimService rideClaimService;
+
+    @Autowired
+    private RideStateMachine rideStateMachine;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<Long> driverUserIds = new ArrayList<>();
+
+    @BeforeAll
+    void seedDrivers() {
+        for (int i = 0; i < ACCEPTORS; i++) {
+            driverUserIds.add(10_000L + i);
+        }
+    }
+
+    @Test
+    void oneOfAHundredWinsAndTheRestAreTurnedAwayInMemory() throws Exception {
+        Ride ride = openRide();
+        openRideIndex.update(ride);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        List<ResponseEntity<?>> responses = acceptConcurrently(ride.getBookingId());
+        long statements = statistics.getPrepareStatementCount();
+
+        assertSingleWinner(ride, responses);
+        assertTrue(statements <= 10, "losers should not query, but " + statements + " statements ran");
+        assertTrue(openRideIndex.get(ride.getBookingId()) == null);
+    }
+
+    @Test
+    void oneOfAHundredWinsThroughTheConditionalUpdateWhenNotIndexed() throws Exception {
+        Ride ride = openRide(); // saved by another replica: not in this one's index
+        List<ResponseEntity<?>> responses = acceptConcurrently(ride.getBookingId());
+        assertSingleWinner(ride, responses);
+    }
+
+    @Test
+    void acceptWritesTheRideOnceEvenWhenItIsManaged() {
+        Ride open = openRide();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        // One persistence context around the whole accept, as open-in-view gives a web request
+        transactionTemplate.executeWithoutResult(status -> {
+            Ride ride = rideRepository.findByBookingId(open.getBookingId()).orElseThrow();
+            statistics.clear();
+            assertEquals(RideStateMachine.Outcome.APPLIED, rideStateMachine.accept(ride, driverUserIds.get(0), "1234"));
+            rideRepository.flush();
+            assertEquals(0, statistics.getEntityUpdateCount());
+        });
+        assertEquals("ACCEPTED", rideRepository.findByBookingId(open.getBookingId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void anUnavailableDriverNeverHoldsTheClaim() {
+        Ride ride = openRide();
+        openRideIndex.update(ride);
+        Driver busy = driverRepository.findByUserId(driverUserIds.get(0)).orElseThrow();
+        busy.setIsAvailable(false);
+        driverSpatialIndex.update(driverRepository.save(busy));
+
+        ResponseEntity<?> refused = rideController.acceptRide(ride.getBookingId(), busy.getUserId());
+        assertEquals(400, refused.getStatusCode().value());
+        assertEquals(0, openRideIndex.get(ride.getBookingId()).getClaimedBy());
+
+        assertEquals(200, rideController.acceptRide(ride.getBookingId(), driverUserIds.get(1)).getStatusCode().value());
+    }
+
+    @Test
+    void reIndexingARideKeepsAnInFlightClaim() {
+        Ride ride = openRide();
+        openRideIndex.update(ride);
+        RideClaimService.Claim first = rideClaimService.claim(ride.getBookingId(), driverUserIds.get(0));
+        assertEquals(RideClaimService.Outcome.CLAIMED, first.getOutcome());
+
+        openRideIndex.update(ride);
+        RideClaimService.Claim second = rideClaimService.claim(ride.getBookingId(), driverUserIds.get(1));
+        assertEquals(RideClaimService.Outcome.CONTENDED, second.getOutcome());
+
+        // Once released the ride can be claimed again
+        rideClaimService.release(first);
+        assertEquals(RideClaimService.Outcome.CLAIMED,
+                rideClaimService.claim(ride.getBookingId(), driverUserIds.get(1)).getOutcome());
+    }
+
+    private Ride openRide() {
+        List<Driver> drivers = new ArrayList<>();
+        for (Long userId : driverUserIds) {
+            Driver driver = driverRepository.findByUserId(userId).orElseGet(Driver::new);
+            driver.setUserId(userId);
+            driver.setVehicleType("Car");
+            driver.setVehicleNumber("TS09AB" + userId);
+            driver.setLicenseNumber("DL" + userId);
+            driver.setIsOnline(true);
+            driver.setIsAvailable(true);
+            driver.setIsSuspended(false);
+            driver.setCurrentRideId(null);
+            drivers.add(driver);
+        }
+        driverRepository.saveAll(drivers).forEach(driverSpatialIndex::update);
+
+        Ride ride = new Ride();
+        ride.setBookingId("BK-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase());
+        ride.setCustomerId(1L);
+        ride.setPickupLocation("Pickup");
+        ride.setDropLocation("Drop");
+        ride.setVehicleType("Car");
+        ride.setPickupLat(17.385);
+        ride.setPickupLng(78.486);
+        ride.setDropLat(17.44);
+        ride.setDropLng(78.35);
+        ride.setFare(180.0);
+        ride.setStatus("REQUESTED");
+        ride.setRequestedAt(LocalDateTime.now());
+        return rideRepository.save(ride);
+    }
+
+    private List<ResponseEntity<?>> acceptConcurrently(String bookingId) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(ACCEPTORS);
+        CountDownLatch ready = new CountDownLatch(ACCEPTORS);
+        CountDownLatch go = new CountDownLatch(1);
+        ConcurrentLinkedQueue<ResponseEntity<?>> responses = new ConcurrentLinkedQueue<>();
+        for (Long driverId : driverUserIds) {
+            pool.execute(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                    responses.add(rideController.acceptRide(bookingId, driverId));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        ready.await();
+        go.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(60, TimeUnit.SECONDS));
+        return new ArrayList<>(responses);
+    }
+
+    private void assertSingleWinner(Ride ride, List<ResponseEntity<?>> responses) {
+        assertEquals(ACCEPTORS, responses.size());
+        List<ResponseEntity<?>> won = responses.stream().filter(r -> r.getStatusCode().is2xxSuccessful()).toList();
+        assertEquals(1, won.size());
+        responses.stream().filter(r -> !r.getStatusCode().is2xxSuccessful()).forEach(r -> {
+            Map<?, ?> body = (Map<?, ?>) r.getBody();
+            if (r.getStatusCode().value() == 409) {
+                // Arrived while the winner's accept was in flight: told to retry, not that it was taken
+                assertEquals(true, body.get("retryable"));
+                assertEquals("REQUESTED", body.get("currentStatus"));
+            } else {
+                assertEquals(400, r.getStatusCode().value());
+                assertEquals("Ride already accepted or completed", body.get("error"));
+            }
+        });
+
+        Ride stored = rideRepository.findByBookingId(ride.getBookingId()).orElseThrow();
+        assertEquals("ACCEPTED", stored.getStatus());
+        assertTrue(stored.getOtp() != null && stored.getOtp().length() == 4);
+        long busy = driverUserIds.stream()
+                .map(id -> driverRepository.findByUserId(id).orElseThrow())
+                .filter(d -> Boolean.FALSE.equals(d.getIsAvailable()))
+                .peek(d -> assertEquals(ride.getBookingId(), d.getCurrentRideId()))
+                .count();
+        assertEquals(1, busy);
+        assertTrue(driverRepository.findByUserId(stored.getRiderId()).map(d -> !d.getIsAvailable()).orElse(false));
+    }
+}
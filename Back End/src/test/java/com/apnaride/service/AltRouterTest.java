@@ -0,0 +1,147 @@
+package com.apnaride.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ALT routing on a synthetic grid road graph, checked against plain Dijkstra
+ */
+class AltRouterTest {
+
+    private static final int SIDE = 40;
+    private static final double SPACING_DEG = 0.001; // ~111 m between grid nodes
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void uniformGridDistanceIsManhattan() throws IOException {
+        RoadGraph graph = RoadGraph.load(writeGrid(new Random(1), false));
+        AltRouter router = new AltRouter(graph, 8);
+
+        AltRouter.Path path = router.route(node(0, 0), node(SIDE - 1, SIDE - 1));
+
+        assertNotNull(path);
+        assertEquals(2 * (SIDE - 1) * 100.0, path.getDistanceMeters(), 1e-6);
+        assertEquals(2 * (SIDE - 1) + 1, path.getNodes().length);
+    }
+
+    @Test
+    void matchesDijkstraOnRandomWeightsAndOnewayStreets() throws IOException {
+        RoadGraph graph = RoadGraph.load(writeGrid(new Random(7), true));
+        AltRouter router = new AltRouter(graph, 8);
+        Random random = new Random(3);
+        long altSettled = 0;
+        long dijkstraSettled = 0;
+        for (int i = 0; i < 200; i++) {
+            int s = random.nextInt(graph.nodeCount());
+            int t = random.nextInt(graph.nodeCount());
+            double[] expected = dijkstra(graph, s, t);
+            AltRouter.Path path = router.route(s, t);
+            if (expected[0] == Double.POSITIVE_INFINITY) {
+                assertEquals(null, path);
+                continue;
+            }
+            assertNotNull(path);
+            assertEquals(expected[0], path.getDurationSeconds(), 1e-6);
+            altSettled += path.getSettledNodes();
+            dijkstraSettled += (long) expected[1];
+        }
+        assertTrue(altSettled < dijkstraSettled / 2, "ALT settled " + altSettled + " vs Dijkstra " + dijkstraSettled);
+    }
+
+    @Test
+    void snapsOnlyWithinTheMaximumDistance() throws IOException {
+        RoadGraph graph = RoadGraph.load(writeGrid(new Random(1), false));
+
+        assertEquals(node(0, 0), graph.nearestNode(17.4 - 0.005, 78.4, 2).orElseThrow()); // ~0.55 km south
+        assertTrue(graph.nearestNode(17.4 - 0.05, 78.4, 2).isEmpty()); // ~5.5 km south
+    }
+
+    @Test
+    void routeServiceUsesLocalGraphWhenOsrmIsDown() throws IOException {
+        LocalRoutingEngine engine = new LocalRoutingEngine("", 8, 2);
+        engine.use(RoadGraph.load(writeGrid(new Random(1), false)));
+        OsrmClient unreachable = new OsrmClient(List.of("http://127.0.0.1:1/route/v1/driving"), 500, 100, 3, 60_000, 200, new SimpleMeterRegistry());
+        RouteService routes = new RouteService(unreachable, engine, new ObjectMapper(), new SimpleMeterRegistry(), 100, 600, 4, false);
+
+        Object body = routes.route(17.4, 78.4, 17.4 + 10 * SPACING_DEG, 78.4 + 10 * SPACING_DEG).join();
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> route = ((List<Map<String, Object>>) ((Map<String, Object>) body).get("routes")).get(0);
+        assertEquals(2000.0, (Double) route.get("distance"), 1.0);
+        assertTrue((Double) route.get("duration") > 0);
+    }
+
+    // Grid of SIDE x SIDE nodes; 100 m edges. Random mode varies speeds and makes some streets one-way.
+    private Path writeGrid(Random random, boolean randomized) throws IOException {
+        Path file = dir.resolve("grid-" + randomized + ".csv");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.println("# synthetic grid");
+            for (int r = 0; r < SIDE; r++) {
+                for (int c = 0; c < SIDE; c++) {
+                    out.printf("n,%d,%.6f,%.6f%n", node(r, c), 17.4 + r * SPACING_DEG, 78.4 + c * SPACING_DEG);
+                }
+            }
+            for (int r = 0; r < SIDE; r++) {
+                for (int c = 0; c < SIDE; c++) {
+                    if (c + 1 < SIDE) edge(out, node(r, c), node(r, c + 1), random, randomized);
+                    if (r + 1 < SIDE) edge(out, node(r, c), node(r + 1, c), random, randomized);
+                }
+            }
+        }
+        return file;
+    }
+
+    private static void edge(PrintWriter out, int a, int b, Random random, boolean randomized) {
+        double seconds = randomized ? 5 + random.nextInt(30) : 10;
+        boolean oneway = randomized && random.nextInt(10) == 0;
+        out.printf("e,%d,%d,100,%.1f%s%n", a, b, seconds, oneway ? ",1" : "");
+    }
+
+    private static int node(int row, int col) {
+        return row * SIDE + col;
+    }
+
+    // Reference: {duration, settled nodes}
+    private static double[] dijkstra(RoadGraph graph, int s, int t) {
+        double[] dist = new double[graph.nodeCount()];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        dist[s] = 0;
+        PriorityQueue<double[]> queue = new PriorityQueue<>((x, y) -> Double.compare(x[0], y[0]));
+        queue.add(new double[]{0, s});
+        int settled = 0;
+        while (!queue.isEmpty()) {
+            double[] top = queue.poll();
+            int u = (int) top[1];
+            if (top[0] > dist[u]) continue;
+            settled++;
+            if (u == t) break;
+            for (int e = graph.outStart(u); e < graph.outEnd(u); e++) {
+                int v = graph.outTarget(e);
+                double d = dist[u] + graph.outDuration(e);
+                if (d < dist[v]) {
+                    dist[v] = d;
+                    queue.add(new double[]{d, v});
+                }
+            }
+        }
+        return new double[]{dist[t], settled};
+    }
+}
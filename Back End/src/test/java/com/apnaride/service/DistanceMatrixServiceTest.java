@@ -0,0 +1,127 @@
+package com.apnaride.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * DistanceMatrixService against an OSRM table stub, the local road graph and the Haversine fallback
+ */
+class DistanceMatrixServiceTest {
+
+    private HttpServer stub;
+    private final AtomicInteger tableCalls = new AtomicInteger();
+    private final AtomicReference<String> lastQuery = new AtomicReference<>();
+
+    @BeforeEach
+    void startStub() throws IOException {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/osrm/table/v1/driving", exchange -> {
+            tableCalls.incrementAndGet();
+            lastQuery.set(exchange.getRequestURI().toString());
+            byte[] body = ("{\"code\":\"Ok\",\"durations\":[[120.5],[300],[null]],"
+                    + "\"distances\":[[900],[2500],[null]]}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        stub.start();
+    }
+
+    @AfterEach
+    void stopStub() {
+        stub.stop(0);
+    }
+
+    @Test
+    void manyToOneIsOneTableCallAndIsCached() {
+        DistanceMatrixService matrices = service("http://127.0.0.1:" + stub.getAddress().getPort() + "/osrm/route/v1/driving",
+                new LocalRoutingEngine("", 8, 2));
+        double[] lats = {17.40, 17.41, 17.42};
+        double[] lngs = {78.40, 78.41, 78.42};
+
+        DistanceMatrixService.Matrix first = matrices.toPoint(lats, lngs, 17.45, 78.45).join();
+        String firstQuery = lastQuery.get();
+        DistanceMatrixService.Matrix second = matrices.toPoint(lats, lngs, 17.45, 78.45).join();
+
+        assertEquals(120.5, first.getDurationSeconds(0, 0));
+        assertEquals(2500, first.getDistanceMeters(1, 0));
+        assertTrue(first.isEstimate(2, 0), "unroutable pair falls back to an estimate");
+        assertTrue(first.getDurationSeconds(2, 0) > 0);
+        assertTrue(firstQuery.contains("sources=0;1;2&destinations=3"), firstQuery);
+        // The routed cells are cached; only the unroutable row goes upstream again
+        assertEquals(2, tableCalls.get());
+        assertEquals(300, second.getDurationSeconds(1, 0));
+        assertTrue(lastQuery.get().contains("sources=0&destinations=1"), lastQuery.get());
+    }
+
+    @Test
+    void localGraphAnswersWhenOsrmIsDown() {
+        LocalRoutingEngine engine = new LocalRoutingEngine("", 4, 2);
+        engine.use(line(10));
+        DistanceMatrixService matrices = service("http://127.0.0.1:1/route/v1/driving", engine);
+
+        DistanceMatrixService.Matrix matrix = matrices.compute(
+                new double[]{17.400, 17.403}, new double[]{78.4, 78.4},
+                new double[]{17.409, 17.405}, new double[]{78.4, 78.4}).join();
+
+        assertFalse(matrix.isEstimate(0, 0));
+        assertEquals(90, matrix.getDurationSeconds(0, 0), 1e-6);
+        assertEquals(20, matrix.getDurationSeconds(1, 1), 1e-6);
+        assertEquals(200, matrix.getDistanceMeters(1, 1), 1e-6);
+    }
+
+    @Test
+    void everythingDownFallsBackToHaversine() {
+        DistanceMatrixService matrices = service("http://127.0.0.1:1/route/v1/driving", new LocalRoutingEngine("", 8, 2));
+
+        DistanceMatrixService.Matrix matrix = matrices.toPoint(new double[]{17.40}, new double[]{78.40}, 17.41, 78.40).join();
+
+        assertTrue(matrix.isEstimate(0, 0));
+        assertEquals(1112 * 1.3, matrix.getDistanceMeters(0, 0), 5);
+        assertEquals(0, matrices.getCache().size());
+    }
+
+    private static DistanceMatrixService service(String endpoint, LocalRoutingEngine engine) {
+        OsrmClient client = new OsrmClient(List.of(endpoint), 1000, 100, 3, 60_000, 200, new SimpleMeterRegistry());
+        return new DistanceMatrixService(client, engine, new ObjectMapper(), new SimpleMeterRegistry(),
+                100, 300, 3, 1500, 25, 1.3, false);
+    }
+
+    // Nodes every 0.001 degrees of latitude (~111 m) along one road, 10 s per segment
+    private static RoadGraph line(int nodes) {
+        double[] lat = new double[nodes];
+        double[] lng = new double[nodes];
+        int[] from = new int[2 * (nodes - 1)];
+        int[] to = new int[from.length];
+        double[] meters = new double[from.length];
+        double[] seconds = new double[from.length];
+        for (int i = 0; i < nodes; i++) {
+            lat[i] = 17.400 + i * 0.001;
+            lng[i] = 78.4;
+        }
+        for (int i = 0; i + 1 < nodes; i++) {
+            from[2 * i] = i; to[2 * i] = i + 1;
+            from[2 * i + 1] = i + 1; to[2 * i + 1] = i;
+            meters[2 * i] = meters[2 * i + 1] = 100;
+            seconds[2 * i] = seconds[2 * i + 1] = 10;
+        }
+        return RoadGraph.of(lat, lng, from, to, meters, seconds);
+    }
+}
@@ -0,0 +1,57 @@
+package com.apnaride.service;
+
+import com.apnaride.model.Driver;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DriverSpatialIndexTest {
+
+    private final DriverSpatialIndex drivers = new DriverSpatialIndex();
+
+    private Driver online(long id, boolean available) {
+        Driver driver = new Driver();
+        driver.setUserId(id);
+        driver.setVehicleType("Car");
+        driver.setIsOnline(true);
+        driver.setIsAvailable(available);
+        driver.setIsSuspended(false);
+        driver.setCurrentLat(17.385);
+        driver.setCurrentLng(78.486);
+        return driver;
+    }
+
+    @Test
+    void pingAfterGoingOfflineDoesNotReindexTheDriver() {
+        Driver driver = online(1L, true);
+        drivers.update(driver);
+        driver.setIsOnline(false);
+        drivers.update(driver);
+
+        assertTrue(drivers.moveTo(1L, 17.44, 78.35, LocalDateTime.now()).isEmpty());
+        assertTrue(drivers.get(1L).isEmpty());
+        assertEquals(0, drivers.size());
+        assertEquals(0, drivers.onlineCount());
+    }
+
+    @Test
+    void pingMovesTheCurrentEntryWithoutTouchingTheSavedDriver() {
+        Driver accepted = online(1L, true);
+        drivers.update(accepted);
+        accepted = online(1L, false);
+        drivers.update(accepted);
+
+        Driver moved = drivers.moveTo(1L, 17.44, 78.35, LocalDateTime.now()).orElseThrow();
+
+        assertFalse(moved.getIsAvailable());
+        assertEquals(17.44, drivers.get(1L).orElseThrow().getCurrentLat());
+        assertEquals(17.385, accepted.getCurrentLat());
+        assertEquals(1, drivers.findNearby(17.44, 78.35, 1.0, "car", false).size());
+        assertTrue(drivers.findNearby(17.385, 78.486, 1.0, "car", false).isEmpty());
+        assertEquals(0, drivers.availableCount());
+    }
+}
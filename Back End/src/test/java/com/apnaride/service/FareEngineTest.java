@@ -0,0 +1,69 @@
+package com.apnaride.service;
+
+import com.apnaride.model.FareStructure;
+import com.apnaride.repository.FareStructureRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FareEngineTest {
+
+    private final FareStructureRepository repository = Mockito.mock(FareStructureRepository.class);
+
+    private FareEngine engine() {
+        FareEngine engine = new FareEngine();
+        ReflectionTestUtils.setField(engine, "fareStructureRepository", repository);
+        ReflectionTestUtils.setField(engine, "averageSpeedKmh", 30.0);
+        return engine;
+    }
+
+    private static FareStructure row(String type, double base, double perKm, double perMinute, double minimum) {
+        FareStructure row = new FareStructure();
+        row.setVehicleType(type);
+        row.setBaseFare(base);
+        row.setPerKmRate(perKm);
+        row.setPerMinuteRate(perMinute);
+        row.setMinimumFare(minimum);
+        row.setIsActive(true);
+        return row;
+    }
+
+    @Test
+    void vehicleTypesWithoutRowsKeepBuiltInRates() {
+        Mockito.when(repository.findByIsActiveTrue()).thenReturn(List.of());
+        FareEngine engine = engine();
+        engine.reload();
+
+        assertEquals(80.0 + 12 * FareCalculator.PER_KM, engine.quote("car", 12, 24).getTotal(), 1e-9);
+        assertEquals(50.0 + 12 * FareCalculator.PER_KM, engine.quote("unknown", 12, 24).getTotal(), 1e-9);
+        assertEquals(List.of("auto", "bike", "car", "share"),
+                engine.quoteAll(5, 10).stream().map(FareEngine.Quote::getVehicleType).toList());
+    }
+
+    @Test
+    void reloadSwapsRatesAndBumpsEpochOnlyOnChange() {
+        Mockito.when(repository.findByIsActiveTrue()).thenReturn(List.of(row("Car", 100, 12, 2, 0)));
+        FareEngine engine = engine();
+        engine.reload();
+        long epoch = engine.getEpoch();
+
+        // 30 km/h: 15 km is 30 minutes
+        FareEngine.Quote quote = engine.quote("car", 15, engine.estimatedMinutes(15));
+        assertEquals(100 + 15 * 12 + 30 * 2, quote.getTotal(), 1e-9);
+        assertEquals(epoch, quote.getEpoch());
+
+        engine.reload();
+        assertEquals(epoch, engine.getEpoch());
+
+        Mockito.when(repository.findByIsActiveTrue()).thenReturn(List.of(row("car", 100, 12, 2, 500), row("suv", 150, 18, 3, 0)));
+        engine.reload();
+        assertEquals(epoch + 1, engine.getEpoch());
+        assertEquals(500.0, engine.quote("CAR", 1, 2).getTotal(), 1e-9);
+        assertTrue(engine.quoteAll(1, 2).stream().anyMatch(q -> q.getVehicleType().equals("suv")));
+    }
+}
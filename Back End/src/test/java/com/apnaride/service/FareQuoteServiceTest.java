@@ -0,0 +1,76 @@
+package com.apnaride.service;
+
+import com.apnaride.model.FareStructure;
+import com.apnaride.repository.FareStructureRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class FareQuoteServiceTest {
+
+    private final FareStructureRepository repository = Mockito.mock(FareStructureRepository.class);
+    private final FareEngine engine = new FareEngine();
+    private final FareQuoteService quotes;
+
+    FareQuoteServiceTest() {
+        ReflectionTestUtils.setField(engine, "fareStructureRepository", repository);
+        ReflectionTestUtils.setField(engine, "averageSpeedKmh", 25.0);
+        Mockito.when(repository.findByIsActiveTrue()).thenReturn(List.of());
+        engine.reload();
+        quotes = new FareQuoteService(engine, new SurgeEngine(), new SimpleMeterRegistry(), 100, 60, 3);
+    }
+
+    @Test
+    void pinsInTheSameCellsShareOneQuote() {
+        FareEngine.Quote first = quotes.quote("car", 17.38512, 78.48671, 17.44011, 78.34892);
+        FareEngine.Quote nudged = quotes.quote("car", 17.38521, 78.48660, 17.44019, 78.34881);
+        assertSame(first, nudged);
+
+        FareEngine.Quote elsewhere = quotes.quote("car", 17.39012, 78.48671, 17.44011, 78.34892);
+        assertNotEquals(first.getTotal(), elsewhere.getTotal());
+        assertEquals(4, quotes.quoteAll(17.38512, 78.48671, 17.44011, 78.34892).size());
+        assertEquals(2.0 / 7.0, quotes.getCache().hitRatio(), 1e-9);
+    }
+
+    @Test
+    void rateChangeStartsANewEpochAndDropsCachedQuotes() {
+        FareEngine.Quote before = quotes.quote("car", 17.385, 78.486, 17.440, 78.348);
+
+        FareStructure car = new FareStructure();
+        car.setVehicleType("car");
+        car.setBaseFare(200.0);
+        car.setPerKmRate(20.0);
+        car.setIsActive(true);
+        Mockito.when(repository.findByIsActiveTrue()).thenReturn(List.of(car));
+        engine.reload();
+
+        FareEngine.Quote after = quotes.quote("car", 17.385, 78.486, 17.440, 78.348);
+        assertEquals(before.getEpoch() + 1, after.getEpoch());
+        assertEquals(200.0 + after.getDistanceKm() * 20.0, after.getTotal(), 1e-9);
+        assertEquals(1, quotes.getCache().size());
+    }
+
+    @Test
+    void surgeIsAppliedPerCellWithoutDroppingCachedQuotes() {
+        SurgeEngine surge = Mockito.mock(SurgeEngine.class);
+        Mockito.when(surge.multiplier(Mockito.anyDouble(), Mockito.anyDouble(), Mockito.any())).thenReturn(1.0);
+        FareQuoteService surged = new FareQuoteService(engine, surge, new SimpleMeterRegistry(), 100, 60, 3);
+        FareEngine.Quote calm = surged.quote("car", 17.385, 78.486, 17.440, 78.348);
+        surged.quote("car", 17.500, 78.486, 17.440, 78.348);
+
+        // The pickup cell heats up: its quote is surged from the cached one, nothing is evicted
+        Mockito.when(surge.multiplier(Mockito.eq(17.385), Mockito.eq(78.486), Mockito.any())).thenReturn(1.5);
+        FareEngine.Quote hot = surged.quote("car", 17.385, 78.486, 17.440, 78.348);
+        assertEquals(1.5, hot.getSurgeMultiplier());
+        assertEquals(calm.getTotal() * 1.5, hot.getTotal(), 1e-9);
+        assertEquals(2, surged.getCache().size());
+        assertEquals(1.0 / 3.0, surged.getCache().hitRatio(), 1e-9);
+    }
+}
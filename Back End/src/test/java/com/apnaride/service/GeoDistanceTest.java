@@ -0,0 +1,49 @@
+package com.apnaride.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeoDistanceTest {
+
+    @Test
+    void haversineMatchesKnownDistances() {
+        // One degree of latitude, and Hyderabad to Bengaluru
+        assertEquals(111.195, GeoDistance.haversineKm(17.0, 78.0, 18.0, 78.0), 0.01);
+        assertEquals(499.6, GeoDistance.haversineKm(17.385, 78.4867, 12.9716, 77.5946), 1.0);
+        double cos1 = GeoDistance.cosLat(17.385);
+        double cos2 = GeoDistance.cosLat(12.9716);
+        assertEquals(GeoDistance.haversineKm(17.385, 78.4867, 12.9716, 77.5946),
+                GeoDistance.haversineKm(17.385, 78.4867, cos1, 12.9716, 77.5946, cos2), 1e-9);
+    }
+
+    @Test
+    void equirectangularIsCloseWithinCityRange() {
+        Random random = new Random(5);
+        for (int i = 0; i < 1000; i++) {
+            double lat = 17.385 + (random.nextDouble() - 0.5) * 0.4;
+            double lng = 78.486 + (random.nextDouble() - 0.5) * 0.4;
+            double exact = GeoDistance.haversineKm(17.385, 78.486, lat, lng);
+            double approx = GeoDistance.equirectangularKm(17.385, 78.486, lat, lng);
+            assertTrue(Math.abs(exact - approx) <= exact * 0.001 + 1e-6, exact + " vs " + approx);
+        }
+    }
+
+    @Test
+    void radiusQueriesKeepPointsOnTheBoundary() {
+        GeoCellIndex<Long> index = new GeoCellIndex<>(0.02);
+        Random random = new Random(9);
+        for (long id = 0; id < 2000; id++) {
+            index.put(id, "car", 17.385 + (random.nextDouble() - 0.5) * 0.3, 78.486 + (random.nextDouble() - 0.5) * 0.3, id);
+        }
+        long expected = 0;
+        for (long id = 0; id < 2000; id++) {
+            GeoCellIndex.Entry<Long> e = index.get(id);
+            if (GeoDistance.haversineKm(17.385, 78.486, e.getLat(), e.getLng()) <= 7.5) expected++;
+        }
+        assertEquals(expected, index.within(17.385, 78.486, 7.5, null, v -> true).size());
+    }
+}
@@ -0,0 +1,46 @@
+package com.apnaride.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InMemoryOtpStoreTest {
+
+    private InMemoryOtpStore store(long ttlSeconds, int maxEntries) {
+        return new InMemoryOtpStore(ttlSeconds, 60, 3, maxEntries, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void codeIsConsumedByFirstSuccessfulVerify() {
+        InMemoryOtpStore store = store(300, 10);
+        assertEquals(OtpStore.IssueResult.Status.ISSUED, store.issue("9876543210", "123456").getStatus());
+        assertEquals(OtpStore.VerifyResult.INVALID, store.verify("9876543210", "000000"));
+        assertEquals(OtpStore.VerifyResult.VALID, store.verify("9876543210", "123456"));
+        assertEquals(OtpStore.VerifyResult.EXPIRED, store.verify("9876543210", "123456"));
+    }
+
+    @Test
+    void resendIsThrottledAndAttemptsAreLimited() {
+        InMemoryOtpStore store = store(300, 10);
+        store.issue("9876543210", "123456");
+        assertEquals(OtpStore.IssueResult.Status.COOLDOWN, store.issue("9876543210", "654321").getStatus());
+        for (int i = 0; i < 3; i++) {
+            store.verify("9876543210", "000000");
+        }
+        assertEquals(OtpStore.VerifyResult.LOCKED, store.verify("9876543210", "123456"));
+    }
+
+    @Test
+    void capacityIsBoundedAndExpiredCodesAreSwept() throws InterruptedException {
+        InMemoryOtpStore store = store(1, 2);
+        store.issue("1", "111111");
+        store.issue("2", "222222");
+        assertEquals(OtpStore.IssueResult.Status.FULL, store.issue("3", "333333").getStatus());
+
+        Thread.sleep(2100);
+        store.sweep();
+        assertEquals(0, store.size());
+        assertEquals(OtpStore.IssueResult.Status.ISSUED, store.issue("3", "333333").getStatus());
+    }
+}
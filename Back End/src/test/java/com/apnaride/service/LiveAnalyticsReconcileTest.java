@@ -0,0 +1,73 @@
+package com.apnaride.service;
+
+import com.apnaride.ApnarideBackendApplication;
+import com.apnaride.model.Ride;
+import com.apnaride.repository.RideRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Reconcile must rebuild the whole retained per-day window, not just today.
+ */
+@SpringBootTest(classes = ApnarideBackendApplication.class)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:analytics-reconcile;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+class LiveAnalyticsReconcileTest {
+
+    @Autowired
+    private LiveAnalyticsService liveAnalyticsService;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reconcileKeepsPastDays() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate threeDaysAgo = now.toLocalDate().minusDays(3);
+        LocalDateTime longAgo = now.minusDays(60); // outside the retained window
+        rideRepository.saveAll(List.of(
+                completed(threeDaysAgo.atTime(9, 0), threeDaysAgo.atTime(9, 30), 120.0),
+                completed(threeDaysAgo.atTime(18, 0), threeDaysAgo.atTime(18, 20), 80.0),
+                completed(now.toLocalDate().atStartOfDay(), now.toLocalDate().atStartOfDay(), 60.0),
+                completed(longAgo, longAgo, 999.0)));
+
+        liveAnalyticsService.reconcile();
+
+        Map<String, Object> snapshot = liveAnalyticsService.snapshot();
+        Map<String, Double> revenueByDay = (Map<String, Double>) snapshot.get("revenueByDay");
+        assertEquals(200.0, revenueByDay.get(threeDaysAgo.toString()), 0.001);
+        assertEquals(60.0, revenueByDay.get(now.toLocalDate().toString()), 0.001);
+        assertFalse(revenueByDay.containsKey(longAgo.toLocalDate().toString()));
+        assertEquals(1L, snapshot.get("todayRides"));
+        assertEquals(4L, snapshot.get("totalRides"));
+    }
+
+    private Ride completed(LocalDateTime requestedAt, LocalDateTime completedAt, double fare) {
+        Ride ride = new Ride();
+        ride.setCustomerId(1L);
+        ride.setVehicleType("car");
+        ride.setFare(fare);
+        ride.setStatus("COMPLETED");
+        ride.setRequestedAt(requestedAt);
+        ride.setCompletedAt(completedAt);
+        return ride;
+    }
+}
@@ -0,0 +1,95 @@
+package com.apnaride.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MinCostAssignmentTest {
+
+    @Test
+    void matchesBruteForceOnSmallRectangularProblems() {
+        Random random = new Random(11);
+        for (int trial = 0; trial < 200; trial++) {
+            int rows = 1 + random.nextInt(5);
+            int cols = 1 + random.nextInt(5);
+            double[][] cost = new double[rows][cols];
+            for (double[] row : cost) {
+                for (int j = 0; j < cols; j++) {
+                    row[j] = random.nextInt(8) == 0 ? Double.POSITIVE_INFINITY : random.nextDouble() * 10;
+                }
+            }
+            int[] match = MinCostAssignment.solve(cost);
+            double[] best = bruteForce(cost, 0, new boolean[cols]);
+            assertEquals(best[0], assigned(match), "pairs in trial " + trial);
+            assertEquals(best[1], MinCostAssignment.totalCost(cost, match), 1e-9, "cost in trial " + trial);
+            boolean[] used = new boolean[cols];
+            for (int c : match) {
+                if (c >= 0) {
+                    assertTrue(!used[c], "driver offered twice in trial " + trial);
+                    used[c] = true;
+                }
+            }
+        }
+    }
+
+    @Test
+    void beatsGreedyWhenTheNearestDriverIsBetterSpentElsewhere() {
+        // Ride 0 grabs driver 0 greedily and leaves ride 1 with a 9 km pickup
+        double[][] cost = {
+                {1.0, 2.0},
+                {1.5, 9.0}
+        };
+        assertArrayEquals(new int[]{0, 1}, MinCostAssignment.greedy(cost));
+        assertArrayEquals(new int[]{1, 0}, MinCostAssignment.solve(cost));
+        assertEquals(3.5, MinCostAssignment.totalCost(cost, MinCostAssignment.solve(cost)), 1e-9);
+    }
+
+    @Test
+    void ridesWithoutAnyAllowedDriverStayUnassigned() {
+        double inf = Double.POSITIVE_INFINITY;
+        double[][] cost = {
+                {inf, inf},
+                {3.0, inf},
+                {1.0, 2.0}
+        };
+        assertArrayEquals(new int[]{-1, 0, 1}, MinCostAssignment.solve(cost));
+        assertArrayEquals(new int[0], MinCostAssignment.solve(new double[0][0]));
+    }
+
+    /**
+     * {most pairs, least cost among those} over every assignment
+     */
+    private static double[] bruteForce(double[][] cost, int row, boolean[] used) {
+        if (row == cost.length) {
+            return new double[]{0, 0};
+        }
+        double[] best = bruteForce(cost, row + 1, used); // leave this row unassigned
+        for (int j = 0; j < used.length; j++) {
+            if (!used[j] && cost[row][j] < Double.POSITIVE_INFINITY) {
+                used[j] = true;
+                double[] rest = bruteForce(cost, row + 1, used);
+                used[j] = false;
+                double pairs = rest[0] + 1;
+                double total = rest[1] + cost[row][j];
+                if (pairs > best[0] || (pairs == best[0] && total < best[1] - 1e-12)) {
+                    best = new double[]{pairs, total};
+                }
+            }
+        }
+        return best;
+    }
+
+    private static double assigned(int[] match) {
+        int n = 0;
+        for (int c : match) {
+            if (c >= 0) {
+                n++;
+            }
+        }
+        return n;
+    }
+}
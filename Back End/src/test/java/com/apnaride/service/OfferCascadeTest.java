@@ -0,0 +1,98 @@
+package com.apnaride.service;
+
+import com.apnaride.controller.WebSocketController;
+import com.apnaride.dto.RideResponse;
+import com.apnaride.model.Driver;
+import com.apnaride.model.Ride;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class OfferCascadeTest {
+
+    private final DriverSpatialIndex drivers = new DriverSpatialIndex();
+    private final OpenRideIndex openRides = new OpenRideIndex();
+    private final RideMatchingService matching = Mockito.mock(RideMatchingService.class);
+    private final WebSocketController webSocket = Mockito.mock(WebSocketController.class);
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final OfferCascade cascade = new OfferCascade(matching, drivers, openRides, webSocket,
+            new StompSubscriptionRegistry(), meters, 50, 5, 10);
+    private final AtomicInteger exhausted = new AtomicInteger();
+
+    private Driver driver(long id) {
+        Driver driver = new Driver();
+        driver.setUserId(id);
+        driver.setVehicleType("Car");
+        driver.setIsOnline(true);
+        driver.setIsAvailable(true);
+        driver.setIsSuspended(false);
+        driver.setCurrentLat(17.385);
+        driver.setCurrentLng(78.486);
+        drivers.update(driver);
+        return driver;
+    }
+
+    private Ride start(Driver... ranked) {
+        Ride ride = new Ride();
+        ride.setId(7L);
+        ride.setBookingId("BK-7");
+        ride.setVehicleType("Car");
+        ride.setStatus("REQUESTED");
+        ride.setPickupLat(17.386);
+        ride.setPickupLng(78.487);
+        openRides.update(ride);
+        Mockito.when(matching.rankCandidates(any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(List.of(ranked)));
+        cascade.start(ride, new RideResponse(), exhausted::incrementAndGet);
+        return ride;
+    }
+
+    @Test
+    void offersOneDriverAtATimeAndStopsOnAccept() {
+        Ride ride = start(driver(1), driver(2), driver(3));
+        verify(webSocket).sendRideRequest(eq(1L), any());
+        verify(webSocket, never()).sendRideRequest(eq(2L), any());
+
+        // Driver 1 drops off the ride-request queue: the offer moves on without waiting for the timeout
+        cascade.onDriverGone(1L);
+        verify(webSocket).sendRideRequest(eq(2L), any());
+
+        ride.setStatus("ACCEPTED");
+        openRides.update(ride);
+        cascade.onRideClosed(ride);
+        assertEquals(0, cascade.outstandingOffers());
+        assertEquals(1, meters.timer("apnaride.dispatch.cascade.time-to-accept").count());
+        assertEquals(2.0, meters.summary("apnaride.dispatch.cascade.offers-per-ride").totalAmount());
+        verify(webSocket, never()).sendRideRequest(eq(3L), any());
+        assertEquals(0, exhausted.get());
+    }
+
+    @Test
+    void unansweredOffersTimeOutDownTheListAndThenFallBack() throws InterruptedException {
+        Driver busy = driver(2);
+        busy.setIsAvailable(false);
+        drivers.update(busy);
+        start(driver(1), busy, driver(3));
+
+        for (int i = 0; i < 2; i++) {
+            Thread.sleep(80);
+            cascade.sweep();
+        }
+        verify(webSocket).sendRideRequest(eq(1L), any());
+        verify(webSocket, never()).sendRideRequest(eq(2L), any());
+        verify(webSocket).sendRideRequest(eq(3L), any());
+        assertEquals(2.0, meters.counter("apnaride.dispatch.cascade.expired").count());
+        assertEquals(1, exhausted.get());
+        assertEquals(0, cascade.outstandingOffers());
+    }
+}
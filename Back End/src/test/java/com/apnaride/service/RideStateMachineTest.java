@@ -0,0 +1,119 @@
+package com.apnaride.service;
+
+import com.apnaride.controller.WebSocketController;
+import com.apnaride.dto.RideResponse;
+import com.apnaride.dto.RideUpdate;
+import com.apnaride.model.Ride;
+import com.apnaride.model.RideStatus;
+import com.apnaride.repository.RideRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class RideStateMachineTest {
+
+    private final RideRepository rides = Mockito.mock(RideRepository.class);
+    private final OpenRideIndex openRides = new OpenRideIndex();
+    private final LiveAnalyticsService analytics = Mockito.mock(LiveAnalyticsService.class);
+    private final OfferCascade cascade = Mockito.mock(OfferCascade.class);
+    private final WebSocketController webSocket = Mockito.mock(WebSocketController.class);
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final RideStateMachine machine = new RideStateMachine(rides, openRides, analytics, cascade, webSocket, meters);
+
+    private Ride ride(String status) {
+        Ride ride = new Ride();
+        ride.setId(3L);
+        ride.setBookingId("BK-3");
+        ride.setCustomerId(1L);
+        ride.setVehicleType("Car");
+        ride.setStatus(status);
+        ride.setPickupLat(17.385);
+        ride.setPickupLng(78.486);
+        return ride;
+    }
+
+    @Test
+    void transitionTableAllowsOnlyForwardMoves() {
+        assertTrue(RideStateMachine.canTransition(RideStatus.REQUESTED, RideStatus.ACCEPTED));
+        assertTrue(RideStateMachine.canTransition(RideStatus.ACCEPTED, RideStatus.IN_PROGRESS));
+        assertTrue(RideStateMachine.canTransition(RideStatus.IN_PROGRESS, RideStatus.COMPLETED));
+        assertFalse(RideStateMachine.canTransition(RideStatus.REQUESTED, RideStatus.COMPLETED));
+        assertFalse(RideStateMachine.canTransition(RideStatus.IN_PROGRESS, RideStatus.ACCEPTED));
+        for (RideStatus to : RideStatus.values()) {
+            assertFalse(RideStateMachine.canTransition(RideStatus.COMPLETED, to));
+            assertFalse(RideStateMachine.canTransition(RideStatus.CANCELLED, to));
+        }
+        assertNull(RideStatus.of("BOGUS"));
+    }
+
+    @Test
+    void acceptIsOneConditionalWriteThenHooksInOrder() {
+        Ride ride = ride("REQUESTED");
+        openRides.update(ride);
+        when(rides.transition(eq(3L), eq("REQUESTED"), eq("ACCEPTED"), eq(9L), eq("1234"), any(), isNull())).thenReturn(1);
+        List<String> seen = new ArrayList<>();
+        machine.addHook((from, to, r) -> seen.add(from + "->" + to + " indexed=" + openRides.isOpen(r.getId())));
+
+        assertEquals(RideStateMachine.Outcome.APPLIED, machine.accept(ride, 9L, "1234"));
+
+        assertEquals("ACCEPTED", ride.getStatus());
+        assertEquals(9L, ride.getRiderId());
+        assertNotNull(ride.getAcceptedAt());
+        assertEquals(List.of("REQUESTED->ACCEPTED indexed=false"), seen);
+        verify(analytics).onTransition("REQUESTED", ride);
+        verify(cascade).onRideClosed(ride);
+        verify(rides, never()).findByBookingId(any());
+        verify(rides, never()).save(any());
+        // The accepting endpoint announces accepts itself
+        verifyNoInteractions(webSocket);
+        assertEquals(1.0, meters.counter("apnaride.ride.transitions", "from", "REQUESTED", "to", "ACCEPTED").count());
+    }
+
+    @Test
+    void staleAndIllegalMovesLeaveTheRideAndHooksAlone() {
+        Ride stale = ride("ACCEPTED");
+        when(rides.transition(eq(3L), eq("ACCEPTED"), eq("CANCELLED"), isNull(), isNull(), isNull(), isNull())).thenReturn(0);
+        assertEquals(RideStateMachine.Outcome.STALE, machine.transition(stale, RideStatus.CANCELLED));
+        assertEquals("ACCEPTED", stale.getStatus());
+
+        Ride done = ride("COMPLETED");
+        assertEquals(RideStateMachine.Outcome.ILLEGAL, machine.transition(done, RideStatus.CANCELLED));
+        verify(rides, never()).transition(anyLong(), eq("COMPLETED"), any(), any(), any(), any(), any());
+
+        verifyNoInteractions(analytics, cascade, webSocket);
+    }
+
+    @Test
+    void cancellingAnAcceptedRideTellsCustomerAndDriver() {
+        Ride ride = ride("ACCEPTED");
+        ride.setRiderId(9L);
+        when(rides.transition(eq(3L), eq("ACCEPTED"), eq("CANCELLED"), isNull(), isNull(), isNull(), isNull())).thenReturn(1);
+
+        assertEquals(RideStateMachine.Outcome.APPLIED, machine.transition(ride, RideStatus.CANCELLED));
+
+        ArgumentCaptor<RideUpdate> update = ArgumentCaptor.forClass(RideUpdate.class);
+        verify(webSocket).sendRideUpdate(eq(1L), update.capture());
+        verify(webSocket).sendRideUpdate(eq(9L), any());
+        assertEquals("RIDE_CANCELLED", update.getValue().getType());
+        assertEquals(9L, ((RideResponse) update.getValue().getRide()).getDriverId());
+        verify(cascade, never()).onRideClosed(any());
+    }
+}
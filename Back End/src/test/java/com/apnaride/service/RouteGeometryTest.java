@@ -0,0 +1,43 @@
+package com.apnaride.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RouteGeometryTest {
+
+    @Test
+    void encodesReferencePolyline() {
+        double[] lats = {38.5, 40.7, 43.252};
+        double[] lngs = {-120.2, -120.95, -126.453};
+        assertEquals("_p~iF~ps|U_ulLnnqC_mqNvxq`@", RouteGeometry.encode(lats, lngs, null));
+
+        double[][] decoded = RouteGeometry.decode("_p~iF~ps|U_ulLnnqC_mqNvxq`@");
+        assertArrayEquals(lats, decoded[0], 1e-9);
+        assertArrayEquals(lngs, decoded[1], 1e-9);
+    }
+
+    @Test
+    void simplificationDropsPointsWithinTolerance() {
+        // ~11 km straight east with 1 m of jitter, plus one 200 m detour in the middle
+        int n = 1001;
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        for (int i = 0; i < n; i++) {
+            lats[i] = 17.4 + (i % 2 == 0 ? 0 : 0.00001);
+            lngs[i] = 78.4 + i * 0.0001;
+        }
+        lats[500] += 0.002;
+
+        int[] kept = RouteGeometry.simplify(lats, lngs, 5);
+
+        assertTrue(kept.length < 10, "kept " + kept.length);
+        assertEquals(0, kept[0]);
+        assertEquals(n - 1, kept[kept.length - 1]);
+        assertTrue(Arrays.stream(kept).anyMatch(i -> i == 500), "detour must survive");
+    }
+}
@@ -0,0 +1,136 @@
+package com.apnaride.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * RouteService against a local OSRM stub with a slow, a fast and a failing endpoint
+ */
+class RouteServiceTest {
+
+    private HttpServer stub;
+    private final AtomicInteger slowCalls = new AtomicInteger();
+    private final AtomicInteger fastCalls = new AtomicInteger();
+    private final AtomicInteger downCalls = new AtomicInteger();
+
+    @BeforeEach
+    void startStub() throws IOException {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.setExecutor(Executors.newCachedThreadPool());
+        stub.createContext("/slow/route/v1/driving", exchange -> {
+            slowCalls.incrementAndGet();
+            sleep(1500);
+            respond(exchange, 200, "{\"code\":\"Ok\",\"from\":\"slow\"}");
+        });
+        stub.createContext("/fast/route/v1/driving", exchange -> {
+            fastCalls.incrementAndGet();
+            respond(exchange, 200, "{\"code\":\"Ok\",\"from\":\"fast\"}");
+        });
+        stub.createContext("/down/route/v1/driving", exchange -> {
+            downCalls.incrementAndGet();
+            respond(exchange, 503, "unavailable");
+        });
+        stub.start();
+    }
+
+    @AfterEach
+    void stopStub() {
+        stub.stop(0);
+    }
+
+    @Test
+    void hedgedRequestIsAnsweredByTheFasterEndpoint() {
+        RouteService routes = routeService(List.of("slow", "fast"), 50);
+        long start = System.nanoTime();
+        Object body = routes.route(17.385, 78.486, 17.44, 78.35).join();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(body.toString().contains("fast"), body.toString());
+        assertTrue(millis < 1000, "took " + millis + " ms");
+    }
+
+    @Test
+    void repeatPairsAreServedFromCache() {
+        RouteService routes = routeService(List.of("fast"), 50);
+        routes.route(17.38501, 78.48601, 17.44, 78.35).join();
+        routes.route(17.38503, 78.48598, 17.44002, 78.35001).join(); // same ~11 m cell
+
+        assertEquals(1, fastCalls.get());
+        assertEquals(1, routes.getCache().hitCount());
+    }
+
+    @Test
+    void failingEndpointIsSkippedOnceItsBreakerOpens() {
+        RouteService routes = routeService(List.of("down", "fast"), 1000);
+        for (int i = 0; i < 5; i++) {
+            Object body = routes.route(17.0 + i, 78.0, 17.5, 78.5).join();
+            assertTrue(body.toString().contains("fast"));
+        }
+        assertEquals(2, downCalls.get()); // threshold reached, later calls go straight to "fast"
+    }
+
+    @Test
+    void straightLineWhenNoEndpointAnswers() {
+        RouteService routes = routeService(List.of("down"), 50);
+        Object body = routes.route(17.385, 78.486, 17.44, 78.35).join();
+
+        assertInstanceOf(Map.class, body);
+        assertEquals(0, routes.getCache().size());
+    }
+
+    @Test
+    void compactModeEncodesGeometryAsPolyline() {
+        RouteService routes = routeService(List.of("down"), 50);
+        ObjectNode body = routes.compactRoute(17.385, 78.486, 17.44, 78.35, 5, false).join();
+
+        JsonNode route = body.path("routes").get(0);
+        assertEquals("polyline", route.path("geometryFormat").asText());
+        assertEquals(2, RouteGeometry.decode(route.path("geometry").asText())[0].length);
+        assertTrue(route.path("legs").isMissingNode());
+    }
+
+    private RouteService routeService(List<String> names, long hedgeDelayMillis) {
+        String base = "http://127.0.0.1:" + stub.getAddress().getPort() + "/";
+        List<String> endpoints = names.stream().map(name -> base + name + "/route/v1/driving").toList();
+        OsrmClient client = new OsrmClient(endpoints, 3000, hedgeDelayMillis, 2, 60_000, 200, new SimpleMeterRegistry());
+        return new RouteService(client, new LocalRoutingEngine("", 16, 2), new ObjectMapper(), new SimpleMeterRegistry(), 100, 600, 4, false);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        } catch (IOException ignore) {
+            // client cancelled the hedged loser
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.apnaride.service;
+
+import com.apnaride.model.Driver;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SurgeEngineTest {
+
+    private final DriverSpatialIndex drivers = new DriverSpatialIndex();
+    private final SurgeEngine surge = new SurgeEngine();
+
+    SurgeEngineTest() {
+        ReflectionTestUtils.setField(surge, "driverSpatialIndex", drivers);
+        ReflectionTestUtils.setField(surge, "subscriptionRegistry", Mockito.mock(StompSubscriptionRegistry.class));
+        ReflectionTestUtils.setField(surge, "enabled", true);
+        ReflectionTestUtils.setField(surge, "cellDegrees", 0.02);
+        ReflectionTestUtils.setField(surge, "windowTicks", 4);
+        ReflectionTestUtils.setField(surge, "sensitivity", 0.5);
+        ReflectionTestUtils.setField(surge, "maxMultiplier", 2.5);
+        ReflectionTestUtils.setField(surge, "smoothing", 0.5);
+        ReflectionTestUtils.setField(surge, "step", 0.1);
+    }
+
+    private void driverAt(long id, double lat, double lng) {
+        Driver driver = new Driver();
+        driver.setUserId(id);
+        driver.setVehicleType("Car");
+        driver.setIsOnline(true);
+        driver.setIsAvailable(true);
+        driver.setIsSuspended(false);
+        driver.setCurrentLat(lat);
+        driver.setCurrentLng(lng);
+        drivers.update(driver);
+    }
+
+    @Test
+    void demandAboveSupplyRaisesTheCellSmoothlyAndDecaysWhenItStops() {
+        driverAt(1, 17.385, 78.486);
+        for (int i = 0; i < 5; i++) {
+            surge.recordRequest(17.386, 78.487, "car");
+        }
+        surge.tick();
+        // 5 requests for 1 driver: target 1 + 0.5 * 4 = 2.5, half way there after one tick
+        assertEquals(1.8, surge.multiplier(17.3855, 78.4865, "car"), 1e-9);
+        assertEquals(1.0, surge.multiplier(17.3855, 78.4865, "bike"), 1e-9);
+        assertEquals(1.0, surge.multiplier(17.445, 78.486, "car"), 1e-9);
+        assertEquals(1, surge.getEpoch());
+
+        surge.tick();
+        assertEquals(2.1, surge.multiplier(17.385, 78.486, "car"), 1e-9);
+        assertEquals(1, surge.getZones().size());
+
+        // The requests leave the 4-tick window and the multiplier eases back to 1.0
+        for (int i = 0; i < 10; i++) {
+            surge.tick();
+        }
+        assertEquals(1.0, surge.multiplier(17.385, 78.486, "car"), 1e-9);
+        assertTrue(surge.getZones().isEmpty());
+    }
+
+    @Test
+    void aCellAppearingAfterTheWindowIsFullIsNotDilutedByEmptyBuckets() {
+        for (int i = 0; i < 6; i++) {
+            surge.tick();
+        }
+        // 4 requests for 4 drivers in a cell first seen now: balanced, no surge
+        for (int id = 1; id <= 4; id++) {
+            driverAt(id, 17.385, 78.486);
+            surge.recordRequest(17.386, 78.487, "car");
+        }
+        surge.tick();
+        assertEquals(1.0, surge.multiplier(17.385, 78.486, "car"), 1e-9);
+        assertTrue(surge.getZones().isEmpty());
+        assertEquals(0, surge.getEpoch());
+    }
+
+    @Test
+    void unchangedMultipliersKeepTheEpoch() {
+        driverAt(1, 17.385, 78.486);
+        surge.recordRequest(17.386, 78.487, "car");
+        surge.tick();
+        surge.tick();
+        assertEquals(0, surge.getEpoch());
+    }
+}
@@ -1,6 +1,7 @@
 import React, { useState, useEffect } from 'react';
 import { useNavigate } from 'react-router-dom';
 import { useLanguage } from '../../context/LanguageContext';
+import webSocketService from '../../services/webSocketService';
 import '../../App.css';
 
 const API_BASE = (typeof import.meta !== 'undefined' && import.meta.env && import.meta.env.VITE_API_BASE)
@@ -33,6 +34,13 @@ export default function EnhancedAdminDashboard() {
         }
     }, [navigate]);
 
+    // Live analytics: the backend pushes fresh counters, so no polling is needed
+    useEffect(() => {
+        webSocketService.connect();
+        webSocketService.subscribeToAdminAnalytics((data) => setAnalytics(data));
+        return () => webSocketService.unsubscribe('admin-analytics');
+    }, []);
+
     const loadAnalytics = async () => {
         setLoading(true);
         try {
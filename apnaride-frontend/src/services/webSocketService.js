@@ -119,6 +119,25 @@ class WebSocketService {
         return subscription;
     }
 
+    // Subscribe to live admin analytics (pushed by the backend at a fixed cadence)
+    subscribeToAdminAnalytics(callback) {
+        const dest = '/topic/admin/analytics';
+        const key = 'admin-analytics';
+        if (!this.connected) {
+            console.warn('WebSocket not connected yet, queuing subscription', dest);
+            this.pendingSubs.push({ dest, cb: callback, key });
+            return null;
+        }
+
+        const subscription = this.stompClient.subscribe(dest, (message) => {
+            const data = JSON.parse(message.body);
+            callback(data);
+        });
+
+        this.subscriptions[key] = subscription;
+        return subscription;
+    }
+
     // Subscribe to chat messages for a specific ride
     subscribeToChat(rideId, callback) {
         if (!this.connected) {
@@ -0,0 +1,64 @@
+package com.apnaride.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Blocking JSON REST calls; each call's latency is recorded as rest.&lt;name&gt;
+ */
+final class ApiClient {
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final String baseUrl;
+    private final Metrics metrics;
+
+    ApiClient(String baseUrl, Metrics metrics) {
+        this.baseUrl = baseUrl;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Response body, or null on a non-2xx status or an I/O failure (counted as rest.&lt;name&gt;.error)
+     */
+    JsonNode post(String name, String path, Object body) {
+        return send(name, "POST", path, body);
+    }
+
+    JsonNode put(String name, String path, Object body) {
+        return send(name, "PUT", path, body);
+    }
+
+    private JsonNode send(String name, String method, String path, Object body) {
+        long start = System.nanoTime();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                            : HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)))
+                    .build();
+            HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            metrics.recordNanos("rest." + name, System.nanoTime() - start);
+            metrics.increment("rest.requests");
+            if (response.statusCode() / 100 != 2) {
+                metrics.increment("rest." + name + ".error");
+                return null;
+            }
+            byte[] bytes = response.body();
+            return bytes.length == 0 ? mapper.nullNode() : mapper.readTree(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            metrics.increment("rest." + name + ".error");
+            return null;
+        }
+    }
+}
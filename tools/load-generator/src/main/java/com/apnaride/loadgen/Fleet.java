@@ -0,0 +1,71 @@
+package com.apnaride.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * State shared between simulated drivers and customers. Offers and ride updates can arrive
+ * before the REST call that caused them returns, so both sides meet on per-booking entries.
+ */
+final class Fleet {
+
+    final Options options;
+    final Metrics metrics;
+    final ApiClient api;
+    final ScheduledExecutorService scheduler;
+    volatile boolean running = true;
+
+    // bookingId -> nanoTime the first driver received the offer
+    private final Map<String, Long> firstOfferAt = new ConcurrentHashMap<>();
+    // bookingId -> nanoTime a driver started the winning accept call
+    private final Map<String, Long> acceptStartedAt = new ConcurrentHashMap<>();
+    // "<bookingId>/<type>" -> (nanoTime received, update)
+    private final Map<String, CompletableFuture<Received>> updates = new ConcurrentHashMap<>();
+
+    Fleet(Options options, Metrics metrics, ApiClient api, ScheduledExecutorService scheduler) {
+        this.options = options;
+        this.metrics = metrics;
+        this.api = api;
+        this.scheduler = scheduler;
+    }
+
+    void offerReceived(String bookingId, long nanos) {
+        firstOfferAt.putIfAbsent(bookingId, nanos);
+    }
+
+    Long firstOfferAt(String bookingId) {
+        return firstOfferAt.remove(bookingId);
+    }
+
+    void acceptStarted(String bookingId, long nanos) {
+        acceptStartedAt.put(bookingId, nanos);
+    }
+
+    Long acceptStartedAt(String bookingId) {
+        return acceptStartedAt.remove(bookingId);
+    }
+
+    CompletableFuture<Received> update(String bookingId, String type) {
+        return updates.computeIfAbsent(bookingId + "/" + type, k -> new CompletableFuture<>());
+    }
+
+    void forget(String bookingId) {
+        updates.keySet().removeIf(key -> key.startsWith(bookingId + "/"));
+        firstOfferAt.remove(bookingId);
+        acceptStartedAt.remove(bookingId);
+    }
+
+    static final class Received {
+        final long nanos;
+        final JsonNode body;
+
+        Received(long nanos, JsonNode body) {
+            this.nanos = nanos;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.apnaride.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synthetic fleet against a running backend (e.g. started with --spring.profiles.active=h2).
+ * Sets up N drivers and M customers through the public API, ramps the drivers' STOMP
+ * connections up, then measures for the configured duration and reports throughput and HDR
+ * latency histograms to stdout and to the output directory.
+ */
+public final class LoadGenerator {
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        System.out.println("Load generator: " + options);
+        Metrics metrics = new Metrics();
+        ApiClient api = new ApiClient(options.baseUrl, metrics);
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(Math.max(8, Runtime.getRuntime().availableProcessors() * 2));
+        Fleet fleet = new Fleet(options, metrics, api, scheduler);
+        String run = Long.toString(System.currentTimeMillis(), 36);
+
+        List<SimulatedDriver> drivers = setUpDrivers(fleet, run);
+        List<SimulatedCustomer> customers = setUpCustomers(fleet, run);
+        System.out.printf("Set up %d drivers and %d customers%n", drivers.size(), customers.size());
+
+        // Connect drivers evenly over the ramp-up, then start measuring
+        long rampNanos = TimeUnit.SECONDS.toNanos(options.rampUpSeconds);
+        long rampStart = System.nanoTime();
+        for (int i = 0; i < drivers.size(); i++) {
+            long due = rampStart + rampNanos * i / Math.max(1, drivers.size());
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            try {
+                drivers.get(i).start();
+            } catch (Exception e) {
+                metrics.increment("stomp.connect.error");
+            }
+        }
+        metrics.reset();
+        System.out.printf("Measuring for %d s...%n", options.durationSeconds);
+
+        ExecutorService customerThreads = Executors.newFixedThreadPool(Math.max(1, customers.size()));
+        customers.forEach(customerThreads::execute);
+        TimeUnit.SECONDS.sleep(options.durationSeconds);
+
+        fleet.running = false;
+        metrics.print(System.out);
+        metrics.write(options.outDir, options);
+        System.out.println("\nResults written to " + options.outDir.toAbsolutePath());
+
+        customerThreads.shutdownNow();
+        drivers.forEach(SimulatedDriver::stop);
+        scheduler.shutdownNow();
+        System.exit(0);
+    }
+
+    private static List<SimulatedDriver> setUpDrivers(Fleet fleet, String run) throws Exception {
+        Options o = fleet.options;
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        List<Future<SimulatedDriver>> pending = new ArrayList<>();
+        for (int i = 0; i < o.drivers; i++) {
+            int n = i;
+            pending.add(pool.submit(() -> {
+                Long id = signUp(fleet.api, "driver", "loadgen-" + run + "-d" + n);
+                if (id == null) {
+                    return null;
+                }
+                fleet.api.post("driver-register", "/api/drivers/register", Map.of(
+                        "userId", id, "vehicleType", o.vehicleType, "vehicleNumber", "LT" + run.toUpperCase() + n,
+                        "licenseNumber", "LT-DL-" + n, "city", "Loadtest"));
+                Random random = new Random(n);
+                double[] p = randomPoint(random, o.centerLat, o.centerLng, o.spreadKm);
+                JsonNode online = fleet.api.post("driver-status", "/api/drivers/" + id + "/status",
+                        Map.of("isOnline", true, "lat", p[0], "lng", p[1]));
+                return online != null ? new SimulatedDriver(fleet, id, p[0], p[1], n) : null;
+            }));
+        }
+        List<SimulatedDriver> drivers = new ArrayList<>();
+        for (Future<SimulatedDriver> f : pending) {
+            SimulatedDriver d = f.get();
+            if (d != null) drivers.add(d);
+        }
+        pool.shutdown();
+        return drivers;
+    }
+
+    private static List<SimulatedCustomer> setUpCustomers(Fleet fleet, String run) throws Exception {
+        List<SimulatedCustomer> customers = new ArrayList<>();
+        for (int i = 0; i < fleet.options.customers; i++) {
+            Long id = signUp(fleet.api, "customer", "loadgen-" + run + "-c" + i);
+            if (id == null) {
+                continue;
+            }
+            SimulatedCustomer customer = new SimulatedCustomer(fleet, id, 1000 + i);
+            customer.connect();
+            customers.add(customer);
+        }
+        return customers;
+    }
+
+    private static Long signUp(ApiClient api, String role, String handle) {
+        JsonNode user = api.post("signup", "/api/auth/signup", Map.of(
+                "name", handle, "email", handle + "@loadtest.invalid", "password", "loadtest", "role", role));
+        return user != null && user.hasNonNull("id") ? user.get("id").asLong() : null;
+    }
+
+    /**
+     * Uniform point within radiusKm of a center
+     */
+    static double[] randomPoint(Random random, double lat, double lng, double radiusKm) {
+        double r = radiusKm * Math.sqrt(random.nextDouble());
+        double angle = random.nextDouble() * 2 * Math.PI;
+        double dLat = r * Math.cos(angle) / 111.32;
+        double dLng = r * Math.sin(angle) / (111.32 * Math.cos(Math.toRadians(lat)));
+        return new double[]{lat + dLat, lng + dLng};
+    }
+}
@@ -0,0 +1,96 @@
+package com.apnaride.loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Named latency histograms (recorded in microseconds, reported in milliseconds) and counters.
+ * Only the measurement window is recorded; setup traffic is excluded by {@link #reset()}.
+ */
+final class Metrics {
+
+    private static final long MAX_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private volatile long startNanos = System.nanoTime();
+
+    void recordNanos(String name, long nanos) {
+        histogram(name).recordValue(Math.max(0, Math.min(MAX_TRACKABLE_MICROS, nanos / 1000)));
+    }
+
+    void increment(String name) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).increment();
+    }
+
+    void reset() {
+        histograms.clear();
+        counters.clear();
+        startNanos = System.nanoTime();
+    }
+
+    private Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, k -> new ConcurrentHistogram(MAX_TRACKABLE_MICROS, 3));
+    }
+
+    void print(PrintStream out) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        out.printf("%nMeasured for %.1f s%n", seconds);
+        out.printf("%-28s %10s %10s%n", "counter", "total", "per sec");
+        new TreeMap<>(counters).forEach((name, count) ->
+                out.printf("%-28s %10d %10.1f%n", name, count.sum(), count.sum() / seconds));
+        out.printf("%n%-28s %8s %9s %9s %9s %9s %9s %9s%n", "latency (ms)", "count", "mean", "p50", "p90", "p99", "p99.9", "max");
+        new TreeMap<>(histograms).forEach((name, h) -> out.printf("%-28s %8d %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                name, h.getTotalCount(), h.getMean() / 1000, ms(h, 50), ms(h, 90), ms(h, 99), ms(h, 99.9), h.getMaxValue() / 1000.0));
+    }
+
+    /**
+     * summary.json with counters, rates and percentiles, plus one .hgrm percentile distribution per histogram
+     */
+    void write(Path dir, Options options) throws IOException {
+        Files.createDirectories(dir);
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode root = mapper.createObjectNode();
+        root.put("options", options.toString());
+        root.put("seconds", seconds);
+        ObjectNode counts = root.putObject("counters");
+        new TreeMap<>(counters).forEach((name, count) -> {
+            ObjectNode c = counts.putObject(name);
+            c.put("total", count.sum());
+            c.put("perSecond", count.sum() / seconds);
+        });
+        ObjectNode latencies = root.putObject("latencyMillis");
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            Histogram h = entry.getValue();
+            ObjectNode l = latencies.putObject(entry.getKey());
+            l.put("count", h.getTotalCount());
+            l.put("mean", h.getMean() / 1000);
+            l.put("p50", ms(h, 50));
+            l.put("p90", ms(h, 90));
+            l.put("p99", ms(h, 99));
+            l.put("p999", ms(h, 99.9));
+            l.put("max", h.getMaxValue() / 1000.0);
+            try (PrintStream hgrm = new PrintStream(Files.newOutputStream(dir.resolve(entry.getKey() + ".hgrm")))) {
+                h.outputPercentileDistribution(hgrm, 1000.0);
+            }
+        }
+        mapper.writerWithDefaultPrettyPrinter().writeValue(dir.resolve("summary.json").toFile(), root);
+    }
+
+    private static double ms(Histogram h, double percentile) {
+        return h.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
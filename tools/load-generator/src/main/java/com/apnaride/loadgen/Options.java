@@ -0,0 +1,71 @@
+package com.apnaride.loadgen;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line options, all of the form --name value
+ */
+final class Options {
+
+    String baseUrl = "http://localhost:9031";
+    int drivers = 100;
+    int customers = 20;
+    int durationSeconds = 60;
+    int rampUpSeconds = 10;
+    long locationIntervalMillis = 1000;
+    long heartbeatIntervalMillis = 10_000;
+    long customerThinkMillis = 2000;
+    long tripMillis = 15_000;
+    long acceptTimeoutMillis = 30_000;
+    String vehicleType = "car";
+    double centerLat = 17.385;
+    double centerLng = 78.486;
+    double spreadKm = 8;
+    Path outDir = Path.of("target", "loadgen-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+
+    static Options parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --name value, got: " + args[i]);
+            }
+            values.put(args[i].substring(2), args[++i]);
+        }
+        Options o = new Options();
+        o.baseUrl = values.getOrDefault("base-url", o.baseUrl).replaceAll("/+$", "");
+        o.drivers = Integer.parseInt(values.getOrDefault("drivers", String.valueOf(o.drivers)));
+        o.customers = Integer.parseInt(values.getOrDefault("customers", String.valueOf(o.customers)));
+        o.durationSeconds = Integer.parseInt(values.getOrDefault("duration", String.valueOf(o.durationSeconds)));
+        o.rampUpSeconds = Integer.parseInt(values.getOrDefault("ramp-up", String.valueOf(o.rampUpSeconds)));
+        o.locationIntervalMillis = Long.parseLong(values.getOrDefault("location-interval-ms", String.valueOf(o.locationIntervalMillis)));
+        o.heartbeatIntervalMillis = Long.parseLong(values.getOrDefault("heartbeat-interval-ms", String.valueOf(o.heartbeatIntervalMillis)));
+        o.customerThinkMillis = Long.parseLong(values.getOrDefault("think-ms", String.valueOf(o.customerThinkMillis)));
+        o.tripMillis = Long.parseLong(values.getOrDefault("trip-ms", String.valueOf(o.tripMillis)));
+        o.acceptTimeoutMillis = Long.parseLong(values.getOrDefault("accept-timeout-ms", String.valueOf(o.acceptTimeoutMillis)));
+        o.vehicleType = values.getOrDefault("vehicle-type", o.vehicleType);
+        o.centerLat = Double.parseDouble(values.getOrDefault("center-lat", String.valueOf(o.centerLat)));
+        o.centerLng = Double.parseDouble(values.getOrDefault("center-lng", String.valueOf(o.centerLng)));
+        o.spreadKm = Double.parseDouble(values.getOrDefault("spread-km", String.valueOf(o.spreadKm)));
+        if (values.containsKey("out")) {
+            o.outDir = Path.of(values.get("out"));
+        }
+        return o;
+    }
+
+    String wsUrl() {
+        // SockJS endpoints also accept a raw WebSocket at <endpoint>/websocket
+        return baseUrl.replaceFirst("^http", "ws") + "/ws/websocket";
+    }
+
+    @Override
+    public String toString() {
+        return String.format("base-url=%s drivers=%d customers=%d duration=%ds ramp-up=%ds location-interval=%dms "
+                        + "heartbeat-interval=%dms think=%dms trip=%dms vehicle-type=%s",
+                baseUrl, drivers, customers, durationSeconds, rampUpSeconds, locationIntervalMillis,
+                heartbeatIntervalMillis, customerThinkMillis, tripMillis, vehicleType);
+    }
+}
@@ -0,0 +1,141 @@
+package com.apnaride.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A rider app on its own thread: listens on /topic/ride-updates/{id}, requests a ride, waits for
+ * a driver to accept, tracks the driver's location topic during the trip, then waits and repeats.
+ */
+final class SimulatedCustomer implements Runnable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Fleet fleet;
+    private final long userId;
+    private final Random random;
+    private StompConnection stomp;
+
+    SimulatedCustomer(Fleet fleet, long userId, long seed) {
+        this.fleet = fleet;
+        this.userId = userId;
+        this.random = new Random(seed);
+    }
+
+    void connect() throws Exception {
+        stomp = StompConnection.open(fleet.options.wsUrl());
+        stomp.subscribe("/topic/ride-updates/" + userId, this::onUpdate);
+    }
+
+    @Override
+    public void run() {
+        try {
+            Thread.sleep(random.nextInt((int) Math.max(1, fleet.options.customerThinkMillis)));
+            while (fleet.running) {
+                rideOnce();
+                Thread.sleep(fleet.options.customerThinkMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stomp.close();
+        }
+    }
+
+    private void rideOnce() throws InterruptedException {
+        Options o = fleet.options;
+        double[] pickup = LoadGenerator.randomPoint(random, o.centerLat, o.centerLng, o.spreadKm * 0.8);
+        double[] drop = LoadGenerator.randomPoint(random, pickup[0], pickup[1], 6);
+        Map<String, Object> request = new HashMap<>();
+        request.put("customerId", userId);
+        request.put("pickupLocation", "Load test pickup");
+        request.put("dropLocation", "Load test drop");
+        request.put("vehicleType", o.vehicleType);
+        request.put("pickupLat", pickup[0]);
+        request.put("pickupLng", pickup[1]);
+        request.put("dropLat", drop[0]);
+        request.put("dropLng", drop[1]);
+
+        long start = System.nanoTime();
+        JsonNode ride = fleet.api.post("ride-request", "/api/rides/request", request);
+        if (ride == null || ride.path("bookingId").isMissingNode()) {
+            return;
+        }
+        fleet.metrics.increment("rides.requested");
+        String bookingId = ride.path("bookingId").asText();
+        try {
+            Fleet.Received accepted;
+            try {
+                accepted = fleet.update(bookingId, "RIDE_ACCEPTED").get(o.acceptTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                fleet.metrics.increment("rides.unmatched");
+                fleet.api.post("ride-cancel", "/api/rides/" + bookingId + "/cancel", null);
+                return;
+            }
+            fleet.metrics.recordNanos("dispatch.accepted", accepted.nanos - start);
+            Long offered = fleet.firstOfferAt(bookingId);
+            if (offered != null) {
+                fleet.metrics.recordNanos("dispatch.first-offer", offered - start);
+            }
+
+            long driverId = accepted.body.path("ride").path("driverId").asLong(-1);
+            String tracking = driverId > 0
+                    ? stomp.subscribe("/topic/driver-location/" + driverId, this::onDriverLocation)
+                    : null;
+            try {
+                fleet.update(bookingId, "RIDE_COMPLETED").get(o.tripMillis + 30_000, TimeUnit.MILLISECONDS);
+                fleet.metrics.increment("rides.completed");
+            } catch (TimeoutException e) {
+                fleet.metrics.increment("rides.incomplete");
+            } finally {
+                if (tracking != null) {
+                    stomp.unsubscribe(tracking);
+                }
+            }
+        } catch (java.util.concurrent.ExecutionException e) {
+            fleet.metrics.increment("rides.error");
+        } finally {
+            fleet.forget(bookingId);
+        }
+    }
+
+    private void onUpdate(String body) {
+        long now = System.nanoTime();
+        try {
+            JsonNode update = MAPPER.readTree(body);
+            String bookingId = update.path("bookingId").asText(null);
+            String type = update.path("type").asText("");
+            if (bookingId == null) {
+                return;
+            }
+            fleet.metrics.increment("stomp.ride-updates.received");
+            if ("RIDE_ACCEPTED".equals(type)) {
+                Long acceptStarted = fleet.acceptStartedAt(bookingId);
+                if (acceptStarted != null) {
+                    fleet.metrics.recordNanos("lag.ride-accepted-update", now - acceptStarted);
+                }
+            }
+            fleet.update(bookingId, type).complete(new Fleet.Received(now, update));
+        } catch (Exception e) {
+            fleet.metrics.increment("stomp.ride-updates.error");
+        }
+    }
+
+    private void onDriverLocation(String body) {
+        try {
+            long sentMillis = Long.parseLong(MAPPER.readTree(body).path("timestamp").asText("0"));
+            if (sentMillis > 0) {
+                fleet.metrics.recordNanos("lag.driver-location", TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - sentMillis));
+                fleet.metrics.increment("stomp.locations.delivered");
+            }
+        } catch (Exception e) {
+            fleet.metrics.increment("stomp.locations.delivery-error");
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.apnaride.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A driver app: one STOMP connection streaming its position to /app/driver-location, periodic
+ * REST heartbeats to /api/drivers/{id}/status, and accepting offered rides when idle, then
+ * completing them after the configured trip time.
+ */
+final class SimulatedDriver {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final double SPEED_MPS = 8;
+
+    private final Fleet fleet;
+    private final long userId;
+    private final Random random;
+    private final AtomicBoolean busy = new AtomicBoolean();
+    private volatile double lat;
+    private volatile double lng;
+    private double heading;
+    private StompConnection stomp;
+    private ScheduledFuture<?> locationTask;
+    private ScheduledFuture<?> heartbeatTask;
+
+    SimulatedDriver(Fleet fleet, long userId, double lat, double lng, long seed) {
+        this.fleet = fleet;
+        this.userId = userId;
+        this.lat = lat;
+        this.lng = lng;
+        this.random = new Random(seed);
+        this.heading = random.nextDouble() * 360;
+    }
+
+    void start() throws Exception {
+        stomp = StompConnection.open(fleet.options.wsUrl());
+        stomp.subscribe("/queue/ride-requests/" + userId, this::onOffer);
+        long interval = fleet.options.locationIntervalMillis;
+        long heartbeat = fleet.options.heartbeatIntervalMillis;
+        locationTask = fleet.scheduler.scheduleAtFixedRate(this::sendLocation,
+                random.nextInt((int) Math.max(1, interval)), interval, TimeUnit.MILLISECONDS);
+        heartbeatTask = fleet.scheduler.scheduleAtFixedRate(this::heartbeat,
+                random.nextInt((int) Math.max(1, heartbeat)), heartbeat, TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        if (locationTask != null) locationTask.cancel(false);
+        if (heartbeatTask != null) heartbeatTask.cancel(false);
+        if (stomp != null) stomp.close();
+    }
+
+    private void onOffer(String body) {
+        long now = System.nanoTime();
+        fleet.metrics.increment("stomp.offers.received");
+        String bookingId;
+        try {
+            bookingId = MAPPER.readTree(body).path("bookingId").asText(null);
+        } catch (Exception e) {
+            return;
+        }
+        if (bookingId == null) {
+            return;
+        }
+        fleet.offerReceived(bookingId, now);
+        if (fleet.running && busy.compareAndSet(false, true)) {
+            fleet.scheduler.execute(() -> accept(bookingId));
+        }
+    }
+
+    private void accept(String bookingId) {
+        fleet.acceptStarted(bookingId, System.nanoTime());
+        JsonNode result = fleet.api.post("ride-accept", "/api/rides/" + bookingId + "/accept", Map.of("driverId", userId));
+        if (result == null || !result.path("success").asBoolean()) {
+            fleet.metrics.increment("rides.accept-lost"); // another driver got there first
+            busy.set(false);
+            return;
+        }
+        fleet.metrics.increment("rides.accepted");
+        fleet.scheduler.schedule(() -> {
+            fleet.api.put("ride-complete", "/api/rides/" + bookingId + "/complete", null);
+            busy.set(false);
+        }, fleet.options.tripMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void sendLocation() {
+        try {
+            double step = SPEED_MPS * fleet.options.locationIntervalMillis / 1000.0;
+            heading = (heading + random.nextGaussian() * 10 + 360) % 360;
+            lat += Math.cos(Math.toRadians(heading)) * step / 111_320.0;
+            lng += Math.sin(Math.toRadians(heading)) * step / (111_320.0 * Math.cos(Math.toRadians(lat)));
+            String json = String.format(java.util.Locale.US,
+                    "{\"driverId\":%d,\"latitude\":%.6f,\"longitude\":%.6f,\"heading\":%.1f,\"speed\":%.1f,\"timestamp\":\"%d\"}",
+                    userId, lat, lng, heading, SPEED_MPS, System.currentTimeMillis());
+            stomp.send("/app/driver-location", json);
+            fleet.metrics.increment("stomp.locations.sent");
+        } catch (Exception e) {
+            fleet.metrics.increment("stomp.locations.error");
+        }
+    }
+
+    private void heartbeat() {
+        fleet.api.post("driver-status", "/api/drivers/" + userId + "/status", Map.of("lat", lat, "lng", lng));
+    }
+}
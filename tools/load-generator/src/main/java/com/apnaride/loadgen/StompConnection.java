@@ -0,0 +1,121 @@
+package com.apnaride.loadgen;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Minimal STOMP 1.2 client over the JDK WebSocket: CONNECT, SUBSCRIBE, UNSUBSCRIBE and SEND with
+ * JSON bodies, MESSAGE frames dispatched to the subscription's handler on the socket's thread.
+ * Handlers must not block.
+ */
+final class StompConnection implements WebSocket.Listener {
+
+    private static final HttpClient HTTP = HttpClient.newHttpClient();
+
+    private final Map<String, Consumer<String>> handlers = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final CompletableFuture<Void> connected = new CompletableFuture<>();
+    private final StringBuilder partial = new StringBuilder();
+    private final Object sendLock = new Object();
+    private WebSocket socket;
+
+    static StompConnection open(String url) throws Exception {
+        StompConnection connection = new StompConnection();
+        connection.socket = HTTP.newWebSocketBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .buildAsync(URI.create(url), connection)
+                .get(15, TimeUnit.SECONDS);
+        connection.sendFrame("CONNECT\naccept-version:1.2\nhost:" + URI.create(url).getHost() + "\nheart-beat:0,0\n\n");
+        connection.connected.get(15, TimeUnit.SECONDS);
+        return connection;
+    }
+
+    /**
+     * Subscribe and return the subscription id
+     */
+    String subscribe(String destination, Consumer<String> handler) {
+        String id = "sub-" + nextId.incrementAndGet();
+        handlers.put(id, handler);
+        sendFrame("SUBSCRIBE\nid:" + id + "\ndestination:" + destination + "\n\n");
+        return id;
+    }
+
+    void unsubscribe(String id) {
+        if (handlers.remove(id) != null) {
+            sendFrame("UNSUBSCRIBE\nid:" + id + "\n\n");
+        }
+    }
+
+    void send(String destination, String json) {
+        sendFrame("SEND\ndestination:" + destination + "\ncontent-type:application/json\n\n" + json);
+    }
+
+    void close() {
+        try {
+            sendFrame("DISCONNECT\n\n");
+            socket.sendClose(WebSocket.NORMAL_CLOSURE, "done").get(5, TimeUnit.SECONDS);
+        } catch (Exception ignore) {
+            socket.abort();
+        }
+    }
+
+    // The JDK WebSocket allows one outstanding send at a time
+    private void sendFrame(String frame) {
+        synchronized (sendLock) {
+            socket.sendText(frame + "\0", true).join();
+        }
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        partial.append(data);
+        int end;
+        while ((end = partial.indexOf("\0")) >= 0) {
+            String frame = partial.substring(0, end);
+            partial.delete(0, end + 1);
+            onFrame(frame);
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        connected.completeExceptionally(error);
+    }
+
+    private void onFrame(String frame) {
+        frame = frame.replaceFirst("^[\r\n]+", ""); // heart-beat newlines
+        if (frame.isEmpty()) {
+            return;
+        }
+        int headerEnd = frame.indexOf("\n\n");
+        String head = headerEnd >= 0 ? frame.substring(0, headerEnd) : frame;
+        String body = headerEnd >= 0 ? frame.substring(headerEnd + 2) : "";
+        String[] lines = head.split("\n");
+        switch (lines[0]) {
+            case "CONNECTED" -> connected.complete(null);
+            case "MESSAGE" -> {
+                for (String line : lines) {
+                    if (line.startsWith("subscription:")) {
+                        Consumer<String> handler = handlers.get(line.substring("subscription:".length()));
+                        if (handler != null) {
+                            handler.accept(body);
+                        }
+                    }
+                }
+            }
+            case "ERROR" -> connected.completeExceptionally(new IllegalStateException("STOMP error: " + frame));
+            default -> { }
+        }
+    }
+}